@@ -0,0 +1,124 @@
+package com.bitso;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bitso.benchmarks.Fixtures;
+import com.bitso.helpers.Helpers;
+
+/**
+ * Decodes each response fixture the way the matching {@link Bitso} call does, from the response text to the
+ * returned objects. It lives in {@code com.bitso} to reach the package private parsers and streaming decoders.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixtureDecodingBenchmark {
+    @Param({ "publicAvailableBooks.json", "publicTicker.json", "publicOrderBook.json", "publicTrades.json",
+            "privateAccountStatus.json", "privateAccountBalance.json", "privateFees.json", "privateLedger.json",
+            "privateLedgerTrades.json", "privateLedgerFees.json", "privateLedgerFundings.json",
+            "privateLedgerWithdrawals.json", "privateWithdrawals.json", "privateFundings.json",
+            "privateUserTrades.json", "privateOpenOrders.json", "privateLookUpOrders.json",
+            "privatePlaceOrder.json", "privateCancelOrder.json", "privateFundingDestination.json",
+            "privateBankCodes.json", "privateBitcoinWithdrawal.json", "privateEtherWithdrawal.json",
+            "privateSPEIWithdrawal.json", "privateDebitCardWithdrawal.json",
+            "privatePhoneNumberWithdrawal.json" })
+    public String fixture;
+
+    private Bitso mBitso;
+    private byte[] mBytes;
+    private String mText;
+
+    @Setup
+    public void setUp() throws Exception {
+        mBitso = new Bitso("", "", 0, false, true);
+        mBytes = Fixtures.read(fixture);
+        mText = new String(mBytes, StandardCharsets.UTF_8);
+        // Fail fast on a fixture the switch does not know
+        decode();
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        switch (fixture) {
+        case "publicAvailableBooks.json":
+            return Bitso.parseAvailableBooks(payloadArray());
+        case "publicTicker.json":
+            return Bitso.parseTickers(payloadArray());
+        case "publicOrderBook.json":
+            return Bitso.ORDER_BOOK_DECODER.decode(new ByteArrayInputStream(mBytes));
+        case "publicTrades.json":
+            return Bitso.TRANSACTIONS_DECODER.decode(new ByteArrayInputStream(mBytes));
+        case "privateAccountStatus.json":
+            return new BitsoAccountStatus(payloadObject());
+        case "privateAccountBalance.json":
+            return new BitsoBalance(payloadObject());
+        case "privateFees.json":
+            return new BitsoFee(payloadObject());
+        case "privateLedger.json":
+        case "privateLedgerTrades.json":
+        case "privateLedgerFees.json":
+        case "privateLedgerFundings.json":
+        case "privateLedgerWithdrawals.json":
+            return Bitso.OPERATIONS_DECODER.decode(new ByteArrayInputStream(mBytes));
+        case "privateWithdrawals.json":
+            return Bitso.parseWithdrawals(payloadArray());
+        case "privateFundings.json":
+            return Bitso.parseFundings(payloadArray());
+        case "privateUserTrades.json":
+            return Bitso.USER_TRADES_DECODER.decode(new ByteArrayInputStream(mBytes));
+        case "privateOpenOrders.json":
+        case "privateLookUpOrders.json":
+            return Bitso.parseOrders(payloadArray());
+        case "privatePlaceOrder.json":
+            return Helpers.getString(payloadObject(), "oid");
+        case "privateCancelOrder.json":
+            return Helpers.getJSONArrayElements(payloadArray());
+        case "privateFundingDestination.json":
+            JSONObject destination = payloadObject();
+            Map<String, String> fundingDestination = new HashMap<String, String>();
+            fundingDestination.put("account_identifier_name",
+                    Helpers.getString(destination, "account_identifier_name"));
+            fundingDestination.put("account_identifier", Helpers.getString(destination, "account_identifier"));
+            return fundingDestination;
+        case "privateBankCodes.json":
+            return Bitso.parseBanks(payloadArray());
+        case "privateBitcoinWithdrawal.json":
+        case "privateEtherWithdrawal.json":
+        case "privateSPEIWithdrawal.json":
+        case "privateDebitCardWithdrawal.json":
+        case "privatePhoneNumberWithdrawal.json":
+            return new BitsoWithdrawal(payloadObject());
+        default:
+            throw new IllegalArgumentException("No decoder for " + fixture);
+        }
+    }
+
+    private JSONArray payloadArray() throws Exception {
+        return (JSONArray) mBitso.getJSONPayload(mText);
+    }
+
+    private JSONObject payloadObject() throws Exception {
+        return (JSONObject) mBitso.getJSONPayload(mText);
+    }
+}
@@ -0,0 +1,20 @@
+package com.bitso.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Reads the JSON fixtures of the client's tests. Benchmarks run from the module directory find them in
+ * {@code ../src/test/java/JSONFiles}, set the system property {@code bitso.fixtures} to read them elsewhere.
+ */
+public final class Fixtures {
+    private static final String PATH = System.getProperty("bitso.fixtures", "../src/test/java/JSONFiles/");
+
+    private Fixtures() {
+    }
+
+    public static byte[] read(String name) throws IOException {
+        return Files.readAllBytes(Paths.get(PATH, name));
+    }
+}
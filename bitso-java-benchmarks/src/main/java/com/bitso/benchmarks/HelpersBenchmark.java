@@ -0,0 +1,69 @@
+package com.bitso.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bitso.BitsoFeeStructure;
+import com.bitso.helpers.Helpers;
+
+/**
+ * Date parsing done for every timestamped field of a response, and the fee schedule lookup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HelpersBenchmark {
+
+    @State(Scope.Thread)
+    public static class DateState {
+        @Param({ "2017-08-01T20:27:54+0000", "2017-08-01T20:27:54.123-05:00" })
+        public String date;
+
+        private JSONObject mObject;
+
+        @Setup
+        public void setUp() {
+            mObject = new JSONObject();
+            mObject.put("created_at", date);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class VolumeState {
+        @Param({ "0", "350000", "150000000" })
+        public String thirtyDayVolume;
+
+        private BigDecimal mVolume;
+
+        @Setup
+        public void setUp() {
+            mVolume = new BigDecimal(thirtyDayVolume);
+        }
+    }
+
+    @Benchmark
+    public Date getZonedDatetime(DateState state) {
+        return Helpers.getZonedDatetime(state.mObject, "created_at");
+    }
+
+    @Benchmark
+    public BigDecimal getFeeInPercentage(VolumeState state) {
+        return BitsoFeeStructure.getFeeInPercentage(state.mVolume);
+    }
+}
@@ -0,0 +1,87 @@
+package com.bitso.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bitso.BitsoOrderBook;
+import com.bitso.BitsoOrderBook.PublicOrder;
+import com.bitso.book.LiveOrderBook;
+import com.bitso.websockets.BitsoWebSocketPublicOrder;
+
+/**
+ * Applies diff-orders updates to a {@link LiveOrderBook} holding resting orders at the prices of the order book
+ * fixture. Updates cycle through placing and then removing orders, so the book keeps its size across
+ * iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookBenchmark {
+    private static final int ORDERS = 1024;
+
+    private LiveOrderBook mBook;
+    private BitsoWebSocketPublicOrder[] mUpdates;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws Exception {
+        // The fixture is aggregated, so it only provides the price levels
+        JSONObject response = new JSONObject(new String(Fixtures.read("publicOrderBook.json"), "UTF-8"));
+        BitsoOrderBook snapshot = new BitsoOrderBook(response.getJSONObject("payload"));
+        mBook = new LiveOrderBook("btc_mxn");
+        int resting = 0;
+        for (PublicOrder bid : snapshot.getBids()) {
+            mBook.apply(order("resting" + (resting++), bid.getPrice(), false, "0.5"));
+        }
+        for (PublicOrder ask : snapshot.getAsks()) {
+            mBook.apply(order("resting" + (resting++), ask.getPrice(), true, "0.5"));
+        }
+
+        BigDecimal bestBid = mBook.getBestBidPrice();
+        BigDecimal bestAsk = mBook.getBestAskPrice();
+        mUpdates = new BitsoWebSocketPublicOrder[ORDERS * 2];
+        for (int i = 0; i < ORDERS; i++) {
+            boolean sell = (i & 1) == 1;
+            // Spread the orders over a few levels on each side of the book
+            BigDecimal price = sell ? bestAsk.add(BigDecimal.valueOf(i % 16)) : bestBid.subtract(
+                    BigDecimal.valueOf(i % 16));
+            mUpdates[i] = order("benchmark" + i, price, sell, "0.25");
+            mUpdates[ORDERS + i] = order("benchmark" + i, price, sell, "0");
+        }
+    }
+
+    @Benchmark
+    public int apply() {
+        BitsoWebSocketPublicOrder update = mUpdates[mNext];
+        mNext = (mNext + 1) & (mUpdates.length - 1);
+        mBook.apply(update);
+        return mBook.getOrderCount();
+    }
+
+    private static BitsoWebSocketPublicOrder order(String id, BigDecimal price, boolean sell, String amount) {
+        JSONObject order = new JSONObject();
+        order.put("o", id);
+        order.put("d", 1501621674L);
+        order.put("r", price.toPlainString());
+        order.put("t", sell ? 1 : 0);
+        order.put("a", amount);
+        order.put("v", price.multiply(new BigDecimal(amount)).toPlainString());
+        order.put("s", "open");
+        return new BitsoWebSocketPublicOrder(order);
+    }
+}
@@ -0,0 +1,60 @@
+package com.bitso.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bitso.Bitso;
+import com.bitso.auth.BitsoRequestSigner;
+
+/**
+ * Builds the Authorization header of a private request, through {@link Bitso#buildBitsoAuthHeader} as the
+ * client does and with a {@link BitsoRequestSigner} directly, without the nonce source.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SigningBenchmark {
+    private static final String KEY = "benchmark-key";
+    private static final String SECRET = "benchmark-secret";
+    private static final String REQUEST_PATH = "/api/v3/ledger?limit=100&sort=desc";
+    private static final String PAYLOAD = "{\"book\":\"btc_mxn\",\"side\":\"buy\",\"type\":\"limit\","
+            + "\"major\":\"0.01000000\",\"price\":\"46850.01\"}";
+
+    private Bitso mBitso;
+    private BitsoRequestSigner mSigner;
+    private long mNonce;
+
+    @Setup
+    public void setUp() {
+        mBitso = new Bitso(KEY, SECRET, 0, false, true);
+        mSigner = new BitsoRequestSigner(KEY, SECRET);
+    }
+
+    @Benchmark
+    public String buildBitsoAuthHeader() throws Exception {
+        return mBitso.buildBitsoAuthHeader(REQUEST_PATH, "GET", KEY, SECRET);
+    }
+
+    @Benchmark
+    public String signGet() throws Exception {
+        return mSigner.buildAuthHeader(++mNonce, "GET", REQUEST_PATH, (String) null);
+    }
+
+    @Benchmark
+    public String signPost() throws Exception {
+        return mSigner.buildAuthHeader(++mNonce, "POST", "/api/v3/orders", PAYLOAD);
+    }
+}
@@ -0,0 +1,99 @@
+package com.bitso.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bitso.exchange.BookInfo;
+import com.bitso.websockets.BitsoStreamRouter;
+import com.bitso.websockets.BitsoStreamUpdate;
+import com.bitso.websockets.fixed.FixedPointStreamDecoder;
+import com.bitso.websockets.fixed.FixedPointUpdate;
+import com.bitso.websockets.fixed.PooledStreamDecoder;
+import com.bitso.websockets.fixed.StreamMessage;
+import com.bitso.websockets.fixed.StreamMessagePool;
+
+/**
+ * Decodes WebSocket messages of each channel with the three decoders: org.json objects through
+ * {@link BitsoStreamRouter}, fixed point objects and pooled fixed point messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamDecodingBenchmark {
+    private static final String DIFF_ORDERS = "{\"type\":\"diff-orders\",\"book\":\"btc_mxn\",\"sequence\":2371,"
+            + "\"payload\":[{\"o\":\"RnFl2bHZMyVQEVnp\",\"d\":1501621674000,\"r\":\"46850.01\",\"t\":1,"
+            + "\"a\":\"0.25000000\",\"v\":\"11712.50250000\",\"s\":\"open\"}]}";
+    private static final String TRADES = "{\"type\":\"trades\",\"book\":\"btc_mxn\",\"payload\":[{\"i\":72026,"
+            + "\"a\":\"0.00100000\",\"r\":\"46850.00\",\"v\":\"46.85000000\",\"mo\":\"KDn1kVfuIYxm8rBo\","
+            + "\"to\":\"jv1BIqJX3sgqrH8v\",\"t\":0}]}";
+    private static final String ORDERS;
+
+    static {
+        StringBuilder orders = new StringBuilder("{\"type\":\"orders\",\"book\":\"btc_mxn\",\"payload\":{");
+        for (String side : new String[] { "bids", "asks" }) {
+            orders.append(side.equals("bids") ? "" : ",").append('"').append(side).append("\":[");
+            for (int i = 0; i < 20; i++) {
+                orders.append(i == 0 ? "" : ",").append("{\"o\":\"o").append(side).append(i)
+                        .append("\",\"d\":1501621674000,\"r\":\"").append(46850 + (side.equals("bids") ? -i : i))
+                        .append(".01\",\"t\":").append(side.equals("bids") ? 0 : 1)
+                        .append(",\"a\":\"0.25000000\",\"v\":\"11712.50250000\",\"s\":\"open\"}");
+            }
+            orders.append(']');
+        }
+        ORDERS = orders.append("}}").toString();
+    }
+
+    @Param({ "diff-orders", "trades", "orders" })
+    public String channel;
+
+    private String mMessage;
+    private byte[] mBytes;
+    private FixedPointStreamDecoder mFixedPointDecoder;
+    private PooledStreamDecoder mPooledDecoder;
+
+    @Setup
+    public void setUp() {
+        mMessage = channel.equals("diff-orders") ? DIFF_ORDERS : channel.equals("trades") ? TRADES : ORDERS;
+        mBytes = mMessage.getBytes(StandardCharsets.UTF_8);
+        BookInfo btcMxn = new BookInfo(new JSONObject("{\"book\": \"btc_mxn\", \"minimum_price\": \"500.00\","
+                + " \"maximum_price\": \"80000.00\", \"minimum_amount\": \"0.00015\","
+                + " \"maximum_amount\": \"500.00000000\", \"minimum_value\": \"5\","
+                + " \"maximum_value\": \"10000000.00\"}"));
+        mFixedPointDecoder = new FixedPointStreamDecoder(btcMxn);
+        mPooledDecoder = new PooledStreamDecoder(new StreamMessagePool(16), btcMxn);
+    }
+
+    @Benchmark
+    public BitsoStreamUpdate json() {
+        return BitsoStreamRouter.decode(new JSONObject(mMessage));
+    }
+
+    @Benchmark
+    public FixedPointUpdate fixedPoint() throws Exception {
+        return mFixedPointDecoder.decode(mBytes, 0, mBytes.length);
+    }
+
+    @Benchmark
+    public long pooled() throws Exception {
+        StreamMessage message = mPooledDecoder.decode(mBytes, 0, mBytes.length, 0L);
+        long sequence = message.getSequenceNumber();
+        message.release();
+        return sequence;
+    }
+}
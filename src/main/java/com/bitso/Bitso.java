@@ -2,45 +2,72 @@ package com.bitso;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.net.MalformedURLException;
-import java.net.ProtocolException;
-import java.net.URL;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import javax.net.ssl.HttpsURLConnection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.bitso.auth.AtomicNonceSource;
+import com.bitso.auth.BitsoRequestSigner;
+import com.bitso.auth.FileBackedNonceSource;
+import com.bitso.auth.NonceSource;
 import com.bitso.exceptions.BitsoAPIException;
 import com.bitso.exceptions.BitsoPayloadException;
 import com.bitso.exceptions.BitsoServerException;
 import com.bitso.exceptions.BitsoValidationException;
 import com.bitso.exchange.BookInfo;
 import com.bitso.helpers.Helpers;
+import com.bitso.http.BitsoRateLimiter;
 import com.bitso.http.BlockingHttpClient;
+import com.bitso.http.HeaderSupplier;
+import com.bitso.http.ResponseDecoder;
+import com.bitso.http.SingleFlight;
+import com.bitso.json.BitsoJsonReader;
+import com.bitso.json.BitsoResponseDecoder;
 
 public class Bitso {
     private static final String BITSO_BASE_URL_PRODUCTION = "https://api.bitso.com";
     private static final String BITSO_BASE_URL_DEV = "https://dev.bitso.com";
     private final String ETHER = "ether";
     private final String BITCOIN = "bitcoin";
+    /**
+     * @deprecated Requests are limited by the {@link BitsoRateLimiter} set with
+     *             {@link #setRateLimiter(BitsoRateLimiter)}, this value is no longer used.
+     */
+    @Deprecated
     public static long THROTTLE_MS = 1000;
+    public static final int DEFAULT_NONCE_RETRIES = 5;
+
+    private static final int INVALID_NONCE = 201;
 
     private String key;
     private String secret;
     private boolean log;
     private String baseUrl;
 
-    private BlockingHttpClient client = new BlockingHttpClient(false, THROTTLE_MS);
+    private BlockingHttpClient client;
+    private final BitsoRequestSigner signer;
+    private volatile NonceSource nonceSource;
+    private volatile BitsoRateLimiter rateLimiter = new BitsoRateLimiter();
+    private volatile BitsoCache cache;
+    private volatile SingleFlight singleFlight = new SingleFlight();
+    private volatile boolean coalesceSignedRequests;
+    private volatile int nonceRetries = DEFAULT_NONCE_RETRIES;
+    private ExecutorService orderBookExecutor; // Guarded by this
 
     public Bitso(String key, String secret) {
         this(key, secret, 0);
@@ -55,16 +82,33 @@ public class Bitso {
     }
 
     public Bitso(String key, String secret, int retries, boolean log, boolean production) {
+        this(key, secret, retries, log, production, new BlockingHttpClient(false));
+    }
+
+    /**
+     * @param client
+     *            HTTP client whose connection pool is used for every request made by this instance. Use
+     *            {@link BlockingHttpClient#BlockingHttpClient(boolean, long, int, int, long)} to size the pool.
+     */
+    public Bitso(String key, String secret, int retries, boolean log, boolean production,
+            BlockingHttpClient client) {
         this.key = key;
         this.secret = secret;
+        this.signer = new BitsoRequestSigner(key, secret);
+        this.nonceSource = (key == null) ? new AtomicNonceSource() : AtomicNonceSource.forKey(key);
         this.log = log;
         this.baseUrl = production ? BITSO_BASE_URL_PRODUCTION : BITSO_BASE_URL_DEV;
+        this.client = client;
     }
 
     public void setBaseURL(String url) {
         baseUrl = url;
     }
 
+    public String getBaseURL() {
+        return baseUrl;
+    }
+
     public String getKey() {
         return key;
     }
@@ -77,6 +121,104 @@ public class Bitso {
         this.log = log;
     }
 
+    /**
+     * @param rateLimiter
+     *            Limits applied to public and private requests, null disables rate limiting
+     */
+    public void setRateLimiter(BitsoRateLimiter rateLimiter) {
+        this.rateLimiter = (rateLimiter == null) ? new BitsoRateLimiter(null, null) : rateLimiter;
+    }
+
+    public BitsoRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Threads that coalesce a request get the same decoded objects, e.g. the same {@link BitsoOrderBook} or
+     * array, which are shared and must not be modified.
+     *
+     * @param coalesce
+     *            Whether a public GET made while the same one is in flight from another thread waits for it and
+     *            shares its decoded response instead of being sent again, enabled by default
+     */
+    public void setCoalesceRequests(boolean coalesce) {
+        singleFlight = coalesce ? new SingleFlight() : null;
+    }
+
+    /**
+     * Signed GETs are not coalesced by default: a request that joins one sent before the caller's own order was
+     * placed or cancelled gets a response without that change. Enable it only when callers do not need to read
+     * their own writes. Shared responses must not be modified, see {@link #setCoalesceRequests(boolean)}.
+     *
+     * @param coalesce
+     *            Whether signed GETs are coalesced too, as long as {@link #setCoalesceRequests(boolean)} is
+     *            enabled
+     */
+    public void setCoalesceSignedRequests(boolean coalesce) {
+        coalesceSignedRequests = coalesce;
+    }
+
+    /**
+     * @return the coalescing of in-flight GET requests, null when disabled
+     */
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * @param cache
+     *            Cache of the reference data endpoints, null to send every request
+     */
+    public void setCache(BitsoCache cache) {
+        this.cache = cache;
+    }
+
+    public BitsoCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @param nonceSource
+     *            Source of the nonces used to sign requests. By default it is shared by every instance using the
+     *            same key in this JVM, use a {@link FileBackedNonceSource} to keep nonces increasing across
+     *            restarts
+     */
+    public void setNonceSource(NonceSource nonceSource) {
+        if (nonceSource == null) {
+            throw new IllegalArgumentException("Nonce source can't be null");
+        }
+        this.nonceSource = nonceSource;
+    }
+
+    public NonceSource getNonceSource() {
+        return nonceSource;
+    }
+
+    /**
+     * Signed requests sent from several threads can reach the server in a different order than their nonces. The
+     * server rejects the late ones with code 0201 without processing them, so they are signed again with a fresh
+     * nonce and resent. The same code is returned for an invalid signature, which fails after the retries.
+     *
+     * @param retries
+     *            Times a request rejected with code 0201 is resent, {@value #DEFAULT_NONCE_RETRIES} by default
+     */
+    public void setNonceRetries(int retries) {
+        nonceRetries = retries;
+    }
+
+    /**
+     * Releases the pooled connections and the threads held by this instance.
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (orderBookExecutor != null) {
+                orderBookExecutor.shutdownNow();
+                orderBookExecutor = null;
+            }
+        }
+        client.close();
+    }
+
     private void logError(String error) {
         if (log) {
             System.err.println(error);
@@ -94,55 +236,114 @@ public class Bitso {
             throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
         String request = "/api/v3/available_books";
 
-        String getResponse = sendGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        int totalElements = payloadJSON.length();
-        BookInfo[] books = new BookInfo[totalElements];
-        for (int i = 0; i < totalElements; i++) {
-            books[i] = new BookInfo(payloadJSON.getJSONObject(i));
-        }
-        return books;
+        String getResponse = cachedGet(request, false);
+        return parseAvailableBooks((JSONArray) getJSONPayload(getResponse));
     }
 
     public BitsoTicker[] getTicker() throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
         String request = "/api/v3/ticker";
 
         String getResponse = sendGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        int totalElements = payloadJSON.length();
-        BitsoTicker[] tickers = new BitsoTicker[totalElements];
-        for (int i = 0; i < totalElements; i++) {
-            tickers[i] = new BitsoTicker(payloadJSON.getJSONObject(i));
-        }
-        return tickers;
+        return parseTickers((JSONArray) getJSONPayload(getResponse));
     }
 
     public BitsoOrderBook getOrderBook(String book, boolean... aggregate)
             throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
-        String request = "/api/v3/order_book?book=" + book;
+        String request = orderBookRequest(book, aggregate);
 
-        if (aggregate != null && aggregate.length == 1) {
-            if (aggregate[0]) {
-                request += "&aggregate=true";
+        return sendGet(request, ORDER_BOOK_DECODER);
+    }
+
+    /**
+     * Fetches the order books of books with as many requests in flight as the HTTP client of this instance has
+     * connections per route, see {@link #getOrderBooks(Collection, int, boolean...)}.
+     */
+    public BitsoOrderBookSnapshots getOrderBooks(Collection<String> books, boolean... aggregate)
+            throws InterruptedException {
+        return getOrderBooks(books, client.getMaxConnectionsPerRoute(), aggregate);
+    }
+
+    /**
+     * Fetches and decodes the order books of books concurrently. Every request still waits for a permit of
+     * the public rate limit, so a cold start of many books is bounded by the limit rather than by the round
+     * trip of each book. A book whose request fails does not affect the others. Requests run on threads shared
+     * by the calls of this instance and released by {@link #close()}.
+     *
+     * @param parallelism
+     *            Requests in flight at once, keep it within the connections per route of the HTTP client
+     * @return the order books and the errors of the books that could not be fetched
+     * @throws InterruptedException
+     *             if interrupted while waiting, the requests in flight are cancelled
+     */
+    public BitsoOrderBookSnapshots getOrderBooks(Collection<String> books, int parallelism,
+            final boolean... aggregate) throws InterruptedException {
+        BitsoOrderBookSnapshots snapshots = new BitsoOrderBookSnapshots();
+        CompletionService<BitsoOrderBook> completion =
+                new ExecutorCompletionService<BitsoOrderBook>(orderBookExecutor());
+        Map<Future<BitsoOrderBook>, String> inFlight = new HashMap<Future<BitsoOrderBook>, String>();
+        Map<String, BitsoOrderBook> orderBooks = new HashMap<String, BitsoOrderBook>();
+        Map<String, Throwable> errors = new HashMap<String, Throwable>();
+        Iterator<String> pending = books.iterator();
+        try {
+            while (inFlight.size() < parallelism && pending.hasNext()) {
+                submitOrderBook(completion, inFlight, pending.next(), aggregate);
+            }
+            while (!inFlight.isEmpty()) {
+                Future<BitsoOrderBook> request = completion.take();
+                String book = inFlight.remove(request);
+                try {
+                    orderBooks.put(book, request.get());
+                } catch (ExecutionException e) {
+                    errors.put(book, e.getCause());
+                }
+                if (pending.hasNext()) {
+                    submitOrderBook(completion, inFlight, pending.next(), aggregate);
+                }
+            }
+        } finally {
+            for (Future<BitsoOrderBook> request : inFlight.keySet()) {
+                request.cancel(true);
+            }
+        }
+        for (String book : books) {
+            if (orderBooks.containsKey(book)) {
+                snapshots.put(book, orderBooks.get(book));
             } else {
-                request += "&aggregate=false";
+                snapshots.fail(book, errors.get(book));
             }
         }
+        return snapshots;
+    }
 
-        String getResponse = sendGet(request);
-        JSONObject payloadJSON = (JSONObject) getJSONPayload(getResponse);
-        return new BitsoOrderBook(payloadJSON);
+    private void submitOrderBook(CompletionService<BitsoOrderBook> completion,
+            Map<Future<BitsoOrderBook>, String> inFlight, final String book, final boolean... aggregate) {
+        inFlight.put(completion.submit(new Callable<BitsoOrderBook>() {
+            @Override
+            public BitsoOrderBook call() throws Exception {
+                return getOrderBook(book, aggregate);
+            }
+        }), book);
+    }
+
+    // Shared by the getOrderBooks calls of this instance, idle threads exit on their own
+    private synchronized ExecutorService orderBookExecutor() {
+        if (orderBookExecutor == null) {
+            orderBookExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "bitso-order-books");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return orderBookExecutor;
     }
 
     public BitsoTransactions getTrades(String book, String... queryParameters)
             throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
-        String parsedQueryParametes = processQueryParameters("&", queryParameters);
-        String request = "/api/v3/trades?book=" + book
-                + ((parsedQueryParametes != null) ? "&" + parsedQueryParametes : "");
+        String request = tradesRequest(book, queryParameters);
 
-        String getResponse = sendGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        return new BitsoTransactions(payloadJSON);
+        return sendGet(request, TRANSACTIONS_DECODER);
     }
 
     //Public Functions Signed
@@ -150,13 +351,7 @@ public class Bitso {
         String request = "/api/v3/ticker";
 
         String getResponse = sendBitsoGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        int totalElements = payloadJSON.length();
-        BitsoTicker[] tickers = new BitsoTicker[totalElements];
-        for (int i = 0; i < totalElements; i++) {
-            tickers[i] = new BitsoTicker(payloadJSON.getJSONObject(i));
-        }
-        return tickers;
+        return parseTickers((JSONArray) getJSONPayload(getResponse));
     }
 
     public BookInfo[] getSignedAvailableBooks()
@@ -164,13 +359,7 @@ public class Bitso {
         String request = "/api/v3/available_books";
 
         String getResponse = sendBitsoGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        int totalElements = payloadJSON.length();
-        BookInfo[] books = new BookInfo[totalElements];
-        for (int i = 0; i < totalElements; i++) {
-            books[i] = new BookInfo(payloadJSON.getJSONObject(i));
-        }
-        return books;
+        return parseAvailableBooks((JSONArray) getJSONPayload(getResponse));
     }
 
     // Private Functions
@@ -178,7 +367,7 @@ public class Bitso {
             throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
         String request = "/api/v3/account_status";
 
-        String getResponse = sendBitsoGet(request);
+        String getResponse = cachedGet(request, true);
         JSONObject payloadJSON = (JSONObject) getJSONPayload(getResponse);
         return new BitsoAccountStatus(payloadJSON);
     }
@@ -193,30 +382,16 @@ public class Bitso {
 
     public BitsoFee getFees() throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
         String request = "/api/v3/fees";
-        String getResponse = sendBitsoGet(request);
+        String getResponse = cachedGet(request, true);
         JSONObject payloadJSON = (JSONObject) getJSONPayload(getResponse);
         return new BitsoFee(payloadJSON);
     }
 
     public BitsoOperation[] getLedger(String specificOperation, String... queryParameters)
             throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
-        String request = "/api/v3/ledger";
-
-        if (specificOperation != null && specificOperation.length() > 0) {
-            request += "/" + specificOperation;
-        }
-
-        String parsedQueryParametes = processQueryParameters("&", queryParameters);
-        request += ((parsedQueryParametes != null) ? "?" + parsedQueryParametes : "");
+        String request = ledgerRequest(specificOperation, queryParameters);
 
-        String getResponse = sendBitsoGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        int totalElements = payloadJSON.length();
-        BitsoOperation[] operations = new BitsoOperation[totalElements];
-        for (int i = 0; i < totalElements; i++) {
-            operations[i] = new BitsoOperation(payloadJSON.getJSONObject(i));
-        }
-        return operations;
+        return sendBitsoGet(request, OPERATIONS_DECODER);
     }
 
     /**
@@ -230,30 +405,14 @@ public class Bitso {
      */
     public BitsoWithdrawal[] getWithdrawals(String[] withdrawalsIds, String... queryParameters)
             throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
-        String request = "/api/v3/withdrawals";
+        String request = idsOrQueryRequest("/api/v3/withdrawals", withdrawalsIds, queryParameters);
 
-        if ((withdrawalsIds != null) && (queryParameters != null && queryParameters.length > 0)) {
+        if (request == null) {
             return null;
         }
 
-        if (withdrawalsIds != null) {
-            String withdrawalsIdsParameters = processQueryParameters("-", withdrawalsIds);
-            request += ((withdrawalsIdsParameters != null) ? "/" + withdrawalsIdsParameters : "");
-        }
-
-        if (queryParameters != null && queryParameters.length > 0) {
-            String parsedQueryParametes = processQueryParameters("&", queryParameters);
-            request += ((parsedQueryParametes != null) ? "?" + parsedQueryParametes : "");
-        }
-
         String getResponse = sendBitsoGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        int totalElements = payloadJSON.length();
-        BitsoWithdrawal[] withdrawals = new BitsoWithdrawal[totalElements];
-        for (int i = 0; i < totalElements; i++) {
-            withdrawals[i] = new BitsoWithdrawal(payloadJSON.getJSONObject(i));
-        }
-        return withdrawals;
+        return parseWithdrawals((JSONArray) getJSONPayload(getResponse));
     }
 
     /**
@@ -267,30 +426,14 @@ public class Bitso {
      */
     public BitsoFunding[] getFundings(String[] fundingssIds, String... queryParameters)
             throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
-        String request = "/api/v3/fundings";
+        String request = idsOrQueryRequest("/api/v3/fundings", fundingssIds, queryParameters);
 
-        if ((fundingssIds != null && (queryParameters != null && queryParameters.length > 0))) {
+        if (request == null) {
             return null;
         }
 
-        if (fundingssIds != null) {
-            String fundingssIdsParameters = processQueryParameters("-", fundingssIds);
-            request += ((fundingssIdsParameters != null) ? "/" + fundingssIdsParameters : "");
-        }
-
-        if (queryParameters != null && queryParameters.length > 0) {
-            String parsedQueryParametes = processQueryParameters("&", queryParameters);
-            request += ((parsedQueryParametes != null) ? "?" + parsedQueryParametes : "");
-        }
-
         String getResponse = sendBitsoGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        int totalElements = payloadJSON.length();
-        BitsoFunding[] fundings = new BitsoFunding[totalElements];
-        for (int i = 0; i < totalElements; i++) {
-            fundings[i] = new BitsoFunding(payloadJSON.getJSONObject(i));
-        }
-        return fundings;
+        return parseFundings((JSONArray) getJSONPayload(getResponse));
     }
 
     /**
@@ -304,30 +447,13 @@ public class Bitso {
      */
     public BitsoTrade[] getUserTrades(String[] tradesIds, String... queryParameters)
             throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
-        String request = "/api/v3/user_trades";
+        String request = idsOrQueryRequest("/api/v3/user_trades", tradesIds, queryParameters);
 
-        if ((tradesIds != null && (queryParameters != null && queryParameters.length > 0))) {
+        if (request == null) {
             return null;
         }
 
-        if (tradesIds != null) {
-            String fundingssIdsParameters = processQueryParameters("-", tradesIds);
-            request += ((fundingssIdsParameters != null) ? "/" + fundingssIdsParameters : "");
-        }
-
-        if (queryParameters != null && queryParameters.length > 0) {
-            String parsedQueryParametes = processQueryParameters("&", queryParameters);
-            request += ((parsedQueryParametes != null) ? "?" + parsedQueryParametes : "");
-        }
-
-        String getResponse = sendBitsoGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        int totalElements = payloadJSON.length();
-        BitsoTrade[] trades = new BitsoTrade[totalElements];
-        for (int i = 0; i < totalElements; i++) {
-            trades[i] = new BitsoTrade(payloadJSON.getJSONObject(i));
-        }
-        return trades;
+        return sendBitsoGet(request, USER_TRADES_DECODER);
     }
 
     public BitsoTrade[] getOrderTrades(String orderId)
@@ -340,33 +466,104 @@ public class Bitso {
 
         request += "/" + orderId;
 
-        String getResponse = sendBitsoGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        int totalElements = payloadJSON.length();
-        BitsoTrade[] trades = new BitsoTrade[totalElements];
-        for (int i = 0; i < totalElements; i++) {
-            trades[i] = new BitsoTrade(payloadJSON.getJSONObject(i));
-        }
-        return trades;
+        return sendBitsoGet(request, USER_TRADES_DECODER);
     }
 
-    public BitsoOrder[] getOpenOrders(String book, String... queryParameters)
-            throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
-        String request = "/api/v3/open_orders";
+    /**
+     * Walks the trades of a book, newest first unless {@code sort=asc} is given, requesting the next page while
+     * the current one is consumed.
+     *
+     * @param book
+     *            Book of the trades
+     * @param pageSize
+     *            Trades requested per page, at most {@link BitsoPageIterator#MAX_PAGE_SIZE}
+     * @param queryParameters
+     *            Filters of every request, a {@code marker=} sets where the walk starts
+     */
+    public BitsoPageIterator<BitsoTransactions.Transaction> iterateTrades(final String book, int pageSize,
+            String... queryParameters) {
+        return new BitsoPageIterator<BitsoTransactions.Transaction>(pageSize, queryParameters, null) {
+            @Override
+            protected BitsoTransactions.Transaction[] fetch(String[] parameters) throws Exception {
+                return getTrades(book, parameters).getTransactionsList();
+            }
 
-        request += "?" + "book=" + book;
+            @Override
+            protected String marker(BitsoTransactions.Transaction transaction) {
+                return transaction.getTid();
+            }
+        };
+    }
 
-        String parsedQueryParametes = processQueryParameters("&", queryParameters);
-        request += ((parsedQueryParametes != null) ? "&" + parsedQueryParametes : "");
+    /**
+     * Walks the ledger like {@link #iterateTrades(String, int, String...)}.
+     *
+     * @param specificOperation
+     *            trades, fees, fundings or withdrawals, null for every operation
+     */
+    public BitsoPageIterator<BitsoOperation> iterateLedger(final String specificOperation, int pageSize,
+            String... queryParameters) {
+        return new BitsoPageIterator<BitsoOperation>(pageSize, queryParameters, null) {
+            @Override
+            protected BitsoOperation[] fetch(String[] parameters) throws Exception {
+                return getLedger(specificOperation, parameters);
+            }
+
+            @Override
+            protected String marker(BitsoOperation operation) {
+                return operation.getEntryId();
+            }
+        };
+    }
+
+    public BitsoPageIterator<BitsoWithdrawal> iterateWithdrawals(int pageSize, String... queryParameters) {
+        return new BitsoPageIterator<BitsoWithdrawal>(pageSize, queryParameters, null) {
+            @Override
+            protected BitsoWithdrawal[] fetch(String[] parameters) throws Exception {
+                return getWithdrawals(null, parameters);
+            }
+
+            @Override
+            protected String marker(BitsoWithdrawal withdrawal) {
+                return withdrawal.getWithdrawalId();
+            }
+        };
+    }
+
+    public BitsoPageIterator<BitsoFunding> iterateFundings(int pageSize, String... queryParameters) {
+        return new BitsoPageIterator<BitsoFunding>(pageSize, queryParameters, null) {
+            @Override
+            protected BitsoFunding[] fetch(String[] parameters) throws Exception {
+                return getFundings(null, parameters);
+            }
+
+            @Override
+            protected String marker(BitsoFunding funding) {
+                return funding.getFundingId();
+            }
+        };
+    }
+
+    public BitsoPageIterator<BitsoTrade> iterateUserTrades(int pageSize, String... queryParameters) {
+        return new BitsoPageIterator<BitsoTrade>(pageSize, queryParameters, null) {
+            @Override
+            protected BitsoTrade[] fetch(String[] parameters) throws Exception {
+                return getUserTrades(null, parameters);
+            }
+
+            @Override
+            protected String marker(BitsoTrade trade) {
+                return String.valueOf(trade.getTid());
+            }
+        };
+    }
+
+    public BitsoOrder[] getOpenOrders(String book, String... queryParameters)
+            throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+        String request = openOrdersRequest(book, queryParameters);
 
         String getResponse = sendBitsoGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        int totalElements = payloadJSON.length();
-        BitsoOrder[] orders = new BitsoOrder[totalElements];
-        for (int i = 0; i < totalElements; i++) {
-            orders[i] = new BitsoOrder(payloadJSON.getJSONObject(i));
-        }
-        return orders;
+        return parseOrders((JSONArray) getJSONPayload(getResponse));
     }
 
     public BitsoOrder[] lookupOrders(String... ordersId)
@@ -381,13 +578,7 @@ public class Bitso {
         request += "/" + ordersIdsParameters;
 
         String getResponse = sendBitsoGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        int totalElements = payloadJSON.length();
-        BitsoOrder[] orders = new BitsoOrder[totalElements];
-        for (int i = 0; i < totalElements; i++) {
-            orders[i] = new BitsoOrder(payloadJSON.getJSONObject(i));
-        }
-        return orders;
+        return parseOrders((JSONArray) getJSONPayload(getResponse));
     }
 
     public String placeOrder(String book, BitsoOrder.SIDE side, BitsoOrder.TYPE type, BigDecimal major,
@@ -395,33 +586,12 @@ public class Bitso {
             throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
         String request = "/api/v3/orders";
 
-        JSONObject parameters = new JSONObject();
-
-        if ((major != null && minor != null) || (major == null && minor == null)) {
-            log("An order should be specified in terms of major or minor, never both or any");
-            return null;
-        }
+        JSONObject parameters = placeOrderParameters(book, side, type, major, minor, price);
 
-        if (type.equals(BitsoOrder.TYPE.MARKET) && (price != null)) {
-            log("On market order a price does not need to be specified");
+        if (parameters == null) {
             return null;
         }
 
-        // Filling data for request
-        parameters.put("book", book);
-        parameters.put("side", side.toString().toLowerCase());
-        parameters.put("type", type.toString().toLowerCase());
-
-        if (type.equals(BitsoOrder.TYPE.LIMIT) && (price != null)) {
-            parameters.put("price", price.toString());
-        }
-
-        if (major != null) {
-            parameters.put("major", major.toString());
-        } else {
-            parameters.put("minor", minor.toString());
-        }
-
         String postResponse = sendBitsoPost(request, parameters);
         JSONObject payloadJSON = (JSONObject) getJSONPayload(postResponse);
         return Helpers.getString(payloadJSON, "oid");
@@ -463,7 +633,7 @@ public class Bitso {
 
         request += "?" + currencyParameter;
 
-        String getResponse = sendBitsoGet(request);
+        String getResponse = cachedGet(request, true);
         JSONObject payloadJSON = (JSONObject) getJSONPayload(getResponse);
         Map<String, String> fundingDestination = new HashMap<String, String>();
         fundingDestination.put("account_identifier_name",
@@ -508,21 +678,8 @@ public class Bitso {
     public Map<String, String> getBanks()
             throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
         String request = "/api/v3/mx_bank_codes";
-        String getResponse = sendBitsoGet(request);
-        JSONArray payloadJSON = (JSONArray) getJSONPayload(getResponse);
-        Map<String, String> banks = new HashMap<String, String>();
-
-        String currentBankCode = "";
-        String currentBankName = "";
-        JSONObject currentJSON = null;
-        int totalElements = payloadJSON.length();
-        for (int i = 0; i < totalElements; i++) {
-            currentJSON = payloadJSON.getJSONObject(i);
-            currentBankCode = Helpers.getString(currentJSON, "code");
-            currentBankName = Helpers.getString(currentJSON, "name");
-            banks.put(currentBankCode, currentBankName);
-        }
-        return banks;
+        String getResponse = cachedGet(request, true);
+        return parseBanks((JSONArray) getJSONPayload(getResponse));
     }
 
     public BitsoWithdrawal debitCardWithdrawal(BigDecimal amount, String recipientGivenNames,
@@ -714,139 +871,445 @@ public class Bitso {
         if (apiKey == null || secret == null) {
             throw new BitsoAPIException("Bitso API key or secret is null");
         }
-
-        byte[] secretBytes = secret.getBytes();
-        if (secretBytes.length == 0) {
+        if (secret.length() == 0) {
             throw new BitsoAPIException("Bitso API key is empty");
         }
 
-        long nonce = System.currentTimeMillis() + System.currentTimeMillis();
-        String message = nonce + httpMethod + requestPath;
+        if (apiKey.equals(key) && secret.equals(this.secret)) {
+            return signer.buildAuthHeader(nonceSource.nextNonce(), httpMethod, requestPath, (String) null);
+        }
+        long nonce = AtomicNonceSource.forKey(apiKey).nextNonce();
+        return new BitsoRequestSigner(apiKey, secret).buildAuthHeader(nonce, httpMethod, requestPath,
+                (String) null);
+    }
+
+    public String sendGet(final String requestedURL) throws BitsoAPIException {
+        return coalescedString(false, requestedURL, new Callable<String>() {
+            public String call() throws BitsoAPIException {
+                return client.sendGet(baseUrl + requestedURL, publicHeaders(), rateLimiter.getPublicBucket());
+            }
+        });
+    }
 
+    private <T> T sendGet(final String requestedURL, final ResponseDecoder<T> decoder)
+            throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+        return coalesced(false, requestedURL, decoder, new Callable<T>() {
+            public T call() throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+                return client.sendGet(baseUrl + requestedURL, publicHeaders(), rateLimiter.getPublicBucket(),
+                        decoder);
+            }
+        });
+    }
+
+    public String sendBitsoGet(final String requestPath) throws BitsoAPIException {
+        return coalescedString(true, requestPath, new Callable<String>() {
+            public String call() throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+                return sendSigned(new SignedRequest<String>() {
+                    public String send() throws BitsoAPIException {
+                        return client.sendGet(baseUrl + requestPath, signGet(requestPath),
+                                rateLimiter.getPrivateBucket());
+                    }
+                });
+            }
+        });
+    }
+
+    private <T> T sendBitsoGet(final String requestPath, final ResponseDecoder<T> decoder)
+            throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+        return coalesced(true, requestPath, decoder, new Callable<T>() {
+            public T call() throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+                return sendSigned(new SignedRequest<T>() {
+                    public T send() throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+                        return client.sendGet(baseUrl + requestPath, signGet(requestPath),
+                                rateLimiter.getPrivateBucket(), decoder);
+                    }
+                });
+            }
+        });
+    }
+
+    private String coalescedString(boolean signed, String requestPath, Callable<String> call)
+            throws BitsoAPIException {
         try {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(secretBytes, "HmacSHA256");
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(secretKeySpec);
-            byte[] arrayOfByte = mac.doFinal(message.getBytes());
-            BigInteger bigInteger = new BigInteger(1, arrayOfByte);
-            String signature = String.format("%0" + (arrayOfByte.length << 1) + "x",
-                    new Object[] { bigInteger });
-            return String.format("Bitso %s:%s:%s", apiKey, nonce, signature);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
+            return coalesced(signed, requestPath, null, call);
+        } catch (BitsoPayloadException e) {
             throw new BitsoAPIException(e);
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-            throw new BitsoAPIException(e);
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
+        } catch (BitsoServerException e) {
             throw new BitsoAPIException(e);
         }
     }
 
-    private static Entry<String, String> buildBitsoAuthHeader(String secretKey, String publicKey, long nonce,
-            String httpMethod, String requestPath, String jsonPayload) {
-        if (jsonPayload == null) jsonPayload = "";
-        String message = String.valueOf(nonce) + httpMethod + requestPath + jsonPayload;
-        String signature = "";
-        byte[] secretBytes = secretKey.getBytes();
-        SecretKeySpec localMac = new SecretKeySpec(secretBytes, "HmacSHA256");
+    /**
+     * Runs call unless the same GET, signed or not and decoded with the same decoder, is in flight from another
+     * thread, in which case its response is shared. Signed GETs are only coalesced when enabled.
+     */
+    private <T> T coalesced(boolean signed, String requestPath, ResponseDecoder<?> decoder, Callable<T> call)
+            throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+        SingleFlight currentSingleFlight = singleFlight;
         try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(localMac);
-
-            // Compute the hmac on input data bytes
-            byte[] arrayOfByte = mac.doFinal(message.getBytes());
-            BigInteger localBigInteger = new BigInteger(1, arrayOfByte);
-            signature = String.format("%0" + (arrayOfByte.length << 1) + "x",
-                    new Object[] { localBigInteger });
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        } catch (IllegalStateException e) {
-            e.printStackTrace();
+            if (currentSingleFlight == null || (signed && !coalesceSignedRequests)) {
+                return call.call();
+            }
+            return currentSingleFlight.execute(Arrays.asList(signed, baseUrl, requestPath, decoder), call);
+        } catch (ExecutionException e) {
+            throw failure(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BitsoAPIException(101, "Interrupted while waiting for the same request", e);
+        } catch (Exception e) {
+            throw failure(e);
         }
-        String authHeader = String.format("Bitso %s:%s:%s", publicKey, nonce, signature);
-        Entry<String, String> entry = new AbstractMap.SimpleEntry<String, String>("Authorization",
-                authHeader);
-        return entry;
     }
 
-    public String sendGet(String requestedURL) throws BitsoAPIException {
-        HttpsURLConnection connection = null;
-        try {
-            URL url = new URL(baseUrl + requestedURL);
-            connection = (HttpsURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("User-Agent", "Android");
-            return Helpers.convertInputStreamToString(connection.getInputStream());
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-            throw new BitsoAPIException(322, "Not a Valid URL", e);
-        } catch (ProtocolException e) {
-            e.printStackTrace();
-            throw new BitsoAPIException(901, "Unsupported HTTP method", e);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return Helpers.convertInputStreamToString(connection.getErrorStream());
+    /**
+     * @return cause if it is a BitsoAPIException, or wrapped in one when it is not a BitsoPayloadException,
+     *         BitsoServerException or unchecked, which are thrown
+     */
+    private static BitsoAPIException failure(Throwable cause) throws BitsoPayloadException, BitsoServerException {
+        if (cause instanceof BitsoAPIException) {
+            return (BitsoAPIException) cause;
+        } else if (cause instanceof BitsoPayloadException) {
+            throw (BitsoPayloadException) cause;
+        } else if (cause instanceof BitsoServerException) {
+            throw (BitsoServerException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
         }
+        return new BitsoAPIException(cause);
     }
 
-    public String sendBitsoGet(String requestPath) throws BitsoAPIException {
-        return sendBitsoHttpRequest(requestPath, "GET");
+    private HashMap<String, String> publicHeaders() {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("User-Agent", "Android");
+        return headers;
     }
 
-    private String sendBitsoHttpRequest(String requestPath, String method) throws BitsoAPIException {
-        String requestURL = baseUrl + requestPath;
-        HttpsURLConnection connection = null;
-        try {
-            URL url = new URL(requestURL);
-            connection = (HttpsURLConnection) url.openConnection();
-            connection.addRequestProperty("Authorization",
-                    buildBitsoAuthHeader(requestPath, "GET", key, secret));
-            connection.setRequestProperty("User-Agent", "Bitso-java-api");
-            connection.setRequestMethod(method);
-            return Helpers.convertInputStreamToString(connection.getInputStream());
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-            throw new BitsoAPIException(322, "Not a Valid URL", e);
-        } catch (ProtocolException e) {
-            e.printStackTrace();
-            throw new BitsoAPIException(901, "Unsupported HTTP method", e);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return Helpers.convertInputStreamToString(connection.getErrorStream());
-        }
+    private HashMap<String, String> signedGetHeaders(String requestPath) throws BitsoAPIException {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("Authorization", buildBitsoAuthHeader(requestPath, "GET", key, secret));
+        headers.put("User-Agent", "Bitso-java-api");
+        return headers;
     }
 
-    private String sendBitsoDelete(String requestPath) throws BitsoAPIException {
-        long nonce = System.currentTimeMillis() + System.currentTimeMillis();
-        Entry<String, String> authHeader = buildBitsoAuthHeader(secret, key, nonce, "DELETE", requestPath,
-                null);
-        HashMap<String, String> headers = new HashMap<String, String>();
-        headers.put("Content-Type", "application/json");
-        headers.put(authHeader.getKey(), authHeader.getValue());
-        return client.sendDelete(baseUrl + requestPath, headers);
+    private String sendBitsoDelete(final String requestPath) throws BitsoAPIException {
+        return sendSignedString(new SignedRequest<String>() {
+            public String send() throws BitsoAPIException {
+                return client.sendDelete(baseUrl + requestPath, sign("DELETE", requestPath, null),
+                        rateLimiter.getPrivateBucket());
+            }
+        });
     }
 
     public String sendBitsoPost(String url) throws BitsoAPIException {
         return sendBitsoPost(url, null);
     }
 
-    public String sendBitsoPost(String requestPath, JSONObject jsonPayload) throws BitsoAPIException {
-        long nonce = System.currentTimeMillis() + System.currentTimeMillis();
-        String jsonString = "";
-        if (jsonPayload != null) {
-            jsonString = jsonPayload.toString();
+    public String sendBitsoPost(final String requestPath, JSONObject jsonPayload) throws BitsoAPIException {
+        final String jsonString = (jsonPayload != null) ? jsonPayload.toString() : "";
+
+        return sendSignedString(new SignedRequest<String>() {
+            public String send() throws BitsoAPIException {
+                return client.sendPost(baseUrl + requestPath, jsonString, sign("POST", requestPath, jsonString),
+                        rateLimiter.getPrivateBucket());
+            }
+        });
+    }
+
+    private interface SignedRequest<T> {
+        T send() throws BitsoAPIException, BitsoPayloadException, BitsoServerException;
+    }
+
+    /**
+     * Sends request, and again while it is rejected with code 0201 and retries are left. The request signs
+     * itself every time it is sent, so each attempt carries a fresh nonce.
+     */
+    private <T> T sendSigned(SignedRequest<T> request)
+            throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+        for (int retries = nonceRetries;; retries--) {
+            try {
+                T response = request.send();
+                if (retries <= 0 || !(response instanceof String) || !isInvalidNonce((String) response)) {
+                    return response;
+                }
+            } catch (BitsoAPIException e) {
+                if (retries <= 0 || e.getErrorCode() != INVALID_NONCE) {
+                    throw e;
+                }
+            }
+            log("Nonce rejected, signing the request again");
+        }
+    }
+
+    private String sendSignedString(SignedRequest<String> request) throws BitsoAPIException {
+        try {
+            return sendSigned(request);
+        } catch (BitsoPayloadException e) {
+            throw new BitsoAPIException(e);
+        } catch (BitsoServerException e) {
+            throw new BitsoAPIException(e);
+        }
+    }
+
+    private static boolean isInvalidNonce(String response) {
+        if (response == null || !response.contains("\"error\"")) {
+            return false;
+        }
+        try {
+            JSONObject error = Helpers.parseJson(response).optJSONObject("error");
+            return error != null && error.optInt("code") == INVALID_NONCE;
+        } catch (JSONException e) {
+            return false;
         }
-        Entry<String, String> header = buildBitsoAuthHeader(secret, key, nonce, "POST", requestPath,
-                jsonString);
+    }
+
+    // The client signs once the rate limit permit is granted, so nonces follow the order requests are sent in
+    private HeaderSupplier signGet(final String requestPath) {
+        return new HeaderSupplier() {
+            public HashMap<String, String> get() throws BitsoAPIException {
+                return signedGetHeaders(requestPath);
+            }
+        };
+    }
+
+    private HeaderSupplier sign(final String httpMethod, final String requestPath, final String jsonPayload) {
+        return new HeaderSupplier() {
+            public HashMap<String, String> get() throws BitsoAPIException {
+                return signedHeaders(httpMethod, requestPath, jsonPayload);
+            }
+        };
+    }
+
+    HashMap<String, String> signedHeaders(String httpMethod, String requestPath, String jsonPayload)
+            throws BitsoAPIException {
+        long nonce = nonceSource.nextNonce();
         HashMap<String, String> headers = new HashMap<String, String>();
         headers.put("Content-Type", "application/json");
-        headers.put(header.getKey(), header.getValue());
+        headers.put("Authorization", signer.buildAuthHeader(nonce, httpMethod, requestPath, jsonPayload));
+        return headers;
+    }
+
+    // Request builders and payload parsers shared with BitsoAsync
+    String orderBookRequest(String book, boolean... aggregate) {
+        String request = "/api/v3/order_book?book=" + book;
+
+        if (aggregate != null && aggregate.length == 1) {
+            if (aggregate[0]) {
+                request += "&aggregate=true";
+            } else {
+                request += "&aggregate=false";
+            }
+        }
+        return request;
+    }
+
+    // Caches the response body, every caller decodes objects of its own
+    private String cachedGet(final String request, final boolean signed)
+            throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+        BitsoCache currentCache = cache;
+        if (currentCache == null) {
+            return signed ? sendBitsoGet(request) : sendGet(request);
+        }
+        return currentCache.get(request, new BitsoCache.Loader<String>() {
+            public String load() throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+                String getResponse = signed ? sendBitsoGet(request) : sendGet(request);
+                // Error responses are not cached
+                getJSONPayload(getResponse);
+                return getResponse;
+            }
+        });
+    }
+
+    String tradesRequest(String book, String... queryParameters) {
+        String parsedQueryParametes = processQueryParameters("&", queryParameters);
+        return "/api/v3/trades?book=" + book
+                + ((parsedQueryParametes != null) ? "&" + parsedQueryParametes : "");
+    }
+
+    String ledgerRequest(String specificOperation, String... queryParameters) {
+        String request = "/api/v3/ledger";
+
+        if (specificOperation != null && specificOperation.length() > 0) {
+            request += "/" + specificOperation;
+        }
+
+        String parsedQueryParametes = processQueryParameters("&", queryParameters);
+        request += ((parsedQueryParametes != null) ? "?" + parsedQueryParametes : "");
+        return request;
+    }
+
+    /**
+     * @return the request path or null when both ids and queryParameters are provided
+     */
+    String idsOrQueryRequest(String request, String[] ids, String... queryParameters) {
+        if ((ids != null && (queryParameters != null && queryParameters.length > 0))) {
+            return null;
+        }
 
-        return client.sendPost(baseUrl + requestPath, jsonString, headers);
+        if (ids != null) {
+            String idsParameters = processQueryParameters("-", ids);
+            request += ((idsParameters != null) ? "/" + idsParameters : "");
+        }
+
+        if (queryParameters != null && queryParameters.length > 0) {
+            String parsedQueryParametes = processQueryParameters("&", queryParameters);
+            request += ((parsedQueryParametes != null) ? "?" + parsedQueryParametes : "");
+        }
+        return request;
+    }
+
+    String openOrdersRequest(String book, String... queryParameters) {
+        String request = "/api/v3/open_orders";
+
+        request += "?" + "book=" + book;
+
+        String parsedQueryParametes = processQueryParameters("&", queryParameters);
+        request += ((parsedQueryParametes != null) ? "&" + parsedQueryParametes : "");
+        return request;
+    }
+
+    /**
+     * @return the order parameters or null if the combination of amounts and price is not valid
+     */
+    JSONObject placeOrderParameters(String book, BitsoOrder.SIDE side, BitsoOrder.TYPE type, BigDecimal major,
+            BigDecimal minor, BigDecimal price) {
+        JSONObject parameters = new JSONObject();
+
+        if ((major != null && minor != null) || (major == null && minor == null)) {
+            log("An order should be specified in terms of major or minor, never both or any");
+            return null;
+        }
+
+        if (type.equals(BitsoOrder.TYPE.MARKET) && (price != null)) {
+            log("On market order a price does not need to be specified");
+            return null;
+        }
+
+        // Filling data for request
+        parameters.put("book", book);
+        parameters.put("side", side.toString().toLowerCase());
+        parameters.put("type", type.toString().toLowerCase());
+
+        if (type.equals(BitsoOrder.TYPE.LIMIT) && (price != null)) {
+            parameters.put("price", price.toString());
+        }
+
+        if (major != null) {
+            parameters.put("major", major.toString());
+        } else {
+            parameters.put("minor", minor.toString());
+        }
+        return parameters;
+    }
+
+    // Decoders reading the payload straight from the response body
+    static final ResponseDecoder<BitsoOrderBook> ORDER_BOOK_DECODER =
+            new BitsoResponseDecoder<BitsoOrderBook>(BitsoOrderBook::new);
+    static final ResponseDecoder<BitsoTransactions> TRANSACTIONS_DECODER =
+            new BitsoResponseDecoder<BitsoTransactions>(BitsoTransactions::new);
+    static final ResponseDecoder<BitsoOperation[]> OPERATIONS_DECODER =
+            new BitsoResponseDecoder<BitsoOperation[]>(Bitso::readOperations);
+    static final ResponseDecoder<BitsoTrade[]> USER_TRADES_DECODER =
+            new BitsoResponseDecoder<BitsoTrade[]>(Bitso::readUserTrades);
+
+    static BitsoOperation[] readOperations(BitsoJsonReader reader) throws IOException {
+        ArrayList<BitsoOperation> operations = new ArrayList<BitsoOperation>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            operations.add(new BitsoOperation(reader));
+        }
+        reader.endArray();
+        return operations.toArray(new BitsoOperation[operations.size()]);
+    }
+
+    static BitsoTrade[] readUserTrades(BitsoJsonReader reader) throws IOException {
+        ArrayList<BitsoTrade> trades = new ArrayList<BitsoTrade>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            trades.add(new BitsoTrade(reader));
+        }
+        reader.endArray();
+        return trades.toArray(new BitsoTrade[trades.size()]);
+    }
+
+    static BookInfo[] parseAvailableBooks(JSONArray payloadJSON) {
+        int totalElements = payloadJSON.length();
+        BookInfo[] books = new BookInfo[totalElements];
+        for (int i = 0; i < totalElements; i++) {
+            books[i] = new BookInfo(payloadJSON.getJSONObject(i));
+        }
+        return books;
+    }
+
+    static BitsoTicker[] parseTickers(JSONArray payloadJSON) {
+        int totalElements = payloadJSON.length();
+        BitsoTicker[] tickers = new BitsoTicker[totalElements];
+        for (int i = 0; i < totalElements; i++) {
+            tickers[i] = new BitsoTicker(payloadJSON.getJSONObject(i));
+        }
+        return tickers;
+    }
+
+    static BitsoOperation[] parseOperations(JSONArray payloadJSON) {
+        int totalElements = payloadJSON.length();
+        BitsoOperation[] operations = new BitsoOperation[totalElements];
+        for (int i = 0; i < totalElements; i++) {
+            operations[i] = new BitsoOperation(payloadJSON.getJSONObject(i));
+        }
+        return operations;
+    }
+
+    static BitsoWithdrawal[] parseWithdrawals(JSONArray payloadJSON) {
+        int totalElements = payloadJSON.length();
+        BitsoWithdrawal[] withdrawals = new BitsoWithdrawal[totalElements];
+        for (int i = 0; i < totalElements; i++) {
+            withdrawals[i] = new BitsoWithdrawal(payloadJSON.getJSONObject(i));
+        }
+        return withdrawals;
+    }
+
+    static BitsoFunding[] parseFundings(JSONArray payloadJSON) {
+        int totalElements = payloadJSON.length();
+        BitsoFunding[] fundings = new BitsoFunding[totalElements];
+        for (int i = 0; i < totalElements; i++) {
+            fundings[i] = new BitsoFunding(payloadJSON.getJSONObject(i));
+        }
+        return fundings;
+    }
+
+    static BitsoTrade[] parseUserTrades(JSONArray payloadJSON) {
+        int totalElements = payloadJSON.length();
+        BitsoTrade[] trades = new BitsoTrade[totalElements];
+        for (int i = 0; i < totalElements; i++) {
+            trades[i] = new BitsoTrade(payloadJSON.getJSONObject(i));
+        }
+        return trades;
+    }
+
+    static BitsoOrder[] parseOrders(JSONArray payloadJSON) {
+        int totalElements = payloadJSON.length();
+        BitsoOrder[] orders = new BitsoOrder[totalElements];
+        for (int i = 0; i < totalElements; i++) {
+            orders[i] = new BitsoOrder(payloadJSON.getJSONObject(i));
+        }
+        return orders;
+    }
+
+    static Map<String, String> parseBanks(JSONArray payloadJSON) {
+        Map<String, String> banks = new HashMap<String, String>();
+
+        String currentBankCode = "";
+        String currentBankName = "";
+        JSONObject currentJSON = null;
+        int totalElements = payloadJSON.length();
+        for (int i = 0; i < totalElements; i++) {
+            currentJSON = payloadJSON.getJSONObject(i);
+            currentBankCode = Helpers.getString(currentJSON, "code");
+            currentBankName = Helpers.getString(currentJSON, "name");
+            banks.put(currentBankCode, currentBankName);
+        }
+        return banks;
     }
 
     public String processQueryParameters(String separator, String... parameters) {
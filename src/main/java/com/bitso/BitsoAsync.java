@@ -0,0 +1,257 @@
+package com.bitso;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.net.ssl.SSLException;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.bitso.exceptions.BitsoValidationException;
+import com.bitso.exchange.BookInfo;
+import com.bitso.helpers.Helpers;
+import com.bitso.http.AsyncHttpClient;
+
+/**
+ * Asynchronous counterpart of {@link Bitso}.
+ *
+ * Every method returns immediately with a {@link CompletableFuture}; requests travel over a non-blocking
+ * {@link AsyncHttpClient} and responses are decoded on the given executor, never on the network threads. Keys,
+ * base URL and request signing are taken from the wrapped {@link Bitso} instance. Failures complete the future
+ * exceptionally with the same exceptions the blocking methods throw, wrapped in a {@link CompletionException}.
+ */
+public class BitsoAsync implements Closeable {
+    private final Bitso bitso;
+    private final AsyncHttpClient client;
+    private final Executor decodeExecutor;
+
+    public BitsoAsync(Bitso bitso) throws SSLException {
+        this(bitso, new AsyncHttpClient(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param bitso
+     *            Provides the keys, base URL and request signing
+     * @param client
+     *            Transport used for every request
+     * @param decodeExecutor
+     *            Executor where JSON responses are decoded into model objects
+     */
+    public BitsoAsync(Bitso bitso, AsyncHttpClient client, Executor decodeExecutor) {
+        this.bitso = bitso;
+        this.client = client;
+        this.decodeExecutor = decodeExecutor;
+    }
+
+    // Public Functions
+    public CompletableFuture<BookInfo[]> getAvailableBooks() {
+        return decode(sendGet("/api/v3/available_books"),
+                payload -> Bitso.parseAvailableBooks((JSONArray) payload));
+    }
+
+    public CompletableFuture<BitsoTicker[]> getTicker() {
+        return decode(sendGet("/api/v3/ticker"), payload -> Bitso.parseTickers((JSONArray) payload));
+    }
+
+    public CompletableFuture<BitsoOrderBook> getOrderBook(String book, boolean... aggregate) {
+        return decode(sendGet(bitso.orderBookRequest(book, aggregate)),
+                payload -> new BitsoOrderBook((JSONObject) payload));
+    }
+
+    /**
+     * Requests the order books of books at once, each within the public rate limit. The future always
+     * completes normally, a book whose request fails is reported in {@link BitsoOrderBookSnapshots#getErrors()}.
+     */
+    public CompletableFuture<BitsoOrderBookSnapshots> getOrderBooks(Collection<String> books,
+            boolean... aggregate) {
+        final Map<String, CompletableFuture<BitsoOrderBook>> requests =
+                new LinkedHashMap<String, CompletableFuture<BitsoOrderBook>>();
+        for (String book : books) {
+            requests.put(book, getOrderBook(book, aggregate));
+        }
+        return CompletableFuture.allOf(requests.values().toArray(new CompletableFuture<?>[requests.size()]))
+                .handle((ignored, error) -> {
+                    BitsoOrderBookSnapshots snapshots = new BitsoOrderBookSnapshots();
+                    for (Map.Entry<String, CompletableFuture<BitsoOrderBook>> request : requests.entrySet()) {
+                        try {
+                            snapshots.put(request.getKey(), request.getValue().join());
+                        } catch (CompletionException e) {
+                            snapshots.fail(request.getKey(), e.getCause());
+                        }
+                    }
+                    return snapshots;
+                });
+    }
+
+    public CompletableFuture<BitsoTransactions> getTrades(String book, String... queryParameters) {
+        return decode(sendGet(bitso.tradesRequest(book, queryParameters)),
+                payload -> new BitsoTransactions((JSONArray) payload));
+    }
+
+    // Private Functions
+    public CompletableFuture<BitsoAccountStatus> getAccountStatus() {
+        return decode(sendBitsoGet("/api/v3/account_status"),
+                payload -> new BitsoAccountStatus((JSONObject) payload));
+    }
+
+    public CompletableFuture<BitsoBalance> getAccountBalance() {
+        return decode(sendBitsoGet("/api/v3/balance"), payload -> new BitsoBalance((JSONObject) payload));
+    }
+
+    public CompletableFuture<BitsoFee> getFees() {
+        return decode(sendBitsoGet("/api/v3/fees"), payload -> new BitsoFee((JSONObject) payload));
+    }
+
+    public CompletableFuture<BitsoOperation[]> getLedger(String specificOperation, String... queryParameters) {
+        return decode(sendBitsoGet(bitso.ledgerRequest(specificOperation, queryParameters)),
+                payload -> Bitso.parseOperations((JSONArray) payload));
+    }
+
+    /**
+     * @see Bitso#getWithdrawals(String[], String...)
+     */
+    public CompletableFuture<BitsoWithdrawal[]> getWithdrawals(String[] withdrawalsIds,
+            String... queryParameters) {
+        String request = bitso.idsOrQueryRequest("/api/v3/withdrawals", withdrawalsIds, queryParameters);
+        if (request == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return decode(sendBitsoGet(request), payload -> Bitso.parseWithdrawals((JSONArray) payload));
+    }
+
+    /**
+     * @see Bitso#getFundings(String[], String...)
+     */
+    public CompletableFuture<BitsoFunding[]> getFundings(String[] fundingsIds, String... queryParameters) {
+        String request = bitso.idsOrQueryRequest("/api/v3/fundings", fundingsIds, queryParameters);
+        if (request == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return decode(sendBitsoGet(request), payload -> Bitso.parseFundings((JSONArray) payload));
+    }
+
+    /**
+     * @see Bitso#getUserTrades(String[], String...)
+     */
+    public CompletableFuture<BitsoTrade[]> getUserTrades(String[] tradesIds, String... queryParameters) {
+        String request = bitso.idsOrQueryRequest("/api/v3/user_trades", tradesIds, queryParameters);
+        if (request == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return decode(sendBitsoGet(request), payload -> Bitso.parseUserTrades((JSONArray) payload));
+    }
+
+    public CompletableFuture<BitsoTrade[]> getOrderTrades(String orderId) {
+        if (orderId == null || orderId.trim().length() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return decode(sendBitsoGet("/api/v3/order_trades/" + orderId),
+                payload -> Bitso.parseUserTrades((JSONArray) payload));
+    }
+
+    public CompletableFuture<BitsoOrder[]> getOpenOrders(String book, String... queryParameters) {
+        return decode(sendBitsoGet(bitso.openOrdersRequest(book, queryParameters)),
+                payload -> Bitso.parseOrders((JSONArray) payload));
+    }
+
+    public CompletableFuture<BitsoOrder[]> lookupOrders(String... ordersId) {
+        if (ordersId == null || ordersId.length == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String request = "/api/v3/orders/" + bitso.processQueryParameters("-", ordersId);
+        return decode(sendBitsoGet(request), payload -> Bitso.parseOrders((JSONArray) payload));
+    }
+
+    /**
+     * @return a future with the id of the new order, or with null if the combination of amounts and price is
+     *         not valid
+     */
+    public CompletableFuture<String> placeOrder(String book, BitsoOrder.SIDE side, BitsoOrder.TYPE type,
+            BigDecimal major, BigDecimal minor, BigDecimal price) {
+        JSONObject parameters = bitso.placeOrderParameters(book, side, type, major, minor, price);
+        if (parameters == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return decode(sendBitsoPost("/api/v3/orders", parameters),
+                payload -> Helpers.getString((JSONObject) payload, "oid"));
+    }
+
+    public CompletableFuture<String[]> cancelOrder(String... ordersIds) {
+        if (ordersIds.length == 0) {
+            return failed(new BitsoValidationException("No orders to cancel"));
+        }
+        String request = "/api/v3/orders/" + bitso.processQueryParameters("-", ordersIds);
+        return decode(sendBitsoDelete(request), payload -> Helpers.getJSONArrayElements((JSONArray) payload));
+    }
+
+    public CompletableFuture<String[]> cancelAllOrders() {
+        return decode(sendBitsoDelete("/api/v3/orders/all"),
+                payload -> Helpers.getJSONArrayElements((JSONArray) payload));
+    }
+
+    /**
+     * Closes the underlying {@link AsyncHttpClient}.
+     */
+    public void close() {
+        client.close();
+    }
+
+    private CompletableFuture<String> sendGet(String requestPath) {
+        HashMap<String, String> headers = new HashMap<String, String>();
+        headers.put("User-Agent", "Android");
+        return client.sendGet(bitso.getBaseURL() + requestPath, headers,
+                bitso.getRateLimiter().getPublicBucket());
+    }
+
+    // Requests are signed once their permit is granted, right before they are written
+    private CompletableFuture<String> sendBitsoGet(String requestPath) {
+        return client.sendGet(bitso.getBaseURL() + requestPath, () -> {
+            HashMap<String, String> headers = new HashMap<String, String>();
+            headers.put("Authorization",
+                    bitso.buildBitsoAuthHeader(requestPath, "GET", bitso.getKey(), bitso.getSecret()));
+            headers.put("User-Agent", "Bitso-java-api");
+            return headers;
+        }, bitso.getRateLimiter().getPrivateBucket());
+    }
+
+    private CompletableFuture<String> sendBitsoPost(String requestPath, JSONObject jsonPayload) {
+        String jsonString = jsonPayload.toString();
+        return client.sendPost(bitso.getBaseURL() + requestPath, jsonString,
+                () -> bitso.signedHeaders("POST", requestPath, jsonString),
+                bitso.getRateLimiter().getPrivateBucket());
+    }
+
+    private CompletableFuture<String> sendBitsoDelete(String requestPath) {
+        return client.sendDelete(bitso.getBaseURL() + requestPath,
+                () -> bitso.signedHeaders("DELETE", requestPath, null), bitso.getRateLimiter().getPrivateBucket());
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable cause) {
+        CompletableFuture<T> failed = new CompletableFuture<T>();
+        failed.completeExceptionally(cause);
+        return failed;
+    }
+
+    private <T> CompletableFuture<T> decode(CompletableFuture<String> response, final PayloadDecoder<T> decoder) {
+        return response.thenApplyAsync(body -> {
+            try {
+                return decoder.decode(bitso.getJSONPayload(body));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, decodeExecutor);
+    }
+
+    private interface PayloadDecoder<T> {
+        T decode(Object payload);
+    }
+}
@@ -0,0 +1,233 @@
+package com.bitso;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.bitso.exceptions.BitsoAPIException;
+import com.bitso.exceptions.BitsoPayloadException;
+import com.bitso.exceptions.BitsoServerException;
+
+/**
+ * Cache of the reference data endpoints of a {@link Bitso} instance, set with {@link Bitso#setCache(BitsoCache)}:
+ * {@code available_books}, {@code fees}, {@code mx_bank_codes}, {@code account_status} and
+ * {@code funding_destination}.
+ *
+ * Responses are kept for the TTL of their endpoint. A hit on an entry past the refresh-ahead point of its TTL
+ * returns the cached value and reloads it in the background, so entries that are in steady use never expire in
+ * front of a caller. A failed background reload keeps the old value until it expires. Beyond the maximum
+ * number of entries the least recently used is evicted.
+ *
+ * Entries are keyed by request path, so a cache must not be shared between instances using different keys.
+ * Responses are kept as received and decoded on every call, so callers never share the objects returned.
+ */
+public class BitsoCache implements Closeable {
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final double DEFAULT_REFRESH_AHEAD = 0.8;
+
+    private static final String API = "/api/v3/";
+
+    private final int mMaxEntries;
+    private final ExecutorService mRefresher;
+    private final Map<String, Long> mTtls = new HashMap<String, Long>();
+    private final LinkedHashMap<String, Entry> mEntries;
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mRefreshes = new AtomicLong();
+    private volatile double mRefreshAhead = DEFAULT_REFRESH_AHEAD;
+
+    public BitsoCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries
+     *            Entries kept, the least recently used is evicted beyond this
+     */
+    public BitsoCache(int maxEntries) {
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        mRefresher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "bitso-cache-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        setTtl("available_books", 10, TimeUnit.MINUTES);
+        setTtl("fees", 5, TimeUnit.MINUTES);
+        setTtl("mx_bank_codes", 1, TimeUnit.DAYS);
+        setTtl("account_status", 1, TimeUnit.MINUTES);
+        setTtl("funding_destination", 1, TimeUnit.HOURS);
+    }
+
+    /**
+     * @param endpoint
+     *            Path of the endpoint after {@code /api/v3/}, e.g. {@code available_books}
+     * @param ttl
+     *            Time entries of the endpoint are kept, 0 to stop caching it
+     */
+    public synchronized void setTtl(String endpoint, long ttl, TimeUnit unit) {
+        mTtls.put(endpoint, unit.toNanos(ttl));
+    }
+
+    /**
+     * @param fraction
+     *            Fraction of the TTL after which a hit reloads the entry in the background, 1 or more disables
+     *            refresh-ahead
+     */
+    public void setRefreshAhead(double fraction) {
+        mRefreshAhead = fraction;
+    }
+
+    /**
+     * Drops the entries of endpoint, e.g. {@code fees} after a trade changed the volume tier.
+     */
+    public synchronized void invalidate(String endpoint) {
+        Iterator<String> paths = mEntries.keySet().iterator();
+        while (paths.hasNext()) {
+            if (endpoint(paths.next()).equals(endpoint)) {
+                paths.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        mEntries.clear();
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public long getHits() {
+        return mHits.get();
+    }
+
+    public long getMisses() {
+        return mMisses.get();
+    }
+
+    /**
+     * @return the number of background reloads that completed
+     */
+    public long getRefreshes() {
+        return mRefreshes.get();
+    }
+
+    /**
+     * Stops the background reloads.
+     */
+    @Override
+    public void close() {
+        mRefresher.shutdownNow();
+    }
+
+    /**
+     * @return the cached response of requestPath, loaded with loader when it is missing or expired
+     */
+    <T> T get(final String requestPath, final Loader<T> loader)
+            throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+        final long ttl;
+        final Entry entry;
+        synchronized (this) {
+            Long endpointTtl = mTtls.get(endpoint(requestPath));
+            ttl = (endpointTtl == null) ? 0 : endpointTtl;
+            entry = (ttl > 0) ? mEntries.get(requestPath) : null;
+        }
+        if (ttl <= 0) {
+            return loader.load();
+        }
+
+        long now = System.nanoTime();
+        if (entry != null && now - entry.mLoadedNanos < ttl) {
+            mHits.incrementAndGet();
+            if (now - entry.mLoadedNanos >= ttl * mRefreshAhead && entry.startRefresh()) {
+                try {
+                    mRefresher.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                replace(requestPath, entry, loader.load());
+                                mRefreshes.incrementAndGet();
+                            } catch (Exception e) {
+                                e.printStackTrace();
+                            } finally {
+                                entry.endRefresh();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    entry.endRefresh();
+                }
+            }
+            @SuppressWarnings("unchecked")
+            T value = (T) entry.mValue;
+            return value;
+        }
+
+        mMisses.incrementAndGet();
+        T value = loader.load();
+        put(requestPath, value);
+        return value;
+    }
+
+    private synchronized void put(String requestPath, Object value) {
+        mEntries.put(requestPath, new Entry(value, System.nanoTime()));
+        if (mEntries.size() > mMaxEntries) {
+            Iterator<String> eldest = mEntries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Puts the reloaded value of entry, unless entry was invalidated or replaced while it was reloading.
+     */
+    private synchronized void replace(String requestPath, Entry entry, Object value) {
+        if (mEntries.get(requestPath) == entry) {
+            put(requestPath, value);
+        }
+    }
+
+    private static String endpoint(String requestPath) {
+        String endpoint = requestPath.startsWith(API) ? requestPath.substring(API.length()) : requestPath;
+        int query = endpoint.indexOf('?');
+        return (query >= 0) ? endpoint.substring(0, query) : endpoint;
+    }
+
+    interface Loader<T> {
+        T load() throws BitsoAPIException, BitsoPayloadException, BitsoServerException;
+    }
+
+    private static class Entry {
+        private final Object mValue;
+        private final long mLoadedNanos;
+        private boolean mRefreshing;
+
+        private Entry(Object value, long loadedNanos) {
+            mValue = value;
+            mLoadedNanos = loadedNanos;
+        }
+
+        private synchronized boolean startRefresh() {
+            if (mRefreshing) {
+                return false;
+            }
+            mRefreshing = true;
+            return true;
+        }
+
+        private synchronized void endRefresh() {
+            mRefreshing = false;
+        }
+    }
+}
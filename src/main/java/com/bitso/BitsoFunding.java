@@ -1,6 +1,7 @@
 package com.bitso;
 
 import com.bitso.helpers.Helpers;
+import com.bitso.helpers.Iso8601;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -54,6 +55,13 @@ public class BitsoFunding {
         return fundingDate;
     }
 
+    /**
+     * @return the funding time in milliseconds since the epoch, or {@link Iso8601#INVALID} if unknown
+     */
+    public long getFundingDateMillis() {
+        return (fundingDate == null) ? Iso8601.INVALID : fundingDate.getTime();
+    }
+
     public void setFundingDate(Date fundingDate) {
         this.fundingDate = fundingDate;
     }
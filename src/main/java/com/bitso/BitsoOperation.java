@@ -1,12 +1,16 @@
 package com.bitso;
 
 import com.bitso.helpers.Helpers;
+import com.bitso.helpers.Iso8601;
+import com.bitso.json.BitsoJsonReader;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -18,6 +22,17 @@ public class BitsoOperation {
     private BalanceUpdate[] afterOperationBalances;
     private HashMap<String, String> details;
 
+    /**
+     * Balance updates are added with {@link #setAfterOperationBalances(BalanceUpdate[])}.
+     */
+    public BitsoOperation(String entryId, String operationDescription, Date operationDate,
+            HashMap<String, String> details) {
+        this.entryId = entryId;
+        this.operationDescription = operationDescription;
+        this.operationDate = operationDate;
+        this.details = details;
+    }
+
     public BitsoOperation(JSONObject o) {
         entryId = Helpers.getString(o, "eid");
         operationDescription = Helpers.getString(o, "operation");
@@ -26,6 +41,64 @@ public class BitsoOperation {
         details = retrieveOperationDetails(o.getJSONObject("details"));
     }
 
+    public BitsoOperation(BitsoJsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "eid":
+                entryId = reader.nextString();
+                break;
+            case "operation":
+                operationDescription = reader.nextSymbol();
+                break;
+            case "created_at":
+                operationDate = Helpers.parseZonedDatetime(reader.nextString());
+                break;
+            case "balance_updates":
+                afterOperationBalances = readOperationBalances(reader);
+                break;
+            case "details":
+                details = readOperationDetails(reader);
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private BalanceUpdate[] readOperationBalances(BitsoJsonReader reader) throws IOException {
+        ArrayList<BalanceUpdate> balances = new ArrayList<BalanceUpdate>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            balances.add(new BalanceUpdate(reader));
+        }
+        reader.endArray();
+        return balances.toArray(new BalanceUpdate[balances.size()]);
+    }
+
+    private HashMap<String, String> readOperationDetails(BitsoJsonReader reader) throws IOException {
+        if (reader.peek() == BitsoJsonReader.Token.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        HashMap<String, String> details = new HashMap<String, String>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String currentKey = reader.nextName();
+            // Same as retrieveOperationDetails, only string values are kept
+            if (reader.peek() == BitsoJsonReader.Token.STRING) {
+                details.put(currentKey, reader.nextString());
+            } else {
+                reader.skipValue();
+                details.put(currentKey, "-");
+            }
+        }
+        reader.endObject();
+        return details;
+    }
+
     private BalanceUpdate[] retrieveOperationBalances(JSONArray array) {
         int totalBalances = array.length();
         BalanceUpdate[] balances = new BalanceUpdate[totalBalances];
@@ -83,6 +156,13 @@ public class BitsoOperation {
         return operationDate;
     }
 
+    /**
+     * @return the operation time in milliseconds since the epoch, or {@link Iso8601#INVALID} if unknown
+     */
+    public long getOperationDateMillis() {
+        return (operationDate == null) ? Iso8601.INVALID : operationDate.getTime();
+    }
+
     public void setOperationDate(Date operationDate) {
         this.operationDate = operationDate;
     }
@@ -113,11 +193,33 @@ public class BitsoOperation {
         private String currency;
         private BigDecimal amount;
 
+        public BalanceUpdate(String currency, BigDecimal amount) {
+            this.currency = currency;
+            this.amount = amount;
+        }
+
         public BalanceUpdate(JSONObject o) {
             this.currency = Helpers.getString(o, "currency");
             this.amount = Helpers.getBD(o, "amount");
         }
 
+        public BalanceUpdate(BitsoJsonReader reader) throws IOException {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                case "currency":
+                    currency = reader.nextSymbol();
+                    break;
+                case "amount":
+                    amount = reader.nextBigDecimal();
+                    break;
+                default:
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
         public String getCurrency() {
             return currency;
         }
@@ -6,6 +6,7 @@ import java.util.Date;
 import org.json.JSONObject;
 
 import com.bitso.helpers.Helpers;
+import com.bitso.helpers.Iso8601;
 
 public class BitsoOrder {
     public static enum SIDE {
@@ -110,6 +111,13 @@ public class BitsoOrder {
         return orderDate;
     }
 
+    /**
+     * @return the creation time in milliseconds since the epoch, or {@link Iso8601#INVALID} if unknown
+     */
+    public long getOrderDateMillis() {
+        return (orderDate == null) ? Iso8601.INVALID : orderDate.getTime();
+    }
+
     public void setOrderDate(Date orderDate) {
         this.orderDate = orderDate;
     }
@@ -118,6 +126,13 @@ public class BitsoOrder {
         return updateDate;
     }
 
+    /**
+     * @return the last update time in milliseconds since the epoch, or {@link Iso8601#INVALID} if unknown
+     */
+    public long getUpdateDateMillis() {
+        return (updateDate == null) ? Iso8601.INVALID : updateDate.getTime();
+    }
+
     public void setUpdateDate(Date updateDate) {
         this.updateDate = updateDate;
     }
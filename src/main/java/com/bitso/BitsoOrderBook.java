@@ -1,6 +1,8 @@
 package com.bitso;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
 
@@ -8,6 +10,8 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import com.bitso.helpers.Helpers;
+import com.bitso.helpers.Iso8601;
+import com.bitso.json.BitsoJsonReader;
 
 public class BitsoOrderBook {
     private Date mOrderDate;
@@ -21,6 +25,40 @@ public class BitsoOrderBook {
         processOrders(o);
     }
 
+    public BitsoOrderBook(BitsoJsonReader reader) throws IOException {
+        this.mSequence = -1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "updated_at":
+                mOrderDate = Helpers.parseZonedDatetime(reader.nextString());
+                break;
+            case "sequence":
+                mSequence = reader.nextInt();
+                break;
+            case "asks":
+                mAsks = readOrders(reader);
+                break;
+            case "bids":
+                mBids = readOrders(reader);
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private PublicOrder[] readOrders(BitsoJsonReader reader) throws IOException {
+        ArrayList<PublicOrder> orders = new ArrayList<PublicOrder>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            orders.add(new PublicOrder(reader));
+        }
+        reader.endArray();
+        return orders.toArray(new PublicOrder[orders.size()]);
+    }
+
     private void processOrders(JSONObject o) {
         // Getting asks
         if (o.has("asks")) {
@@ -48,6 +86,13 @@ public class BitsoOrderBook {
         return mOrderDate;
     }
 
+    /**
+     * @return the update time in milliseconds since the epoch, or {@link Iso8601#INVALID} if unknown
+     */
+    public long getOrderDateMillis() {
+        return (mOrderDate == null) ? Iso8601.INVALID : mOrderDate.getTime();
+    }
+
     public void setOrderDate(Date mOrderDate) {
         this.mOrderDate = mOrderDate;
     }
@@ -97,6 +142,30 @@ public class BitsoOrderBook {
             }
         }
 
+        public PublicOrder(BitsoJsonReader reader) throws IOException {
+            mOrderId = "";
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                case "book":
+                    mBook = reader.nextSymbol();
+                    break;
+                case "price":
+                    mPrice = reader.nextBigDecimal();
+                    break;
+                case "amount":
+                    mAmount = reader.nextBigDecimal();
+                    break;
+                case "oid":
+                    mOrderId = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
         public String getBook() {
             return mBook;
         }
@@ -0,0 +1,48 @@
+package com.bitso;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.bitso.helpers.Helpers;
+
+/**
+ * Order books fetched together by {@link Bitso#getOrderBooks(java.util.Collection, int, boolean...)} or
+ * {@link BitsoAsync#getOrderBooks(java.util.Collection, boolean...)}. Each requested book is either in
+ * {@link #getOrderBooks()} or, when its request failed, in {@link #getErrors()}, both in request order.
+ */
+public class BitsoOrderBookSnapshots {
+    private final Map<String, BitsoOrderBook> mOrderBooks = new LinkedHashMap<String, BitsoOrderBook>();
+    private final Map<String, Throwable> mErrors = new LinkedHashMap<String, Throwable>();
+
+    void put(String book, BitsoOrderBook orderBook) {
+        mOrderBooks.put(book, orderBook);
+    }
+
+    void fail(String book, Throwable error) {
+        mErrors.put(book, error);
+    }
+
+    public Map<String, BitsoOrderBook> getOrderBooks() {
+        return Collections.unmodifiableMap(mOrderBooks);
+    }
+
+    public BitsoOrderBook getOrderBook(String book) {
+        return mOrderBooks.get(book);
+    }
+
+    /**
+     * @return the exception each failed book was fetched with, the same ones {@link Bitso#getOrderBook} throws
+     */
+    public Map<String, Throwable> getErrors() {
+        return Collections.unmodifiableMap(mErrors);
+    }
+
+    public boolean hasErrors() {
+        return !mErrors.isEmpty();
+    }
+
+    public String toString() {
+        return Helpers.fieldPrinter(this);
+    }
+}
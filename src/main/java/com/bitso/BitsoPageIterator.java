@@ -0,0 +1,202 @@
+package com.bitso;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.bitso.exceptions.BitsoPaginationException;
+
+/**
+ * Walks a paginated v3 endpoint with its {@code marker}/{@code limit} cursor. As soon as a full page arrives
+ * the request for the next one is sent on the executor, so fetching page N+1 overlaps with the caller
+ * consuming page N. At most one request per iterator is in flight and every request still goes through the
+ * rate limiter of the {@link Bitso} instance it was created from.
+ *
+ * A failed request surfaces from {@link #hasNext()} or {@link #next()} as a {@link BitsoPaginationException},
+ * calling them again requests the same page. Not thread-safe. Close the iterator, or the stream returned by
+ * {@link #stream()}, when abandoning it before the end.
+ *
+ * @param <T>
+ *            Element type of the pages
+ */
+public abstract class BitsoPageIterator<T> implements Iterator<T>, Closeable {
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final int mPageSize;
+    private final String[] mQueryParameters;
+    private final Executor mExecutor;
+    private String mMarker;
+    private T[] mPage;
+    private int mIndex;
+    private FutureTask<T[]> mNextPage;
+    private int mPages;
+    private boolean mDone;
+
+    /**
+     * @param pageSize
+     *            Elements requested per page, at most {@link #MAX_PAGE_SIZE}
+     * @param queryParameters
+     *            Filters sent with every page request, a {@code marker=} sets where the walk starts and a
+     *            {@code limit=} is replaced by pageSize
+     * @param executor
+     *            Executor where pages are requested, null to use a shared pool of daemon threads
+     */
+    protected BitsoPageIterator(int pageSize, String[] queryParameters, Executor executor) {
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        List<String> parameters = new ArrayList<String>();
+        if (queryParameters != null) {
+            for (String parameter : queryParameters) {
+                String trimmed = parameter.trim();
+                if (trimmed.startsWith("marker=")) {
+                    mMarker = trimmed.substring("marker=".length());
+                } else if (!trimmed.startsWith("limit=") && trimmed.length() > 0) {
+                    parameters.add(trimmed);
+                }
+            }
+        }
+        mPageSize = pageSize;
+        mQueryParameters = parameters.toArray(new String[parameters.size()]);
+        mExecutor = (executor == null) ? Prefetcher.INSTANCE : executor;
+    }
+
+    /**
+     * Requests one page, called on the executor.
+     *
+     * @param queryParameters
+     *            The filters followed by the {@code limit=} and, except for the first page without a marker, the
+     *            {@code marker=} of the page
+     * @return the page, null or empty when there are no more elements
+     */
+    protected abstract T[] fetch(String[] queryParameters) throws Exception;
+
+    /**
+     * @return the id of the element the next page starts after
+     */
+    protected abstract String marker(T element);
+
+    @Override
+    public boolean hasNext() {
+        while (mPage == null || mIndex == mPage.length) {
+            if (mDone) {
+                return false;
+            }
+            if (mNextPage == null) {
+                mNextPage = request(mMarker);
+            }
+            take();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return mPage[mIndex++];
+    }
+
+    /**
+     * @return the number of pages received so far
+     */
+    public int getPageCount() {
+        return mPages;
+    }
+
+    /**
+     * @return the remaining elements as a sequential stream, closing it closes this iterator
+     */
+    public Stream<T> stream() {
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+                        false)
+                .onClose(new Runnable() {
+                    @Override
+                    public void run() {
+                        close();
+                    }
+                });
+    }
+
+    /**
+     * Stops the walk, a page request in flight is left to complete but its result is discarded.
+     */
+    @Override
+    public void close() {
+        mDone = true;
+        mPage = null;
+        if (mNextPage != null) {
+            mNextPage.cancel(false);
+            mNextPage = null;
+        }
+    }
+
+    private void take() {
+        T[] page;
+        try {
+            page = mNextPage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BitsoPaginationException("Interrupted while waiting for page " + (mPages + 1), e);
+        } catch (ExecutionException e) {
+            mNextPage = null;
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BitsoPaginationException("Request of page " + (mPages + 1) + " failed", cause);
+        }
+        mNextPage = null;
+        mPages++;
+        mPage = page;
+        mIndex = 0;
+        if (page != null && page.length >= mPageSize) {
+            mMarker = marker(page[page.length - 1]);
+            mNextPage = request(mMarker);
+        } else {
+            mDone = true;
+        }
+    }
+
+    private FutureTask<T[]> request(String marker) {
+        final String[] parameters = new String[mQueryParameters.length + ((marker == null) ? 1 : 2)];
+        System.arraycopy(mQueryParameters, 0, parameters, 0, mQueryParameters.length);
+        parameters[mQueryParameters.length] = "limit=" + mPageSize;
+        if (marker != null) {
+            parameters[mQueryParameters.length + 1] = "marker=" + marker;
+        }
+        FutureTask<T[]> task = new FutureTask<T[]>(new Callable<T[]>() {
+            @Override
+            public T[] call() throws Exception {
+                return fetch(parameters);
+            }
+        });
+        mExecutor.execute(task);
+        return task;
+    }
+
+    private static class Prefetcher {
+        private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "bitso-page-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -1,10 +1,13 @@
 package com.bitso;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Date;
 
 import org.json.JSONObject;
 import com.bitso.helpers.Helpers;
+import com.bitso.helpers.Iso8601;
+import com.bitso.json.BitsoJsonReader;
 
 public class BitsoTrade {
     // TODO:
@@ -43,6 +46,53 @@ public class BitsoTrade {
         this.mMajorCurrency = Helpers.getString(o, "major_currency");
     }
 
+    public BitsoTrade(BitsoJsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "book":
+                mBook = reader.nextSymbol();
+                break;
+            case "major":
+                mMajor = reader.nextBigDecimal();
+                break;
+            case "created_at":
+                mTradeDate = Helpers.parseZonedDatetime(reader.nextString());
+                break;
+            case "minor":
+                mMinor = reader.nextBigDecimal();
+                break;
+            case "fees_amount":
+                mFeesAmount = reader.nextBigDecimal();
+                break;
+            case "fees_currency":
+                mFeesCurrency = reader.nextSymbol();
+                break;
+            case "price":
+                mPrice = reader.nextBigDecimal();
+                break;
+            case "tid":
+                mTid = reader.nextInt();
+                break;
+            case "oid":
+                mOid = reader.nextString();
+                break;
+            case "side":
+                mSide = reader.nextSymbol();
+                break;
+            case "minor_currency":
+                mMinorCurrency = reader.nextSymbol();
+                break;
+            case "major_currency":
+                mMajorCurrency = reader.nextSymbol();
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
     public int getTid() {
         return mTid;
     }
@@ -135,6 +185,13 @@ public class BitsoTrade {
         return mTradeDate;
     }
 
+    /**
+     * @return the trade time in milliseconds since the epoch, or {@link Iso8601#INVALID} if unknown
+     */
+    public long getTradeDateMillis() {
+        return (mTradeDate == null) ? Iso8601.INVALID : mTradeDate.getTime();
+    }
+
     public void setTradeDate(Date mTradeDate) {
         this.mTradeDate = mTradeDate;
     }
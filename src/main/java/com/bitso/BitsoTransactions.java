@@ -1,12 +1,16 @@
 package com.bitso;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import com.bitso.helpers.Helpers;
+import com.bitso.helpers.Iso8601;
+import com.bitso.json.BitsoJsonReader;
 
 public class BitsoTransactions {
     private Transaction[] mTransactionsList;
@@ -24,6 +28,53 @@ public class BitsoTransactions {
         }
     }
 
+    public BitsoTransactions(BitsoJsonReader reader) throws IOException {
+        ArrayList<Transaction> transactions = new ArrayList<Transaction>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            transactions.add(readTransaction(reader));
+        }
+        reader.endArray();
+        mTransactionsList = transactions.toArray(new Transaction[transactions.size()]);
+    }
+
+    private Transaction readTransaction(BitsoJsonReader reader) throws IOException {
+        Date date = null;
+        String tid = null;
+        BigDecimal price = null;
+        BigDecimal amount = null;
+        BitsoOrder.SIDE side = null;
+        String book = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "created_at":
+                date = Helpers.parseZonedDatetime(reader.nextString());
+                break;
+            case "tid":
+                tid = reader.nextString();
+                break;
+            case "price":
+                price = reader.nextBigDecimal();
+                break;
+            case "amount":
+                amount = reader.nextBigDecimal();
+                break;
+            case "maker_side":
+                side = BitsoOrder.SIDE.valueOf(reader.nextSymbol().toUpperCase());
+                break;
+            case "book":
+                book = reader.nextSymbol();
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Transaction(date, tid, price, amount, side, book);
+    }
+
     public Transaction[] getTransactionsList() {
         return mTransactionsList;
     }
@@ -65,6 +116,13 @@ public class BitsoTransactions {
             return date;
         }
 
+        /**
+         * @return the trade time in milliseconds since the epoch, or {@link Iso8601#INVALID} if unknown
+         */
+        public long getDateMillis() {
+            return (date == null) ? Iso8601.INVALID : date.getTime();
+        }
+
         public void setDate(Date date) {
             this.date = date;
         }
@@ -1,6 +1,7 @@
 package com.bitso;
 
 import com.bitso.helpers.Helpers;
+import com.bitso.helpers.Iso8601;
 
 import org.json.JSONObject;
 
@@ -48,6 +49,13 @@ public class BitsoWithdrawal {
         return withdrawalDate;
     }
 
+    /**
+     * @return the withdrawal time in milliseconds since the epoch, or {@link Iso8601#INVALID} if unknown
+     */
+    public long getWithdrawalDateMillis() {
+        return (withdrawalDate == null) ? Iso8601.INVALID : withdrawalDate.getTime();
+    }
+
     public void setWithdrawalDate(Date withdrawalDate) {
         this.withdrawalDate = withdrawalDate;
     }
@@ -0,0 +1,68 @@
+package com.bitso.auth;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free {@link NonceSource} following the wall clock. Each nonce is the larger of the current clock value
+ * and the previous nonce plus one, so callers signing in the same millisecond still get distinct, increasing
+ * values.
+ *
+ * The clock is read as twice the epoch milliseconds, the scale nonces have always been generated with, so keys
+ * used with previous versions of this library keep receiving larger nonces.
+ */
+public class AtomicNonceSource implements NonceSource {
+    private static final ConcurrentMap<String, AtomicNonceSource> SHARED =
+            new ConcurrentHashMap<String, AtomicNonceSource>();
+
+    private final AtomicLong lastNonce;
+
+    public AtomicNonceSource() {
+        this(0);
+    }
+
+    /**
+     * @param lastNonce
+     *            Nonce already used with the key, every nonce returned will be larger
+     */
+    public AtomicNonceSource(long lastNonce) {
+        this.lastNonce = new AtomicLong(Math.max(lastNonce, clock() - 1));
+    }
+
+    /**
+     * @return the source shared by every caller in this JVM signing with the given key
+     */
+    public static AtomicNonceSource forKey(String apiKey) {
+        AtomicNonceSource source = SHARED.get(apiKey);
+        if (source == null) {
+            AtomicNonceSource created = new AtomicNonceSource();
+            source = SHARED.putIfAbsent(apiKey, created);
+            if (source == null) {
+                source = created;
+            }
+        }
+        return source;
+    }
+
+    public long nextNonce() {
+        while (true) {
+            long previous = lastNonce.get();
+            long next = Math.max(previous + 1, clock());
+            if (lastNonce.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * @return the last nonce handed out
+     */
+    public long getLastNonce() {
+        return lastNonce.get();
+    }
+
+    static long clock() {
+        return System.currentTimeMillis() << 1;
+    }
+}
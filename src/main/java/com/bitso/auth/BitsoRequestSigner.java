@@ -0,0 +1,184 @@
+package com.bitso.auth;
+
+import java.nio.charset.Charset;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.bitso.exceptions.BitsoAPIException;
+
+/**
+ * Builds the HMAC-SHA256 Authorization header required by private Bitso endpoints.
+ *
+ * Each thread keeps its own initialized {@link Mac} together with the buffers used to lay out the signed message
+ * and the hex encoded signature, so signing a request does not look up the algorithm, rebuild the key or go
+ * through intermediate Strings and {@link java.math.BigInteger}. Instances are thread-safe.
+ */
+public class BitsoRequestSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int INITIAL_MESSAGE_SIZE = 512;
+
+    private final String apiKey;
+    private final SecretKeySpec secretKey;
+    private final ThreadLocal<SigningState> signingState = new ThreadLocal<SigningState>() {
+        @Override
+        protected SigningState initialValue() {
+            return new SigningState();
+        }
+    };
+
+    /**
+     * @param apiKey
+     *            Bitso API key included in the header
+     * @param secret
+     *            Bitso API secret used as the HMAC key. Requests can't be signed when it is null or empty
+     */
+    public BitsoRequestSigner(String apiKey, String secret) {
+        this.apiKey = apiKey;
+        this.secretKey = (secret == null || secret.length() == 0) ? null
+                : new SecretKeySpec(secret.getBytes(UTF_8), ALGORITHM);
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    /**
+     * @return Authorization header value in the form {@code Bitso <key>:<nonce>:<signature>}
+     */
+    public String buildAuthHeader(long nonce, String httpMethod, String requestPath, String jsonPayload)
+            throws BitsoAPIException {
+        SigningState state = state();
+        state.reset();
+        state.appendNonce(nonce);
+        state.appendString(httpMethod);
+        state.appendString(requestPath);
+        if (jsonPayload != null) {
+            state.appendString(jsonPayload);
+        }
+        return state.sign(nonce);
+    }
+
+    /**
+     * Signs a request whose payload is already encoded, avoiding a String round trip of the body.
+     *
+     * @return Authorization header value in the form {@code Bitso <key>:<nonce>:<signature>}
+     */
+    public String buildAuthHeader(long nonce, String httpMethod, String requestPath, byte[] payload,
+            int offset, int length) throws BitsoAPIException {
+        SigningState state = state();
+        state.reset();
+        state.appendNonce(nonce);
+        state.appendString(httpMethod);
+        state.appendString(requestPath);
+        if (payload != null) {
+            state.appendBytes(payload, offset, length);
+        }
+        return state.sign(nonce);
+    }
+
+    private SigningState state() throws BitsoAPIException {
+        if (apiKey == null || secretKey == null) {
+            throw new BitsoAPIException("Bitso API key or secret is empty");
+        }
+        SigningState state = signingState.get();
+        if (state.mac == null) {
+            state.init(secretKey);
+        }
+        return state;
+    }
+
+    private class SigningState {
+        private Mac mac;
+        private byte[] message = new byte[INITIAL_MESSAGE_SIZE];
+        private int length;
+        private byte[] digest;
+        private final StringBuilder header = new StringBuilder(128);
+
+        private void init(SecretKeySpec key) throws BitsoAPIException {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                digest = new byte[instance.getMacLength()];
+                mac = instance;
+            } catch (NoSuchAlgorithmException e) {
+                throw new BitsoAPIException(e);
+            } catch (InvalidKeyException e) {
+                throw new BitsoAPIException(e);
+            }
+        }
+
+        private void reset() {
+            length = 0;
+        }
+
+        private void appendNonce(long nonce) {
+            ensureCapacity(20);
+            if (nonce < 0) {
+                message[length++] = '-';
+                nonce = -nonce;
+            }
+            int start = length;
+            do {
+                message[length++] = (byte) ('0' + (nonce % 10));
+                nonce /= 10;
+            } while (nonce > 0);
+            // Digits were written least significant first
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                byte digit = message[i];
+                message[i] = message[j];
+                message[j] = digit;
+            }
+        }
+
+        private void appendString(String value) {
+            int valueLength = value.length();
+            ensureCapacity(valueLength);
+            for (int i = 0; i < valueLength; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    // Rare non ASCII payload, let the encoder deal with the remaining characters
+                    byte[] encoded = value.substring(i).getBytes(UTF_8);
+                    appendBytes(encoded, 0, encoded.length);
+                    return;
+                }
+                message[length++] = (byte) c;
+            }
+        }
+
+        private void appendBytes(byte[] bytes, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(bytes, offset, message, length, count);
+            length += count;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > message.length) {
+                byte[] larger = new byte[Math.max(message.length << 1, length + extra)];
+                System.arraycopy(message, 0, larger, 0, length);
+                message = larger;
+            }
+        }
+
+        private String sign(long nonce) throws BitsoAPIException {
+            mac.update(message, 0, length);
+            try {
+                mac.doFinal(digest, 0);
+            } catch (ShortBufferException e) {
+                throw new BitsoAPIException(e);
+            }
+
+            header.setLength(0);
+            header.append("Bitso ").append(apiKey).append(':').append(nonce).append(':');
+            for (byte b : digest) {
+                header.append(HEX[(b >> 4) & 0x0f]).append(HEX[b & 0x0f]);
+            }
+            return header.toString();
+        }
+    }
+}
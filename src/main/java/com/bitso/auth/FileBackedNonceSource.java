@@ -0,0 +1,102 @@
+package com.bitso.auth;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.bitso.exceptions.BitsoAPIException;
+
+/**
+ * {@link NonceSource} that survives restarts, even when the clock moved backwards in between.
+ *
+ * A high-water mark is kept in a file and nonces are handed out from blocks reserved ahead of time: before
+ * returning a nonce beyond the stored mark, a new mark {@code reservation} nonces further is durably written.
+ * On startup nonces resume after the stored mark, so a restarted process never reuses or goes below a nonce
+ * already sent, at the cost of skipping at most one block.
+ */
+public class FileBackedNonceSource implements NonceSource {
+    public static final long DEFAULT_RESERVATION = 10000;
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private final Path file;
+    private final long reservation;
+    private final AtomicNonceSource nonces;
+    private volatile long reservedUpTo;
+
+    public FileBackedNonceSource(Path file) throws IOException {
+        this(file, DEFAULT_RESERVATION);
+    }
+
+    /**
+     * @param file
+     *            File holding the high-water mark, created if it does not exist
+     * @param reservation
+     *            Number of nonces reserved with every write of the mark
+     */
+    public FileBackedNonceSource(Path file, long reservation) throws IOException {
+        if (reservation <= 0) {
+            throw new IllegalArgumentException("Reservation must be positive");
+        }
+        this.file = file.toAbsolutePath();
+        this.reservation = reservation;
+        this.reservedUpTo = readMark(this.file);
+        this.nonces = new AtomicNonceSource(reservedUpTo);
+    }
+
+    public long nextNonce() throws BitsoAPIException {
+        long nonce = nonces.nextNonce();
+        if (nonce >= reservedUpTo) {
+            reserve(nonce);
+        }
+        return nonce;
+    }
+
+    private synchronized void reserve(long nonce) throws BitsoAPIException {
+        if (nonce < reservedUpTo) {
+            return;
+        }
+        long mark = nonce + reservation;
+        try {
+            writeMark(mark);
+        } catch (IOException e) {
+            throw new BitsoAPIException(101, "Unable to store nonce high-water mark in " + file, e);
+        }
+        reservedUpTo = mark;
+    }
+
+    private void writeMark(long mark) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Long.toString(mark).getBytes(US_ASCII));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long readMark(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        String content = new String(Files.readAllBytes(file), US_ASCII).trim();
+        if (content.length() == 0) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(content);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid nonce high-water mark in " + file + ": " + content, e);
+        }
+    }
+}
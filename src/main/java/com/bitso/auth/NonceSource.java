@@ -0,0 +1,12 @@
+package com.bitso.auth;
+
+import com.bitso.exceptions.BitsoAPIException;
+
+/**
+ * Supplies the nonces included in signed requests. Bitso rejects any request whose nonce is not larger than the
+ * last one seen for the same API key, so implementations must return strictly increasing values even when called
+ * concurrently.
+ */
+public interface NonceSource {
+    long nextNonce() throws BitsoAPIException;
+}
@@ -0,0 +1,282 @@
+package com.bitso.book;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+import com.bitso.BitsoOrder;
+import com.bitso.BitsoOrderBook;
+import com.bitso.BitsoOrderBook.PublicOrder;
+import com.bitso.websockets.BitsoStreamDiffOrders;
+import com.bitso.websockets.BitsoWebSocketPublicOrder;
+
+/**
+ * Order book of a single book kept up to date with the {@code diff-orders} channel.
+ *
+ * Each side is a {@link TreeMap} of price levels ordered best price first, and every resting order is indexed by
+ * id, so adding, changing or removing an order costs O(log n) in the number of price levels. The best bid and
+ * ask levels are cached and read in constant time. Each level keeps the total amount and number of its orders.
+ *
+ * Load a full, non aggregated snapshot first with {@link #loadSnapshot(BitsoOrderBook)}, then {@link
+ * #apply(BitsoStreamDiffOrders)} the diffs received after it. Diffs not newer than the book are ignored; detecting
+ * gaps in the sequence is left to the caller, see {@link #getSequence()}. All methods are thread-safe.
+ */
+public class LiveOrderBook {
+    private final String mBook;
+
+    private final TreeMap<BigDecimal, PriceLevel> mBids = new TreeMap<BigDecimal, PriceLevel>(
+            Collections.<BigDecimal> reverseOrder());
+    private final TreeMap<BigDecimal, PriceLevel> mAsks = new TreeMap<BigDecimal, PriceLevel>();
+    private final HashMap<String, RestingOrder> mOrders = new HashMap<String, RestingOrder>();
+
+    private PriceLevel mBestBid;
+    private PriceLevel mBestAsk;
+    private long mSequence = -1;
+
+    public LiveOrderBook(String book) {
+        mBook = book;
+    }
+
+    /**
+     * Replaces the content of the book with a snapshot.
+     *
+     * @param snapshot
+     *            Order book obtained with {@link com.bitso.Bitso#getOrderBook(String, boolean...)} without
+     *            aggregation, so every order carries its id
+     * @throws IllegalArgumentException
+     *             if the snapshot is aggregated
+     */
+    public synchronized void loadSnapshot(BitsoOrderBook snapshot) {
+        clear();
+        loadOrders(snapshot.getBids(), BitsoOrder.SIDE.BUY);
+        loadOrders(snapshot.getAsks(), BitsoOrder.SIDE.SELL);
+        mSequence = snapshot.getSequence();
+    }
+
+    /**
+     * Applies every order of a diff, unless the book already includes it.
+     *
+     * @return false if the diff was ignored because its sequence is not newer than the book's
+     */
+    public synchronized boolean apply(BitsoStreamDiffOrders diff) {
+        int sequence = diff.getSequenceNumber();
+        if (sequence <= mSequence) {
+            return false;
+        }
+        for (BitsoWebSocketPublicOrder order : diff.getPayload()) {
+            apply(order);
+        }
+        mSequence = sequence;
+        return true;
+    }
+
+    /**
+     * Applies a single order change. An order with a zero amount is removed from the book, any other amount
+     * replaces what the book had for that order id.
+     */
+    public synchronized void apply(BitsoWebSocketPublicOrder order) {
+        String orderId = order.getOrderId();
+        if (orderId == null) {
+            return;
+        }
+        BigDecimal amount = order.getAmount();
+        if (amount == null || amount.signum() == 0) {
+            removeOrder(orderId);
+        } else {
+            putOrder(orderId, order.getSide(), order.getRate(), amount);
+        }
+    }
+
+    public synchronized void clear() {
+        mBids.clear();
+        mAsks.clear();
+        mOrders.clear();
+        mBestBid = null;
+        mBestAsk = null;
+        mSequence = -1;
+    }
+
+    public String getBook() {
+        return mBook;
+    }
+
+    /**
+     * @return sequence number of the last snapshot or diff applied, -1 if none was
+     */
+    public synchronized long getSequence() {
+        return mSequence;
+    }
+
+    /**
+     * @return the highest bid price, null if there are no bids
+     */
+    public synchronized BigDecimal getBestBidPrice() {
+        return (mBestBid == null) ? null : mBestBid.getPrice();
+    }
+
+    /**
+     * @return the lowest ask price, null if there are no asks
+     */
+    public synchronized BigDecimal getBestAskPrice() {
+        return (mBestAsk == null) ? null : mBestAsk.getPrice();
+    }
+
+    public synchronized PriceLevel getBestBid() {
+        return (mBestBid == null) ? null : mBestBid.copy();
+    }
+
+    public synchronized PriceLevel getBestAsk() {
+        return (mBestAsk == null) ? null : mBestAsk.copy();
+    }
+
+    /**
+     * @return the difference between the best ask and the best bid, null if either side is empty
+     */
+    public synchronized BigDecimal getSpread() {
+        if (mBestBid == null || mBestAsk == null) {
+            return null;
+        }
+        return mBestAsk.getPrice().subtract(mBestBid.getPrice());
+    }
+
+    /**
+     * @return up to depth bid levels, highest price first
+     */
+    public synchronized List<PriceLevel> getBids(int depth) {
+        return copyLevels(mBids, depth);
+    }
+
+    /**
+     * @return up to depth ask levels, lowest price first
+     */
+    public synchronized List<PriceLevel> getAsks(int depth) {
+        return copyLevels(mAsks, depth);
+    }
+
+    /**
+     * @return the level at the given price, null if no order rests at it
+     */
+    public synchronized PriceLevel getLevel(BitsoOrder.SIDE side, BigDecimal price) {
+        PriceLevel level = levels(side).get(price);
+        return (level == null) ? null : level.copy();
+    }
+
+    public synchronized boolean containsOrder(String orderId) {
+        return mOrders.containsKey(orderId);
+    }
+
+    public synchronized int getBidLevelCount() {
+        return mBids.size();
+    }
+
+    public synchronized int getAskLevelCount() {
+        return mAsks.size();
+    }
+
+    public synchronized int getOrderCount() {
+        return mOrders.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Book:" + mBook + ", Sequence:" + mSequence + ", Best bid:" + getBestBidPrice() + ", Best ask:"
+                + getBestAskPrice();
+    }
+
+    private void loadOrders(PublicOrder[] orders, BitsoOrder.SIDE side) {
+        if (orders == null) {
+            return;
+        }
+        for (PublicOrder order : orders) {
+            String orderId = order.getOrderId();
+            if (orderId == null || orderId.length() == 0) {
+                clear();
+                throw new IllegalArgumentException("Order book snapshot must not be aggregated");
+            }
+            putOrder(orderId, side, order.getPrice(), order.getAmount());
+        }
+    }
+
+    private void putOrder(String orderId, BitsoOrder.SIDE side, BigDecimal price, BigDecimal amount) {
+        RestingOrder existing = mOrders.get(orderId);
+        if (existing != null) {
+            if (existing.mSide == side && existing.mLevel.getPrice().compareTo(price) == 0) {
+                // Same level, only the amount changes
+                existing.mLevel.remove(existing.mAmount);
+                existing.mLevel.add(amount);
+                existing.mAmount = amount;
+                return;
+            }
+            removeOrder(orderId);
+        }
+
+        TreeMap<BigDecimal, PriceLevel> levels = levels(side);
+        PriceLevel level = levels.get(price);
+        if (level == null) {
+            level = new PriceLevel(side, price);
+            levels.put(price, level);
+            updateBestOnInsert(side, level);
+        }
+        level.add(amount);
+        mOrders.put(orderId, new RestingOrder(side, level, amount));
+    }
+
+    private void removeOrder(String orderId) {
+        RestingOrder order = mOrders.remove(orderId);
+        if (order == null) {
+            return;
+        }
+        PriceLevel level = order.mLevel;
+        level.remove(order.mAmount);
+        if (level.isEmpty()) {
+            TreeMap<BigDecimal, PriceLevel> levels = levels(order.mSide);
+            levels.remove(level.getPrice());
+            if (order.mSide == BitsoOrder.SIDE.BUY) {
+                if (level == mBestBid) {
+                    mBestBid = levels.isEmpty() ? null : levels.firstEntry().getValue();
+                }
+            } else if (level == mBestAsk) {
+                mBestAsk = levels.isEmpty() ? null : levels.firstEntry().getValue();
+            }
+        }
+    }
+
+    private void updateBestOnInsert(BitsoOrder.SIDE side, PriceLevel level) {
+        if (side == BitsoOrder.SIDE.BUY) {
+            if (mBestBid == null || level.getPrice().compareTo(mBestBid.getPrice()) > 0) {
+                mBestBid = level;
+            }
+        } else if (mBestAsk == null || level.getPrice().compareTo(mBestAsk.getPrice()) < 0) {
+            mBestAsk = level;
+        }
+    }
+
+    private TreeMap<BigDecimal, PriceLevel> levels(BitsoOrder.SIDE side) {
+        return (side == BitsoOrder.SIDE.BUY) ? mBids : mAsks;
+    }
+
+    private static List<PriceLevel> copyLevels(TreeMap<BigDecimal, PriceLevel> levels, int depth) {
+        ArrayList<PriceLevel> copies = new ArrayList<PriceLevel>(Math.min(Math.max(depth, 0), levels.size()));
+        Iterator<PriceLevel> iterator = levels.values().iterator();
+        while (iterator.hasNext() && copies.size() < depth) {
+            copies.add(iterator.next().copy());
+        }
+        return copies;
+    }
+
+    private static class RestingOrder {
+        private final BitsoOrder.SIDE mSide;
+        private final PriceLevel mLevel;
+        private BigDecimal mAmount;
+
+        private RestingOrder(BitsoOrder.SIDE side, PriceLevel level, BigDecimal amount) {
+            mSide = side;
+            mLevel = level;
+            mAmount = amount;
+        }
+    }
+}
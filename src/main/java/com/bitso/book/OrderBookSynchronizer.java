@@ -0,0 +1,329 @@
+package com.bitso.book;
+
+import java.util.ArrayDeque;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.bitso.Bitso;
+import com.bitso.BitsoOrderBook;
+import com.bitso.websockets.BitsoChannels;
+import com.bitso.websockets.BitsoDiffOrdersListener;
+import com.bitso.websockets.BitsoStreamDiffOrders;
+
+/**
+ * Keeps a {@link LiveOrderBook} consistent with the exchange by combining REST snapshots with the
+ * {@code diff-orders} channel.
+ *
+ * Diffs received while a snapshot is being fetched are buffered. Once the snapshot arrives, buffered diffs at or
+ * below its sequence are discarded and the rest applied in order. From then on every diff must follow the
+ * previous one; a gap in the sequence triggers a new snapshot, buffering again in the meantime. Snapshots are
+ * fetched on a separate executor, so the thread delivering diffs, usually the WebSocket IO thread, never waits
+ * on a REST call.
+ *
+ * Diffs can be passed to {@link #onDiff(BitsoStreamDiffOrders)}, or the synchronizer registered as a listener of
+ * its book or as an {@link Observer} of a {@link com.bitso.websockets.BitsoWebSocket} subscribed to the book's
+ * diff-orders channel.
+ */
+public class OrderBookSynchronizer implements Observer, BitsoDiffOrdersListener {
+    public static final int DEFAULT_MAX_BUFFERED_DIFFS = 10000;
+    public static final long DEFAULT_RETRY_DELAY_MS = 1000;
+    public static final long MAX_RETRY_DELAY_MS = 30000;
+
+    public interface Listener {
+        /**
+         * Called after a snapshot and the diffs buffered while fetching it were applied.
+         */
+        void onSynchronized(LiveOrderBook book);
+
+        /**
+         * Called after each diff applied once the book is synchronized.
+         */
+        void onUpdate(LiveOrderBook book, BitsoStreamDiffOrders diff);
+
+        /**
+         * Called when the book stops being reliable, until the next {@link #onSynchronized(LiveOrderBook)}.
+         *
+         * @param expectedSequence
+         *            Sequence the next diff should have had, -1 if the resync was not caused by a gap
+         * @param receivedSequence
+         *            Sequence of the diff received instead, -1 if the resync was not caused by a gap
+         */
+        void onOutOfSync(LiveOrderBook book, long expectedSequence, long receivedSequence);
+    }
+
+    private enum State {
+        STOPPED, SYNCHRONIZING, SYNCHRONIZED
+    }
+
+    private final LiveOrderBook mBook;
+    private final Callable<BitsoOrderBook> mSnapshotSource;
+    private final ScheduledExecutorService mExecutor;
+    private final boolean mOwnsExecutor;
+    private final int mMaxBufferedDiffs;
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+
+    // Guarded by this
+    private final ArrayDeque<BitsoStreamDiffOrders> mBuffer = new ArrayDeque<BitsoStreamDiffOrders>();
+    private State mState = State.STOPPED;
+    private long mGeneration;
+    private long mRetryDelayMs = DEFAULT_RETRY_DELAY_MS;
+
+    /**
+     * Fetches snapshots with {@link Bitso#getOrderBook(String, boolean...)} on a dedicated daemon thread.
+     */
+    public OrderBookSynchronizer(final Bitso bitso, final String book) {
+        this(new LiveOrderBook(book), new Callable<BitsoOrderBook>() {
+            public BitsoOrderBook call() throws Exception {
+                return bitso.getOrderBook(book, false);
+            }
+        }, null, DEFAULT_MAX_BUFFERED_DIFFS);
+    }
+
+    /**
+     * @param book
+     *            Book kept in sync
+     * @param snapshotSource
+     *            Fetches a non aggregated snapshot of the book
+     * @param executor
+     *            Executor where snapshots are fetched and applied, null to use a dedicated daemon thread that is
+     *            shut down by {@link #stop()}
+     * @param maxBufferedDiffs
+     *            Diffs kept while a snapshot is in flight, the oldest are dropped beyond this
+     */
+    public OrderBookSynchronizer(LiveOrderBook book, Callable<BitsoOrderBook> snapshotSource,
+            ScheduledExecutorService executor, int maxBufferedDiffs) {
+        mBook = book;
+        mSnapshotSource = snapshotSource;
+        mOwnsExecutor = (executor == null);
+        mExecutor = mOwnsExecutor ? Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "bitso-book-sync-" + mBook.getBook());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }) : executor;
+        mMaxBufferedDiffs = maxBufferedDiffs;
+    }
+
+    public LiveOrderBook getBook() {
+        return mBook;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Starts buffering diffs and fetches the first snapshot. Subscribe to the diff-orders channel before
+     * calling this, so no diff between the snapshot and the subscription is missed.
+     */
+    public synchronized void start() {
+        if (mState == State.STOPPED) {
+            resync(0);
+        }
+    }
+
+    /**
+     * Stops applying diffs. A snapshot still in flight is discarded.
+     */
+    public void stop() {
+        synchronized (this) {
+            mState = State.STOPPED;
+            mGeneration++;
+            mBuffer.clear();
+        }
+        if (mOwnsExecutor) {
+            mExecutor.shutdownNow();
+        }
+    }
+
+    public synchronized boolean isSynchronized() {
+        return mState == State.SYNCHRONIZED;
+    }
+
+    /**
+     * Forces a new snapshot, e.g. after the WebSocket connection was reestablished.
+     */
+    public void resync() {
+        synchronized (this) {
+            if (mState == State.STOPPED) {
+                return;
+            }
+            resync(0);
+        }
+        notifyOutOfSync(-1, -1);
+    }
+
+    public void onDiff(BitsoStreamDiffOrders diff) {
+        long expected;
+        synchronized (this) {
+            switch (mState) {
+            case STOPPED:
+                return;
+            case SYNCHRONIZING:
+                buffer(diff);
+                return;
+            default:
+                expected = mBook.getSequence() + 1;
+                int sequence = diff.getSequenceNumber();
+                if (sequence < expected) {
+                    // Already part of the book
+                    return;
+                }
+                if (sequence == expected) {
+                    mBook.apply(diff);
+                    break;
+                }
+                resync(0);
+                buffer(diff);
+            }
+        }
+
+        if (diff.getSequenceNumber() == expected) {
+            for (Listener listener : mListeners) {
+                listener.onUpdate(mBook, diff);
+            }
+        } else {
+            notifyOutOfSync(expected, diff.getSequenceNumber());
+        }
+    }
+
+    public void onDiffOrders(BitsoStreamDiffOrders diffOrders) {
+        if (mBook.getBook().equals(diffOrders.getBitsoBook())) {
+            onDiff(diffOrders);
+        }
+    }
+
+    /**
+     * Receives the messages of a {@link com.bitso.websockets.BitsoWebSocket}, diffs of other books or channels
+     * are ignored.
+     */
+    public void update(Observable observable, Object arg) {
+        if (!(arg instanceof String)) {
+            return;
+        }
+        try {
+            JSONObject jsonObject = new JSONObject((String) arg);
+            if (jsonObject.has("action") || !jsonObject.has("payload")
+                    || !BitsoChannels.DIFF_ORDERS.toString().equals(jsonObject.optString("type"))
+                    || !mBook.getBook().equals(jsonObject.optString("book"))) {
+                return;
+            }
+            onDiff(new BitsoStreamDiffOrders(jsonObject));
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Must hold the lock
+    private void resync(long delayMs) {
+        mState = State.SYNCHRONIZING;
+        mBuffer.clear();
+        final long generation = ++mGeneration;
+        mExecutor.schedule(new Runnable() {
+            public void run() {
+                fetchSnapshot(generation);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void buffer(BitsoStreamDiffOrders diff) {
+        if (mBuffer.size() == mMaxBufferedDiffs) {
+            mBuffer.pollFirst();
+        }
+        mBuffer.addLast(diff);
+    }
+
+    private void fetchSnapshot(long generation) {
+        BitsoOrderBook snapshot;
+        try {
+            snapshot = mSnapshotSource.call();
+        } catch (Exception e) {
+            e.printStackTrace();
+            synchronized (this) {
+                if (generation == mGeneration) {
+                    retryLater();
+                }
+            }
+            return;
+        }
+
+        long expected = -1;
+        long received = -1;
+        boolean loadFailed = false;
+        synchronized (this) {
+            if (generation != mGeneration) {
+                return;
+            }
+            try {
+                mBook.loadSnapshot(snapshot);
+            } catch (RuntimeException e) {
+                // E.g. an aggregated snapshot, which leaves the book empty
+                e.printStackTrace();
+                loadFailed = true;
+            }
+            while (!loadFailed && !mBuffer.isEmpty()) {
+                BitsoStreamDiffOrders diff = mBuffer.pollFirst();
+                long next = mBook.getSequence() + 1;
+                if (diff.getSequenceNumber() < next) {
+                    continue;
+                }
+                if (diff.getSequenceNumber() > next) {
+                    // The snapshot is older than the first diff received, try again
+                    expected = next;
+                    received = diff.getSequenceNumber();
+                    mBuffer.addFirst(diff);
+                    break;
+                }
+                mBook.apply(diff);
+            }
+            if (loadFailed || expected != -1) {
+                retryLater();
+            } else {
+                mState = State.SYNCHRONIZED;
+                mRetryDelayMs = DEFAULT_RETRY_DELAY_MS;
+            }
+        }
+
+        if (loadFailed) {
+            notifyOutOfSync(-1, -1);
+        } else if (expected != -1) {
+            notifyOutOfSync(expected, received);
+        } else {
+            for (Listener listener : mListeners) {
+                listener.onSynchronized(mBook);
+            }
+        }
+    }
+
+    // Must hold the lock. Keeps buffering, the buffered diffs may still follow the next snapshot
+    private void retryLater() {
+        long delayMs = mRetryDelayMs;
+        mRetryDelayMs = Math.min(mRetryDelayMs * 2, MAX_RETRY_DELAY_MS);
+        final long generation = ++mGeneration;
+        mExecutor.schedule(new Runnable() {
+            public void run() {
+                fetchSnapshot(generation);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void notifyOutOfSync(long expectedSequence, long receivedSequence) {
+        for (Listener listener : mListeners) {
+            listener.onOutOfSync(mBook, expectedSequence, receivedSequence);
+        }
+    }
+}
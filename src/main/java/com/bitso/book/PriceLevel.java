@@ -0,0 +1,70 @@
+package com.bitso.book;
+
+import java.math.BigDecimal;
+
+import com.bitso.BitsoOrder;
+
+/**
+ * All the orders resting at one price on one side of a {@link LiveOrderBook}, with their amounts added up.
+ *
+ * Levels handed out by {@link LiveOrderBook} are copies, they don't change when the book does.
+ */
+public class PriceLevel {
+    private final BitsoOrder.SIDE mSide;
+    private final BigDecimal mPrice;
+    private BigDecimal mAmount;
+    private int mOrderCount;
+
+    PriceLevel(BitsoOrder.SIDE side, BigDecimal price) {
+        this(side, price, BigDecimal.ZERO, 0);
+    }
+
+    PriceLevel(BitsoOrder.SIDE side, BigDecimal price, BigDecimal amount, int orderCount) {
+        mSide = side;
+        mPrice = price;
+        mAmount = amount;
+        mOrderCount = orderCount;
+    }
+
+    void add(BigDecimal amount) {
+        mAmount = mAmount.add(amount);
+        mOrderCount++;
+    }
+
+    void remove(BigDecimal amount) {
+        mAmount = mAmount.subtract(amount);
+        mOrderCount--;
+    }
+
+    boolean isEmpty() {
+        return mOrderCount == 0;
+    }
+
+    PriceLevel copy() {
+        return new PriceLevel(mSide, mPrice, mAmount, mOrderCount);
+    }
+
+    public BitsoOrder.SIDE getSide() {
+        return mSide;
+    }
+
+    public BigDecimal getPrice() {
+        return mPrice;
+    }
+
+    /**
+     * @return the sum of the amounts of every order at this price
+     */
+    public BigDecimal getAmount() {
+        return mAmount;
+    }
+
+    public int getOrderCount() {
+        return mOrderCount;
+    }
+
+    @Override
+    public String toString() {
+        return "Price:" + mPrice + ", Amount:" + mAmount + ", Orders:" + mOrderCount;
+    }
+}
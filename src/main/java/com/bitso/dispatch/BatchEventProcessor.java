@@ -0,0 +1,65 @@
+package com.bitso.dispatch;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs an {@link EventHandler} over every entry published to a {@link RingBuffer}, in order and in batches of
+ * whatever is available. Its {@link Sequence} gates the producer, so register the processor with
+ * {@link RingBuffer#addGatingSequence(Sequence)} before publishing.
+ *
+ * Exceptions thrown by the handler are printed and the entry skipped, a failing consumer must not stall the ring.
+ */
+public class BatchEventProcessor<E> implements Runnable {
+    private final RingBuffer<E> mRingBuffer;
+    private final EventHandler<? super E> mHandler;
+    private final Sequence mSequence = new Sequence(-1);
+    private final AtomicBoolean mRunning = new AtomicBoolean(false);
+
+    public BatchEventProcessor(RingBuffer<E> ringBuffer, EventHandler<? super E> handler) {
+        mRingBuffer = ringBuffer;
+        mHandler = handler;
+    }
+
+    public Sequence getSequence() {
+        return mSequence;
+    }
+
+    public boolean isRunning() {
+        return mRunning.get();
+    }
+
+    /**
+     * Stops after the current batch. Entries published afterwards are not processed.
+     */
+    public void halt() {
+        mRunning.set(false);
+        mRingBuffer.getWaitStrategy().signalAllWhenBlocking();
+    }
+
+    public void run() {
+        if (!mRunning.compareAndSet(false, true)) {
+            throw new IllegalStateException("Processor is already running");
+        }
+        WaitStrategy waitStrategy = mRingBuffer.getWaitStrategy();
+        Sequence cursor = mRingBuffer.getCursor();
+        long next = mSequence.get() + 1;
+        try {
+            while (mRunning.get()) {
+                long available = waitStrategy.waitFor(next, cursor, mRunning);
+                while (next <= available) {
+                    try {
+                        mHandler.onEvent(mRingBuffer.get(next), next, next == available);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                    next++;
+                }
+                mSequence.set(next - 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            mRunning.set(false);
+        }
+    }
+}
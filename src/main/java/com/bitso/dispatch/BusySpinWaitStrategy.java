@@ -0,0 +1,21 @@
+package com.bitso.dispatch;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks the producer in a tight loop. Lowest latency, but each consumer keeps a core busy, so use it only with
+ * as many consumers as spare cores.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    public long waitFor(long sequence, Sequence cursor, AtomicBoolean running) {
+        long available;
+        while ((available = cursor.get()) < sequence && running.get()) {
+            // Spin
+        }
+        return available;
+    }
+
+    public void signalAllWhenBlocking() {
+    }
+}
@@ -0,0 +1,8 @@
+package com.bitso.dispatch;
+
+/**
+ * Creates the entries a {@link RingBuffer} is filled with up front.
+ */
+public interface EventFactory<E> {
+    E newInstance();
+}
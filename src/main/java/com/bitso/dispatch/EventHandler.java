@@ -0,0 +1,16 @@
+package com.bitso.dispatch;
+
+/**
+ * Consumes the entries of a {@link RingBuffer} on the thread of its {@link BatchEventProcessor}.
+ */
+public interface EventHandler<E> {
+    /**
+     * @param event
+     *            Entry of the ring, it is reused once the handler returns so it must not be kept
+     * @param sequence
+     *            Sequence the entry was published with
+     * @param endOfBatch
+     *            true for the last entry available, useful to flush work done per batch
+     */
+    void onEvent(E event, long sequence, boolean endOfBatch) throws Exception;
+}
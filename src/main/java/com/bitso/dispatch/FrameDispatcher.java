@@ -0,0 +1,118 @@
+package com.bitso.dispatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+
+import com.bitso.websockets.BitsoStreamRouter;
+
+/**
+ * Hands the frames read by a {@link com.bitso.websockets.BitsoWebSocket} to handlers running on their own threads.
+ *
+ * The IO thread only copies a reference and a timestamp into a pre-allocated {@link RingBuffer}, so a slow handler
+ * no longer delays reading the socket until the ring fills up. Every handler sees every frame, in order, on a
+ * dedicated daemon thread waiting with the given {@link WaitStrategy}.
+ */
+public class FrameDispatcher {
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private final RingBuffer<FrameEvent> mRingBuffer;
+    private final List<BatchEventProcessor<FrameEvent>> mProcessors =
+            new ArrayList<BatchEventProcessor<FrameEvent>>();
+    private final List<Thread> mThreads = new ArrayList<Thread>();
+    private boolean mStarted;
+
+    public FrameDispatcher() {
+        this(DEFAULT_BUFFER_SIZE, new BlockingWaitStrategy());
+    }
+
+    /**
+     * @param bufferSize
+     *            Frames the ring holds, must be a power of 2
+     * @param waitStrategy
+     *            {@link BlockingWaitStrategy}, {@link YieldingWaitStrategy} or {@link BusySpinWaitStrategy}
+     */
+    public FrameDispatcher(int bufferSize, WaitStrategy waitStrategy) {
+        mRingBuffer = new RingBuffer<FrameEvent>(FrameEvent.FACTORY, bufferSize, waitStrategy);
+    }
+
+    /**
+     * Adds a handler with its own thread, handlers can't be added once the dispatcher started.
+     */
+    public synchronized FrameDispatcher addHandler(EventHandler<? super FrameEvent> handler) {
+        if (mStarted) {
+            throw new IllegalStateException("Handlers must be added before starting the dispatcher");
+        }
+        BatchEventProcessor<FrameEvent> processor = new BatchEventProcessor<FrameEvent>(mRingBuffer, handler);
+        mRingBuffer.addGatingSequence(processor.getSequence());
+        mProcessors.add(processor);
+        return this;
+    }
+
+    public synchronized void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        for (int i = 0; i < mProcessors.size(); i++) {
+            Thread thread = new Thread(mProcessors.get(i), "bitso-dispatch-" + i);
+            thread.setDaemon(true);
+            mThreads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops every handler thread. Frames published afterwards are dropped.
+     */
+    public synchronized void stop() throws InterruptedException {
+        for (BatchEventProcessor<FrameEvent> processor : mProcessors) {
+            processor.halt();
+            mRingBuffer.removeGatingSequence(processor.getSequence());
+        }
+        for (Thread thread : mThreads) {
+            thread.join();
+        }
+        mThreads.clear();
+    }
+
+    public void publish(String message) {
+        publish(message, System.nanoTime());
+    }
+
+    /**
+     * Must only be called from one thread at a time, normally the IO thread of the socket.
+     */
+    public void publish(String message, long receivedNanos) {
+        long sequence = mRingBuffer.next();
+        mRingBuffer.get(sequence).set(message, receivedNanos);
+        mRingBuffer.publish(sequence);
+    }
+
+    public RingBuffer<FrameEvent> getRingBuffer() {
+        return mRingBuffer;
+    }
+
+    /**
+     * @return a handler decoding and routing frames to the listeners of a router
+     */
+    public static EventHandler<FrameEvent> routeTo(final BitsoStreamRouter router) {
+        return new EventHandler<FrameEvent>() {
+            public void onEvent(FrameEvent event, long sequence, boolean endOfBatch) {
+                router.route(event.getMessage());
+            }
+        };
+    }
+
+    /**
+     * @return a handler passing raw frames to an observer, as {@link Observable#notifyObservers(Object)} would
+     */
+    public static EventHandler<FrameEvent> notify(final Observer observer, final Observable source) {
+        return new EventHandler<FrameEvent>() {
+            public void onEvent(FrameEvent event, long sequence, boolean endOfBatch) {
+                observer.update(source, event.getMessage());
+            }
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package com.bitso.dispatch;
+
+/**
+ * Entry of a {@link FrameDispatcher}: a text frame and when it was received. Entries are reused, copy what must
+ * outlive {@link EventHandler#onEvent(Object, long, boolean)}.
+ */
+public class FrameEvent {
+    public static final EventFactory<FrameEvent> FACTORY = new EventFactory<FrameEvent>() {
+        public FrameEvent newInstance() {
+            return new FrameEvent();
+        }
+    };
+
+    private String mMessage;
+    private long mReceivedNanos;
+
+    public void set(String message, long receivedNanos) {
+        mMessage = message;
+        mReceivedNanos = receivedNanos;
+    }
+
+    public String getMessage() {
+        return mMessage;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the frame was read from the socket
+     */
+    public long getReceivedNanos() {
+        return mReceivedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return mMessage;
+    }
+}
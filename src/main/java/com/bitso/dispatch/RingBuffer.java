@@ -0,0 +1,122 @@
+package com.bitso.dispatch;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed size ring of pre-allocated entries written by a single producer and read by any number of
+ * {@link BatchEventProcessor}s, each on its own thread.
+ *
+ * The producer claims a sequence with {@link #next()}, fills the entry returned by {@link #get(long)} and makes it
+ * visible with {@link #publish(long)}. Nothing is allocated or locked on that path. When the ring is full the
+ * producer waits for the slowest consumer, so size the ring for the longest burst consumers may fall behind.
+ *
+ * Only one thread may publish at a time; switching producer threads is fine as long as there is a happens-before
+ * edge between them, e.g. a task handed from one to the other.
+ */
+public class RingBuffer<E> {
+    private final Object[] mEntries;
+    private final int mMask;
+    private final WaitStrategy mWaitStrategy;
+    private final Sequence mCursor = new Sequence(-1);
+    private volatile Sequence[] mGatingSequences = new Sequence[0];
+
+    // Only touched by the producer
+    private long mNextSequence = -1;
+    private long mCachedGatingSequence = -1;
+
+    /**
+     * @param bufferSize
+     *            Number of entries, must be a power of 2
+     */
+    public RingBuffer(EventFactory<E> factory, int bufferSize, WaitStrategy waitStrategy) {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Buffer size must be a power of 2: " + bufferSize);
+        }
+        mEntries = new Object[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            mEntries[i] = factory.newInstance();
+        }
+        mMask = bufferSize - 1;
+        mWaitStrategy = waitStrategy;
+    }
+
+    /**
+     * Claims the next sequence, waiting while the ring is full.
+     */
+    public long next() {
+        long next = mNextSequence + 1;
+        long wrapPoint = next - mEntries.length;
+        if (wrapPoint > mCachedGatingSequence) {
+            long minimum;
+            while (wrapPoint > (minimum = getMinimumGatingSequence(mNextSequence))) {
+                LockSupport.parkNanos(1);
+            }
+            mCachedGatingSequence = minimum;
+        }
+        mNextSequence = next;
+        return next;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) mEntries[(int) sequence & mMask];
+    }
+
+    /**
+     * Makes the entry of sequence, and every one claimed before it, visible to consumers.
+     */
+    public void publish(long sequence) {
+        mCursor.set(sequence);
+        mWaitStrategy.signalAllWhenBlocking();
+    }
+
+    public Sequence getCursor() {
+        return mCursor;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return mWaitStrategy;
+    }
+
+    public int getBufferSize() {
+        return mEntries.length;
+    }
+
+    /**
+     * @return entries the producer can claim before waiting for consumers
+     */
+    public long remainingCapacity() {
+        long consumed = getMinimumGatingSequence(mCursor.get());
+        return mEntries.length - (mCursor.get() - consumed);
+    }
+
+    /**
+     * Makes the producer wait for sequence before overwriting entries, add it before publishing anything.
+     */
+    public synchronized void addGatingSequence(Sequence sequence) {
+        Sequence[] gating = Arrays.copyOf(mGatingSequences, mGatingSequences.length + 1);
+        gating[gating.length - 1] = sequence;
+        mGatingSequences = gating;
+    }
+
+    public synchronized void removeGatingSequence(Sequence sequence) {
+        Sequence[] gating = mGatingSequences;
+        for (int i = 0; i < gating.length; i++) {
+            if (gating[i] == sequence) {
+                Sequence[] remaining = new Sequence[gating.length - 1];
+                System.arraycopy(gating, 0, remaining, 0, i);
+                System.arraycopy(gating, i + 1, remaining, i, gating.length - i - 1);
+                mGatingSequences = remaining;
+                return;
+            }
+        }
+    }
+
+    private long getMinimumGatingSequence(long minimum) {
+        for (Sequence sequence : mGatingSequences) {
+            minimum = Math.min(minimum, sequence.get());
+        }
+        return minimum;
+    }
+}
@@ -0,0 +1,50 @@
+package com.bitso.dispatch;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+class SequenceLeftPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+class SequenceValue extends SequenceLeftPadding {
+    protected volatile long mValue;
+}
+
+class SequenceRightPadding extends SequenceValue {
+    protected long p9, p10, p11, p12, p13, p14, p15;
+}
+
+/**
+ * Position of a producer or consumer in a {@link RingBuffer}.
+ *
+ * The value is padded on both sides so that sequences updated by different threads never share a cache line.
+ */
+public class Sequence extends SequenceRightPadding {
+    private static final AtomicLongFieldUpdater<SequenceValue> UPDATER = AtomicLongFieldUpdater
+            .newUpdater(SequenceValue.class, "mValue");
+
+    public Sequence(long initialValue) {
+        mValue = initialValue;
+    }
+
+    public long get() {
+        return mValue;
+    }
+
+    /**
+     * Publishes the value with a store-store barrier only, cheaper than a volatile write but still seen in
+     * order by readers.
+     */
+    public void set(long value) {
+        UPDATER.lazySet(this, value);
+    }
+
+    public void setVolatile(long value) {
+        mValue = value;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(mValue);
+    }
+}
@@ -0,0 +1,21 @@
+package com.bitso.dispatch;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * How a consumer waits for the producer of a {@link RingBuffer}, trading latency for CPU use.
+ */
+public interface WaitStrategy {
+    /**
+     * Waits until sequence is published or running turns false.
+     *
+     * @return the highest sequence published, lower than sequence only when the wait stopped because running
+     *         turned false
+     */
+    long waitFor(long sequence, Sequence cursor, AtomicBoolean running) throws InterruptedException;
+
+    /**
+     * Wakes up consumers blocked in {@link #waitFor(long, Sequence, AtomicBoolean)}, called on every publication.
+     */
+    void signalAllWhenBlocking();
+}
@@ -0,0 +1,27 @@
+package com.bitso.dispatch;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Spins for a while, then yields the CPU between checks. Low latency without monopolizing a core when other
+ * threads need it.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+
+    public long waitFor(long sequence, Sequence cursor, AtomicBoolean running) {
+        int counter = SPIN_TRIES;
+        long available;
+        while ((available = cursor.get()) < sequence && running.get()) {
+            if (counter > 0) {
+                counter--;
+            } else {
+                Thread.yield();
+            }
+        }
+        return available;
+    }
+
+    public void signalAllWhenBlocking() {
+    }
+}
@@ -0,0 +1,13 @@
+package com.bitso.exceptions;
+
+/**
+ * Thrown from an iterator walking a paginated endpoint when one of its page requests fails, the original
+ * {@link BitsoAPIException}, {@link BitsoPayloadException} or {@link BitsoServerException} is the cause.
+ */
+public class BitsoPaginationException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public BitsoPaginationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
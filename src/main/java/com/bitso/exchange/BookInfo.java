@@ -7,6 +7,10 @@ import org.json.JSONObject;
 import com.bitso.helpers.Helpers;
 
 public class BookInfo {
+    /**
+     * Scale used when a book does not report its limits.
+     */
+    public static final int DEFAULT_SCALE = 8;
 
     private String mBook;
     private BigDecimal mMinAmount;
@@ -82,6 +86,47 @@ public class BookInfo {
         this.mMaxValue = mMaxValue;
     }
 
+    /**
+     * @return decimals of prices in this book, the most used by its minimum and maximum price
+     */
+    public int getPriceScale() {
+        return scale(mMinPrice, mMaxPrice);
+    }
+
+    /**
+     * @return decimals of amounts in this book, the most used by its minimum and maximum amount
+     */
+    public int getAmountScale() {
+        return scale(mMinAmount, mMaxAmount);
+    }
+
+    /**
+     * @return decimals of values in this book, those of a price times an amount, reduced when needed so that the
+     *         maximum value still fits in a long at that scale
+     */
+    public int getValueScale() {
+        int scale = getPriceScale() + getAmountScale();
+        if (mMaxValue != null && mMaxValue.signum() > 0) {
+            int integerDigits = Math.max(mMaxValue.precision() - mMaxValue.scale(), 1);
+            scale = Math.min(scale, 18 - integerDigits);
+        }
+        return scale;
+    }
+
+    private static int scale(BigDecimal minimum, BigDecimal maximum) {
+        if (minimum == null && maximum == null) {
+            return DEFAULT_SCALE;
+        }
+        int scale = 0;
+        if (minimum != null) {
+            scale = Math.max(scale, minimum.scale());
+        }
+        if (maximum != null) {
+            scale = Math.max(scale, maximum.scale());
+        }
+        return scale;
+    }
+
     public String toString() {
         return Helpers.fieldPrinter(this, BookInfo.class);
     }
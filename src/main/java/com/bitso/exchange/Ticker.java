@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.util.Date;
 
 import com.bitso.helpers.Helpers;
+import com.bitso.helpers.Iso8601;
 
 public class Ticker {
 
@@ -76,6 +77,13 @@ public class Ticker {
         return mCreatedAt;
     }
 
+    /**
+     * @return the creation time in milliseconds since the epoch, or {@link Iso8601#INVALID} if unknown
+     */
+    public long getCreatedAtMillis() {
+        return (mCreatedAt == null) ? Iso8601.INVALID : mCreatedAt.getTime();
+    }
+
     public void setCreatedAt(Date mCreatedAt) {
         this.mCreatedAt = mCreatedAt;
     }
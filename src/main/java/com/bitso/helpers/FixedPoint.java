@@ -0,0 +1,165 @@
+package com.bitso.helpers;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Decimal values carried as a long scaled by a power of ten, e.g. 46850.01 at scale 2 is 4685001.
+ *
+ * Parsing works straight on the characters of the JSON text and allocates nothing unless the value has more
+ * than 18 significant digits. Digits beyond the requested scale are rounded half up.
+ */
+public final class FixedPoint {
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    public static long parse(CharSequence text, int scale) {
+        int length = text.length();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = text.charAt(i);
+        }
+        return parse(chars, 0, length, scale);
+    }
+
+    /**
+     * Parses a decimal number, with an optional sign, fraction and exponent.
+     *
+     * @throws NumberFormatException
+     *             if the text is not a number
+     * @throws ArithmeticException
+     *             if the scaled value does not fit in a long
+     */
+    public static long parse(char[] chars, int offset, int length, int scale) {
+        int i = offset;
+        int end = offset + length;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int mantissaScale = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa != 0 || c != '0') {
+                    if (++significantDigits > 18) {
+                        return parseLarge(chars, offset, length, scale);
+                    }
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    mantissaScale++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c == 'e' || c == 'E') {
+                break;
+            } else {
+                throw invalid(chars, offset, length);
+            }
+        }
+        if (digits == 0) {
+            throw invalid(chars, offset, length);
+        }
+
+        int exponent = 0;
+        if (i < end) {
+            // Exponent
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+                negativeExponent = chars[i] == '-';
+                i++;
+            }
+            if (i == end) {
+                throw invalid(chars, offset, length);
+            }
+            for (; i < end; i++) {
+                char c = chars[i];
+                if (c < '0' || c > '9' || exponent > 1000) {
+                    throw invalid(chars, offset, length);
+                }
+                exponent = exponent * 10 + (c - '0');
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+
+        long value = rescale(mantissa, scale - (mantissaScale - exponent));
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return the scaled value as a BigDecimal with exactly scale fraction digits
+     */
+    public static BigDecimal toBigDecimal(long unscaled, int scale) {
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /**
+     * @return value at scale, rounded half up
+     * @throws ArithmeticException
+     *             if the scaled value does not fit in a long
+     */
+    public static long fromBigDecimal(BigDecimal value, int scale) {
+        return value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Changes the scale of an unscaled value, rounding half up when digits are dropped.
+     */
+    public static long rescale(long unscaled, int fromScale, int toScale) {
+        return rescale(unscaled, toScale - fromScale);
+    }
+
+    private static long rescale(long value, int shift) {
+        if (value == 0 || shift == 0) {
+            return value;
+        }
+        if (shift > 0) {
+            if (shift >= POWERS_OF_TEN.length) {
+                throw new ArithmeticException("Fixed point overflow");
+            }
+            return Math.multiplyExact(value, POWERS_OF_TEN[shift]);
+        }
+        if (-shift >= POWERS_OF_TEN.length) {
+            return 0;
+        }
+        long divisor = POWERS_OF_TEN[-shift];
+        long quotient = value / divisor;
+        long remainder = Math.abs(value % divisor);
+        if (remainder >= divisor - remainder) {
+            quotient += (value < 0) ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    private static long parseLarge(char[] chars, int offset, int length, int scale) {
+        try {
+            return fromBigDecimal(new BigDecimal(chars, offset, length), scale);
+        } catch (NumberFormatException e) {
+            throw invalid(chars, offset, length);
+        }
+    }
+
+    private static NumberFormatException invalid(char[] chars, int offset, int length) {
+        return new NumberFormatException("Invalid number: " + new String(chars, offset, length));
+    }
+}
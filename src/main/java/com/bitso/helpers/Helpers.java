@@ -155,23 +155,35 @@ public class Helpers {
 
     public static Date getZonedDatetime(JSONObject o, String key) {
         if (o.has(key)) {
-            final String date = o.getString(key);
+            return parseZonedDatetime(o.getString(key));
+        } else {
+            System.err.println("No " + key + ": " + o);
+            Helpers.printStackTrace();
+        }
+        return null;
+    }
+
+    public static Date parseZonedDatetime(String date) {
+        if (date == null) {
+            return null;
+        }
+        long epochMillis = Iso8601.parseEpochMillis(date);
+        if (epochMillis != Iso8601.INVALID) {
+            return new Date(epochMillis);
+        }
+        // Formats outside of what Bitso emits
+        try {
+            return new SimpleDateFormat(dateTimeFormatterZOffset).parse(date);
+        } catch (ParseException e) {
             try {
-                return new SimpleDateFormat(dateTimeFormatterZOffset).parse(date);
-            } catch (ParseException e) {
+                return new SimpleDateFormat(dateTimeFormatterXOffset).parse(date);
+            } catch (ParseException e2) {
                 try {
-                    return new SimpleDateFormat(dateTimeFormatterXOffset).parse(date);
-                } catch (ParseException e2) {
-                    try {
-                        return dtf.newXMLGregorianCalendar(date).toGregorianCalendar().getTime();
-                    } catch (IllegalArgumentException e3) {
-                        Helpers.printStackTrace();
-                    }
+                    return dtf.newXMLGregorianCalendar(date).toGregorianCalendar().getTime();
+                } catch (IllegalArgumentException e3) {
+                    Helpers.printStackTrace();
                 }
             }
-        } else {
-            System.err.println("No " + key + ": " + o);
-            Helpers.printStackTrace();
         }
         return null;
     }
@@ -0,0 +1,176 @@
+package com.bitso.helpers;
+
+/**
+ * Parser for the ISO-8601 timestamps found in Bitso responses, such as {@code 2017-08-01T21:07:54+00:00} and
+ * {@code 2017-07-30T22:59:23+0000}. Fractional seconds and a {@code Z} designator are accepted as well.
+ *
+ * Parsing works on the characters directly and reports invalid input through {@link #INVALID} instead of an
+ * exception. Responses tend to repeat the same timestamp many times, e.g. the entries of a single trade in the
+ * ledger, so the last value parsed is cached.
+ */
+public final class Iso8601 {
+    /**
+     * Returned for input that is not a timestamp in one of the supported formats.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    // Immutable, so it can be swapped without locking
+    private static volatile ParsedTimestamp lastParsed = new ParsedTimestamp("", INVALID);
+
+    private Iso8601() {
+    }
+
+    /**
+     * @return milliseconds since the epoch, or {@link #INVALID} if the text is not a supported timestamp
+     */
+    public static long parseEpochMillis(String text) {
+        if (text == null) {
+            return INVALID;
+        }
+        ParsedTimestamp cached = lastParsed;
+        if (cached.text.equals(text)) {
+            return cached.epochMillis;
+        }
+        long epochMillis = parse(text);
+        if (epochMillis != INVALID) {
+            lastParsed = new ParsedTimestamp(text, epochMillis);
+        }
+        return epochMillis;
+    }
+
+    private static long parse(String text) {
+        int length = text.length();
+        // yyyy-MM-ddTHH:mm:ss followed at least by a Z
+        if (length < 20 || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return INVALID;
+        }
+
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour < 0
+                || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+
+        int position = 19;
+        int millis = 0;
+        if (text.charAt(position) == '.') {
+            position++;
+            int fractionStart = position;
+            while (position < length && isDigit(text.charAt(position))) {
+                // Precision beyond milliseconds is truncated
+                if (position - fractionStart < 3) {
+                    millis = millis * 10 + (text.charAt(position) - '0');
+                }
+                position++;
+            }
+            int fractionDigits = position - fractionStart;
+            if (fractionDigits == 0 || position == length) {
+                return INVALID;
+            }
+            for (int i = fractionDigits; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+
+        long offsetMillis = zoneOffset(text, position);
+        if (offsetMillis == INVALID) {
+            return INVALID;
+        }
+
+        long epochDay = epochDay(year, month, day);
+        return epochDay * MILLIS_PER_DAY + hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE
+                + second * MILLIS_PER_SECOND + millis - offsetMillis;
+    }
+
+    // Z, +HH, +HHMM or +HH:MM
+    private static long zoneOffset(String text, int position) {
+        int remaining = text.length() - position;
+        char designator = text.charAt(position);
+        if (designator == 'Z') {
+            return (remaining == 1) ? 0 : INVALID;
+        }
+        if ((designator != '+' && designator != '-') || (remaining != 3 && remaining != 5 && remaining != 6)) {
+            return INVALID;
+        }
+        int hours = digits(text, position + 1, 2);
+        int minutes = 0;
+        if (remaining == 5) {
+            minutes = digits(text, position + 3, 2);
+        } else if (remaining == 6) {
+            if (text.charAt(position + 3) != ':') {
+                return INVALID;
+            }
+            minutes = digits(text, position + 4, 2);
+        }
+        if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59) {
+            return INVALID;
+        }
+        long offset = hours * MILLIS_PER_HOUR + minutes * MILLIS_PER_MINUTE;
+        return (designator == '-') ? -offset : offset;
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar
+    private static long epochDay(int year, int month, int day) {
+        long y = (month <= 2) ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * @return the value of count decimal digits starting at offset, -1 if any of them is not a digit
+     */
+    private static int digits(String text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static final class ParsedTimestamp {
+        private final String text;
+        private final long epochMillis;
+
+        private ParsedTimestamp(String text, long epochMillis) {
+            this.text = text;
+            this.epochMillis = epochMillis;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package com.bitso.http;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+
+import com.bitso.exceptions.BitsoAPIException;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+
+/**
+ * Non-blocking HTTP/1.1 client built on Netty.
+ *
+ * Requests are written on pooled keep-alive connections, one pool per origin, and the caller gets a
+ * {@link CompletableFuture} that is completed on the event loop once the full response has been read. No thread
+ * is parked while a request is in flight, so a handful of event loop threads can carry hundreds of concurrent
+ * requests. Responses with a status different than 2xx still complete normally with the response body, the
+ * same way {@link BlockingHttpClient} does, so the Bitso error payload can be inspected by the caller.
+ */
+public class AsyncHttpClient implements Closeable {
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 32;
+    public static final int DEFAULT_MAX_PENDING_REQUESTS = 4096;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+    public static final long DEFAULT_RESPONSE_TIMEOUT_MS = 30000;
+    public static final int DEFAULT_EVENT_LOOP_THREADS = 2;
+
+    private static final int MAX_RESPONSE_SIZE = 16 * 1024 * 1024;
+    private static final AttributeKey<AtomicReference<InFlightRequest>> IN_FLIGHT = AttributeKey
+            .valueOf("bitsoInFlightRequest");
+
+    private final EventLoopGroup group;
+    private final boolean ownsGroup;
+    private final SslContext sslContext;
+    private final Bootstrap bootstrap;
+    private final AbstractChannelPoolMap<URI, FixedChannelPool> pools;
+    private final long responseTimeoutMs;
+
+    /**
+     * Creates a client with its own group of {@link #DEFAULT_EVENT_LOOP_THREADS} threads, epoll when available.
+     */
+    public AsyncHttpClient() throws SSLException {
+        this(DEFAULT_EVENT_LOOP_THREADS);
+    }
+
+    /**
+     * @param eventLoopThreads
+     *            Threads of the group created for this client, 0 for Netty's default of twice the number of cores
+     */
+    public AsyncHttpClient(int eventLoopThreads) throws SSLException {
+        this(NettyTransport.newEventLoopGroup(eventLoopThreads, "bitso-http"), true, null,
+                DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_RESPONSE_TIMEOUT_MS);
+    }
+
+    /**
+     * @param group
+     *            Event loop group used for every connection, it is not shut down by {@link #close()}
+     * @param maxConnectionsPerHost
+     *            Maximum number of simultaneous connections to a single origin, further requests wait for a
+     *            connection to be released
+     * @param responseTimeoutMs
+     *            Time to wait for a complete response once the request has been written
+     */
+    public AsyncHttpClient(EventLoopGroup group, int maxConnectionsPerHost, long responseTimeoutMs)
+            throws SSLException {
+        this(group, false, null, maxConnectionsPerHost, responseTimeoutMs);
+    }
+
+    /**
+     * @param group
+     *            Event loop group used for every connection, it is not shut down by {@link #close()}
+     * @param sslContext
+     *            Client context shared with other clients, null to build one
+     * @param maxConnectionsPerHost
+     *            Maximum number of simultaneous connections to a single origin, further requests wait for a
+     *            connection to be released
+     * @param responseTimeoutMs
+     *            Time to wait for a complete response once the request has been written
+     */
+    public AsyncHttpClient(EventLoopGroup group, SslContext sslContext, int maxConnectionsPerHost,
+            long responseTimeoutMs) throws SSLException {
+        this(group, false, sslContext, maxConnectionsPerHost, responseTimeoutMs);
+    }
+
+    private AsyncHttpClient(EventLoopGroup group, boolean ownsGroup, SslContext sslContext,
+            final int maxConnectionsPerHost, long responseTimeoutMs) throws SSLException {
+        this.group = group;
+        this.ownsGroup = ownsGroup;
+        this.responseTimeoutMs = responseTimeoutMs;
+        this.sslContext = (sslContext == null) ? SslContextBuilder.forClient().build() : sslContext;
+        this.bootstrap = new Bootstrap().group(group).channel(NettyTransport.socketChannelClass(group))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, DEFAULT_CONNECT_TIMEOUT_MS)
+                .option(ChannelOption.TCP_NODELAY, true).option(ChannelOption.SO_KEEPALIVE, true);
+        this.pools = new AbstractChannelPoolMap<URI, FixedChannelPool>() {
+            @Override
+            protected FixedChannelPool newPool(URI origin) {
+                return new FixedChannelPool(bootstrap.clone().remoteAddress(origin.getHost(), origin.getPort()),
+                        new PipelineInitializer(origin), ChannelHealthChecker.ACTIVE, null, -1,
+                        maxConnectionsPerHost, DEFAULT_MAX_PENDING_REQUESTS, true, true);
+            }
+        };
+    }
+
+    public CompletableFuture<String> sendGet(String url, HashMap<String, String> headers) {
+        return send(HttpMethod.GET, url, headers, null, null);
+    }
+
+    public CompletableFuture<String> sendGet(String url, HashMap<String, String> headers, TokenBucket bucket) {
+        return send(HttpMethod.GET, url, headers, null, bucket);
+    }
+
+    public CompletableFuture<String> sendGet(String url, HeaderSupplier headers, TokenBucket bucket) {
+        return send(HttpMethod.GET, url, headers, null, bucket);
+    }
+
+    public CompletableFuture<String> sendPost(String url, String body, HashMap<String, String> headers) {
+        return send(HttpMethod.POST, url, headers, body, null);
+    }
+
+    public CompletableFuture<String> sendPost(String url, String body, HashMap<String, String> headers,
+            TokenBucket bucket) {
+        return send(HttpMethod.POST, url, headers, body, bucket);
+    }
+
+    public CompletableFuture<String> sendPost(String url, String body, HeaderSupplier headers,
+            TokenBucket bucket) {
+        return send(HttpMethod.POST, url, headers, body, bucket);
+    }
+
+    public CompletableFuture<String> sendDelete(String url, HashMap<String, String> headers) {
+        return send(HttpMethod.DELETE, url, headers, null, null);
+    }
+
+    public CompletableFuture<String> sendDelete(String url, HashMap<String, String> headers,
+            TokenBucket bucket) {
+        return send(HttpMethod.DELETE, url, headers, null, bucket);
+    }
+
+    public CompletableFuture<String> sendDelete(String url, HeaderSupplier headers, TokenBucket bucket) {
+        return send(HttpMethod.DELETE, url, headers, null, bucket);
+    }
+
+    /**
+     * @param bucket
+     *            Rate limit the request is accounted against, the request is sent once a permit is granted
+     *            without blocking the caller. Null to send it right away
+     */
+    public CompletableFuture<String> send(HttpMethod method, String url, final HashMap<String, String> headers,
+            String body, TokenBucket bucket) {
+        return send(method, url, () -> headers, body, bucket);
+    }
+
+    /**
+     * Same as {@link #send(HttpMethod, String, HashMap, String, TokenBucket)} with headers built once the permit
+     * is granted and a connection acquired, right before the request is written. Signed requests draw their
+     * nonce there, so requests waiting for the rate limit are not signed long before they are sent.
+     */
+    public CompletableFuture<String> send(final HttpMethod method, final String url, final HeaderSupplier headers,
+            final String body, final TokenBucket bucket) {
+        if (bucket == null) {
+            return sendNow(method, url, headers, body, null);
+        }
+        return bucket.acquireAsync().thenCompose(permit -> sendNow(method, url, headers, body, bucket));
+    }
+
+    private CompletableFuture<String> sendNow(final HttpMethod method, String url, final HeaderSupplier headers,
+            final String body, final TokenBucket bucket) {
+        final CompletableFuture<String> response = new CompletableFuture<String>();
+        final URI uri;
+        final URI origin;
+        try {
+            uri = new URI(url);
+            origin = origin(uri);
+        } catch (URISyntaxException e) {
+            response.completeExceptionally(new BitsoAPIException(322, "Not a Valid URL", e));
+            return response;
+        }
+
+        final FixedChannelPool pool = pools.get(origin);
+        pool.acquire().addListener(new FutureListener<Channel>() {
+            public void operationComplete(Future<Channel> future) {
+                if (!future.isSuccess()) {
+                    response.completeExceptionally(
+                            new BitsoAPIException(101, "Connection Aborted", future.cause()));
+                    return;
+                }
+                FullHttpRequest request;
+                try {
+                    request = buildRequest(method, uri, headers.get(), body);
+                } catch (BitsoAPIException e) {
+                    pool.release(future.getNow());
+                    response.completeExceptionally(e);
+                    return;
+                }
+                write(pool, future.getNow(), request, response, bucket);
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Closes every pooled connection and, when the event loop group was created by this client, shuts it down.
+     */
+    public void close() {
+        pools.close();
+        if (ownsGroup) {
+            group.shutdownGracefully();
+        }
+    }
+
+    private void write(ChannelPool pool, final Channel channel, FullHttpRequest request,
+            CompletableFuture<String> response, TokenBucket bucket) {
+        final InFlightRequest inFlight = new InFlightRequest(pool, channel, response, bucket);
+        channel.attr(IN_FLIGHT).get().set(inFlight);
+        inFlight.timeout = channel.eventLoop().schedule(new Runnable() {
+            public void run() {
+                inFlight.fail(new BitsoAPIException(101, "Response timed out"), true);
+            }
+        }, responseTimeoutMs, TimeUnit.MILLISECONDS);
+
+        channel.writeAndFlush(request).addListener(new ChannelFutureListener() {
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    inFlight.fail(new BitsoAPIException(101, "Connection Aborted", future.cause()), true);
+                }
+            }
+        });
+    }
+
+    private FullHttpRequest buildRequest(HttpMethod method, URI uri, HashMap<String, String> headers,
+            String body) {
+        String path = uri.getRawPath();
+        if (path == null || path.length() == 0) {
+            path = "/";
+        }
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+
+        ByteBuf content = (body == null) ? Unpooled.EMPTY_BUFFER : Unpooled.copiedBuffer(body, CharsetUtil.UTF_8);
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, path, content);
+        request.headers().set(HttpHeaderNames.HOST, hostHeader(uri));
+        request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, HttpHeaderValues.GZIP);
+        if (headers != null) {
+            for (Entry<String, String> e : headers.entrySet()) {
+                request.headers().set(e.getKey(), e.getValue());
+            }
+        }
+        if (body != null || method.equals(HttpMethod.POST)) {
+            HttpUtil.setContentLength(request, content.readableBytes());
+        }
+        return request;
+    }
+
+    private static URI origin(URI uri) throws URISyntaxException {
+        String scheme = uri.getScheme();
+        if (scheme == null || uri.getHost() == null) {
+            throw new URISyntaxException(uri.toString(), "Absolute http or https URL expected");
+        }
+        scheme = scheme.toLowerCase();
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            throw new URISyntaxException(uri.toString(), "Unsupported scheme " + scheme);
+        }
+        int port = uri.getPort();
+        if (port == -1) {
+            port = scheme.equals("https") ? 443 : 80;
+        }
+        return new URI(scheme, null, uri.getHost(), port, null, null, null);
+    }
+
+    private static String hostHeader(URI uri) {
+        return (uri.getPort() == -1) ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+    }
+
+    private class PipelineInitializer extends AbstractChannelPoolHandler {
+        private final URI mOrigin;
+
+        public PipelineInitializer(URI origin) {
+            mOrigin = origin;
+        }
+
+        public void channelCreated(Channel channel) {
+            channel.attr(IN_FLIGHT).set(new AtomicReference<InFlightRequest>());
+
+            ChannelPipeline pipeline = channel.pipeline();
+            if (mOrigin.getScheme().equals("https")) {
+                SslHandler sslHandler = sslContext.newHandler(channel.alloc(), mOrigin.getHost(),
+                        mOrigin.getPort());
+                SSLEngine engine = sslHandler.engine();
+                SSLParameters parameters = engine.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                engine.setSSLParameters(parameters);
+                pipeline.addLast(sslHandler);
+            }
+            pipeline.addLast(new HttpClientCodec(), new HttpContentDecompressor(),
+                    new HttpObjectAggregator(MAX_RESPONSE_SIZE), new ResponseHandler());
+        }
+    }
+
+    private static class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+            InFlightRequest inFlight = ctx.channel().attr(IN_FLIGHT).get().getAndSet(null);
+            if (inFlight == null) {
+                // Nobody is waiting for this response anymore, the connection can't be trusted
+                ctx.close();
+                return;
+            }
+            inFlight.reportRateLimit(response);
+            String body = response.content().toString(CharsetUtil.UTF_8);
+            inFlight.complete(body, !HttpUtil.isKeepAlive(response));
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            failInFlight(ctx, new BitsoAPIException(101, "Connection closed by server"));
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            failInFlight(ctx, new BitsoAPIException(101, "Connection Aborted", cause));
+            ctx.close();
+        }
+
+        private void failInFlight(ChannelHandlerContext ctx, BitsoAPIException exception) {
+            AtomicReference<InFlightRequest> holder = ctx.channel().attr(IN_FLIGHT).get();
+            InFlightRequest inFlight = (holder == null) ? null : holder.get();
+            if (inFlight != null) {
+                inFlight.fail(exception, true);
+            }
+        }
+    }
+
+    /**
+     * State of the single request a pooled channel is serving. Whoever detaches it from the channel first, the
+     * response, an error or the timeout, completes the future and hands the channel back to its pool.
+     */
+    private static class InFlightRequest {
+        private final ChannelPool mPool;
+        private final Channel mChannel;
+        private final CompletableFuture<String> mResponse;
+        private final TokenBucket mBucket;
+        private ScheduledFuture<?> timeout;
+
+        public InFlightRequest(ChannelPool pool, Channel channel, CompletableFuture<String> response,
+                TokenBucket bucket) {
+            mPool = pool;
+            mChannel = channel;
+            mResponse = response;
+            mBucket = bucket;
+        }
+
+        public void reportRateLimit(FullHttpResponse response) {
+            if (mBucket == null) {
+                return;
+            }
+            if (!response.status().equals(HttpResponseStatus.TOO_MANY_REQUESTS)) {
+                mBucket.onSuccess();
+                return;
+            }
+            long retryAfterMs = 0;
+            String retryAfter = response.headers().get(HttpHeaderNames.RETRY_AFTER);
+            if (retryAfter != null) {
+                try {
+                    retryAfterMs = Long.parseLong(retryAfter.trim()) * 1000;
+                } catch (NumberFormatException e) {
+                    // Dates are not supported, fall back to the bucket backoff
+                }
+            }
+            mBucket.onRateLimited(retryAfterMs);
+        }
+
+        public void complete(String body, boolean closeChannel) {
+            finish(closeChannel);
+            mResponse.complete(body);
+        }
+
+        public void fail(Throwable cause, boolean closeChannel) {
+            if (!mChannel.attr(IN_FLIGHT).get().compareAndSet(this, null)) {
+                return;
+            }
+            finish(closeChannel);
+            mResponse.completeExceptionally(cause);
+        }
+
+        private void finish(boolean closeChannel) {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (!closeChannel) {
+                mPool.release(mChannel);
+                return;
+            }
+            // Released only once closed, so the pool discards it instead of handing it out again
+            mChannel.close().addListener(new ChannelFutureListener() {
+                public void operationComplete(ChannelFuture future) {
+                    mPool.release(mChannel);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.bitso.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits applied to Bitso API requests, public and private endpoints are accounted separately the same way
+ * the exchange does.
+ */
+public class BitsoRateLimiter {
+    public static final int PUBLIC_REQUESTS_PER_MINUTE = 60;
+    public static final int PRIVATE_REQUESTS_PER_MINUTE = 300;
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 1000;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 60000;
+
+    private final TokenBucket publicBucket;
+    private final TokenBucket privateBucket;
+
+    /**
+     * Creates a limiter using the exchange published limits with adaptive backoff enabled.
+     */
+    public BitsoRateLimiter() {
+        this(new TokenBucket(PUBLIC_REQUESTS_PER_MINUTE, 1, TimeUnit.MINUTES, DEFAULT_INITIAL_BACKOFF_MS,
+                DEFAULT_MAX_BACKOFF_MS),
+                new TokenBucket(PRIVATE_REQUESTS_PER_MINUTE, 1, TimeUnit.MINUTES, DEFAULT_INITIAL_BACKOFF_MS,
+                        DEFAULT_MAX_BACKOFF_MS));
+    }
+
+    /**
+     * @param publicBucket
+     *            Bucket for unsigned requests, null to leave them unlimited
+     * @param privateBucket
+     *            Bucket for signed requests, null to leave them unlimited
+     */
+    public BitsoRateLimiter(TokenBucket publicBucket, TokenBucket privateBucket) {
+        this.publicBucket = publicBucket;
+        this.privateBucket = privateBucket;
+    }
+
+    public TokenBucket getPublicBucket() {
+        return publicBucket;
+    }
+
+    public TokenBucket getPrivateBucket() {
+        return privateBucket;
+    }
+}
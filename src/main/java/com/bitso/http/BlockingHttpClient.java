@@ -1,34 +1,66 @@
 package com.bitso.http;
 
-import java.io.DataOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.ProtocolException;
-import java.net.URL;
+import java.net.ProxySelector;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 
-import javax.net.ssl.HttpsURLConnection;
-
+import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
+import org.apache.http.util.EntityUtils;
 
 import com.bitso.exceptions.BitsoAPIException;
+import com.bitso.exceptions.BitsoPayloadException;
+import com.bitso.exceptions.BitsoServerException;
+
+/**
+ * Blocking HTTP client backed by a single pool of keep-alive connections.
+ *
+ * Every request goes through the same {@link PoolingHttpClientConnectionManager}, so consecutive calls to the
+ * same host reuse an already negotiated TLS connection instead of opening a new socket. Idle connections are
+ * evicted in the background. Call {@link #close()} once the client is no longer needed to release the pool.
+ */
+public class BlockingHttpClient implements Closeable {
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30000;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+    public static final int DEFAULT_SOCKET_TIMEOUT_MS = 30000;
+
+    // Connections idle for less than this are handed out without a stale check
+    private static final int VALIDATE_AFTER_INACTIVITY_MS = 2000;
 
-import com.bitso.helpers.Helpers;
+    private static final int TOO_MANY_REQUESTS = 429;
 
-public class BlockingHttpClient {
     private boolean log = false;
-    private long throttleMs = -1;
-    private long lastCallTime = 0;
+    private final TokenBucket defaultBucket;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
 
     public BlockingHttpClient() {
         this(false);
@@ -39,71 +71,159 @@ public class BlockingHttpClient {
     }
 
     public BlockingHttpClient(boolean log, long throttleMs) {
+        this(log, throttleMs, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * @param log
+     *            Print request diagnostics to the standard output
+     * @param throttleMs
+     *            Minimum time between requests sent without an explicit {@link TokenBucket}, a value lower or
+     *            equal to zero disables throttling
+     * @param maxConnections
+     *            Maximum number of pooled connections
+     * @param maxConnectionsPerRoute
+     *            Maximum number of pooled connections to a single host
+     * @param idleTimeoutMs
+     *            Time after which an unused connection is closed
+     */
+    public BlockingHttpClient(boolean log, long throttleMs, int maxConnections, int maxConnectionsPerRoute,
+            long idleTimeoutMs) {
         this.log = log;
-        this.throttleMs = throttleMs;
+        this.defaultBucket = (throttleMs > 0) ? new TokenBucket(1, throttleMs, TimeUnit.MILLISECONDS) : null;
+
+        // The system socket factory is backed by the default SSLContext, whose client session cache lets
+        // new connections to the same host resume the previous TLS session instead of a full handshake
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder
+                .<ConnectionSocketFactory> create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSystemSocketFactory()).build();
+
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MS);
+
+        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(DEFAULT_CONNECT_TIMEOUT_MS)
+                .setSocketTimeout(DEFAULT_SOCKET_TIMEOUT_MS).build();
+
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setRoutePlanner(new SystemDefaultRoutePlanner(ProxySelector.getDefault()))
+                .disableCookieManagement().evictExpiredConnections()
+                .evictIdleConnections(idleTimeoutMs, TimeUnit.MILLISECONDS).build();
     }
 
     private void log(Object msg) {
         if (log) System.out.println(msg);
     }
 
-    private void throttle() {
-        if (throttleMs <= 0) {
+    private void throttle(TokenBucket bucket) throws BitsoAPIException {
+        if (bucket == null) {
             return;
         }
 
-        long time = System.currentTimeMillis();
-        long diff = time - lastCallTime;
-
         try {
-            if (diff < throttleMs) {
-                long throttleDifference = throttleMs - diff;
-                log("Throttling request for " + throttleDifference);
-                Thread.sleep(throttleDifference);
-            }
-            lastCallTime = System.currentTimeMillis();
+            bucket.acquire();
         } catch (InterruptedException e) {
-            log("Error executing throttle");
+            Thread.currentThread().interrupt();
+            throw new BitsoAPIException(101, "Interrupted while waiting for the rate limit", e);
         }
     }
 
-    public String sendPost(String url, String body, HashMap<String, String> headers)
+    public String sendGet(String url, HashMap<String, String> headers) throws BitsoAPIException {
+        return sendGet(url, headers, null);
+    }
+
+    /**
+     * @param bucket
+     *            Rate limit the request is accounted against, null to send it right away
+     */
+    public String sendGet(String url, HashMap<String, String> headers, TokenBucket bucket)
             throws BitsoAPIException {
-        throttle();
-        HttpsURLConnection connection = null;
+        return execute(new HttpGet(url), fixed(headers), bucket);
+    }
 
-        try {
-            URL requestURL = new URL(url);
-            connection = (HttpsURLConnection) requestURL.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("User-Agent", "Bitso-API");
-
-            if (headers != null) {
-                for (Entry<String, String> e : headers.entrySet()) {
-                    connection.setRequestProperty(e.getKey(), e.getValue());
-                }
-            }
+    /**
+     * @param headers
+     *            Called once the permit of bucket is granted, e.g. to sign the request
+     * @param bucket
+     *            Rate limit the request is accounted against, null to send it right away
+     */
+    public String sendGet(String url, HeaderSupplier headers, TokenBucket bucket) throws BitsoAPIException {
+        return execute(new HttpGet(url), headers, bucket);
+    }
 
-            connection.setDoOutput(true);
+    /**
+     * Sends a GET request and decodes the response body as it is received, without buffering it first.
+     *
+     * @param bucket
+     *            Rate limit the request is accounted against, null to send it right away
+     * @param decoder
+     *            Builds the result from the response body
+     */
+    public <T> T sendGet(String url, HashMap<String, String> headers, TokenBucket bucket,
+            ResponseDecoder<T> decoder) throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+        return sendGet(url, fixed(headers), bucket, decoder);
+    }
 
-            DataOutputStream wr = new DataOutputStream(connection.getOutputStream());
-            wr.writeBytes(body);
-            wr.flush();
-            wr.close();
+    /**
+     * Same as {@link #sendGet(String, HashMap, TokenBucket, ResponseDecoder)} with headers built once the permit
+     * of bucket is granted.
+     */
+    public <T> T sendGet(String url, HeaderSupplier headers, TokenBucket bucket, ResponseDecoder<T> decoder)
+            throws BitsoAPIException, BitsoPayloadException, BitsoServerException {
+        HttpGet request = new HttpGet(url);
+        throttle(bucket);
+        addHeaders(request, headers.get());
 
-            return Helpers.convertInputStreamToString(connection.getInputStream());
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-            throw new BitsoAPIException(322, "Not a Valid URL", e);
-        } catch (ProtocolException e) {
+        CloseableHttpResponse response = null;
+        HttpEntity entity = null;
+        try {
+            response = httpClient.execute(request);
+            reportRateLimit(response, bucket);
+            entity = response.getEntity();
+            return decoder.decode((entity == null) ? null : entity.getContent());
+        } catch (ClientProtocolException e) {
             e.printStackTrace();
             throw new BitsoAPIException(901, "Unsupported HTTP method", e);
         } catch (IOException e) {
             e.printStackTrace();
-            return Helpers.convertInputStreamToString(connection.getErrorStream());
+            throw new BitsoAPIException(101, "Connection Aborted", e);
+        } finally {
+            // Whatever the decoder did not read is drained so the connection can go back to the pool
+            EntityUtils.consumeQuietly(entity);
+            closeQuietly(response);
         }
     }
 
+    public String sendPost(String url, String body, HashMap<String, String> headers)
+            throws BitsoAPIException {
+        return sendPost(url, body, headers, defaultBucket);
+    }
+
+    /**
+     * @param bucket
+     *            Rate limit the request is accounted against, null to send it right away
+     */
+    public String sendPost(String url, String body, HashMap<String, String> headers, TokenBucket bucket)
+            throws BitsoAPIException {
+        return sendPost(url, body, fixed(headers), bucket);
+    }
+
+    /**
+     * @param headers
+     *            Called once the permit of bucket is granted, e.g. to sign the request
+     * @param bucket
+     *            Rate limit the request is accounted against, null to send it right away
+     */
+    public String sendPost(String url, String body, HeaderSupplier headers, TokenBucket bucket)
+            throws BitsoAPIException {
+        HttpPost postRequest = post(url, new StringEntity(body, Consts.UTF_8));
+        postRequest.setHeader("User-Agent", "Bitso-API");
+        return execute(postRequest, headers, bucket);
+    }
+
     public String sendPost(String url, String body, HashMap<String, String> headers, Charset charset)
             throws ClientProtocolException, IOException {
         return sendPost(url, new StringEntity(body, charset), headers);
@@ -116,44 +236,142 @@ public class BlockingHttpClient {
 
     private String sendPost(String url, AbstractHttpEntity body, HashMap<String, String> headers)
             throws ClientProtocolException, IOException {
-        throttle();
+        try {
+            throttle(defaultBucket);
+        } catch (BitsoAPIException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        HttpPost postRequest = post(url, body);
+        addHeaders(postRequest, headers);
 
-        HttpPost postRequest = new HttpPost(url);
-        if (headers != null) {
-            for (Entry<String, String> e : headers.entrySet()) {
-                postRequest.addHeader(e.getKey(), e.getValue());
-            }
+        CloseableHttpResponse response = httpClient.execute(postRequest);
+        try {
+            return readEntity(response.getEntity());
+        } finally {
+            response.close();
         }
+    }
 
-        postRequest.setEntity(body);
+    public String sendDelete(String url, HashMap<String, String> headers) throws BitsoAPIException {
+        return sendDelete(url, headers, defaultBucket);
+    }
 
-        CloseableHttpResponse closeableHttpResponse = HttpClients.createDefault().execute(postRequest);
-        String response = Helpers.convertInputStreamToString(closeableHttpResponse.getEntity().getContent());
+    /**
+     * @param bucket
+     *            Rate limit the request is accounted against, null to send it right away
+     */
+    public String sendDelete(String url, HashMap<String, String> headers, TokenBucket bucket)
+            throws BitsoAPIException {
+        return execute(new HttpDelete(url), fixed(headers), bucket);
+    }
 
-        return response;
+    /**
+     * @param headers
+     *            Called once the permit of bucket is granted, e.g. to sign the request
+     * @param bucket
+     *            Rate limit the request is accounted against, null to send it right away
+     */
+    public String sendDelete(String url, HeaderSupplier headers, TokenBucket bucket) throws BitsoAPIException {
+        return execute(new HttpDelete(url), headers, bucket);
     }
 
-    public String sendDelete(String url, HashMap<String, String> headers) throws BitsoAPIException {
-        throttle();
-        HttpDelete deleteURL = new HttpDelete(url);
+    /**
+     * @return the number of pooled connections a single host can use at once
+     */
+    public int getMaxConnectionsPerRoute() {
+        return Math.min(connectionManager.getDefaultMaxPerRoute(), connectionManager.getMaxTotal());
+    }
 
-        if (headers != null) {
-            for (Entry<String, String> e : headers.entrySet()) {
-                deleteURL.addHeader(e.getKey(), e.getValue());
-            }
-        }
+    /**
+     * Shuts down the connection pool and the idle connection evictor.
+     */
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private String execute(HttpRequestBase request, HeaderSupplier headers, TokenBucket bucket)
+            throws BitsoAPIException {
+        throttle(bucket);
+        addHeaders(request, headers.get());
 
-        CloseableHttpClient closeableHttpClient = HttpClients.createDefault();
         CloseableHttpResponse response = null;
         try {
-            response = closeableHttpClient.execute(deleteURL);
-            return Helpers.convertInputStreamToString(response.getEntity().getContent());
+            response = httpClient.execute(request);
+            reportRateLimit(response, bucket);
+            return readEntity(response.getEntity());
         } catch (ClientProtocolException e) {
             e.printStackTrace();
-            throw new BitsoAPIException(901, "Usupported HTTP method", e);
+            throw new BitsoAPIException(901, "Unsupported HTTP method", e);
         } catch (IOException e) {
             e.printStackTrace();
             throw new BitsoAPIException(101, "Connection Aborted", e);
+        } finally {
+            closeQuietly(response);
+        }
+    }
+
+    private void reportRateLimit(HttpResponse response, TokenBucket bucket) {
+        if (bucket == null) {
+            return;
+        }
+
+        if (response.getStatusLine().getStatusCode() != TOO_MANY_REQUESTS) {
+            bucket.onSuccess();
+            return;
+        }
+
+        long retryAfterMs = 0;
+        Header retryAfter = response.getFirstHeader("Retry-After");
+        if (retryAfter != null) {
+            try {
+                retryAfterMs = Long.parseLong(retryAfter.getValue().trim()) * 1000;
+            } catch (NumberFormatException e) {
+                log("Ignoring Retry-After header: " + retryAfter.getValue());
+            }
+        }
+        log("Rate limited by server, backing off");
+        bucket.onRateLimited(retryAfterMs);
+    }
+
+    private static HeaderSupplier fixed(final HashMap<String, String> headers) {
+        return new HeaderSupplier() {
+            public HashMap<String, String> get() {
+                return headers;
+            }
+        };
+    }
+
+    private HttpPost post(String url, AbstractHttpEntity body) {
+        HttpPost postRequest = new HttpPost(url);
+        postRequest.setEntity(body);
+        return postRequest;
+    }
+
+    // Replaces the defaults set by the request builders, e.g. User-Agent, instead of sending them twice
+    private void addHeaders(HttpRequestBase request, HashMap<String, String> headers) {
+        if (headers != null) {
+            for (Entry<String, String> e : headers.entrySet()) {
+                request.setHeader(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    // Reading the entity to the end hands the connection back to the pool
+    private String readEntity(HttpEntity entity) throws IOException {
+        if (entity == null) {
+            return null;
+        }
+        return EntityUtils.toString(entity, Consts.UTF_8);
+    }
+
+    private void closeQuietly(CloseableHttpResponse response) {
+        if (response == null) {
+            return;
+        }
+        try {
+            response.close();
+        } catch (IOException e) {
+            log("Error closing response: " + e.getMessage());
         }
     }
 }
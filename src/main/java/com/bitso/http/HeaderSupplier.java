@@ -0,0 +1,15 @@
+package com.bitso.http;
+
+import java.util.HashMap;
+
+import com.bitso.exceptions.BitsoAPIException;
+
+/**
+ * Builds the headers of a request once its rate limit permit is granted, right before it is sent. Signed
+ * requests draw their nonce here, so requests waiting for the rate limit are signed in the order they are sent,
+ * see {@link BlockingHttpClient#sendGet(String, HeaderSupplier, TokenBucket)} and
+ * {@link AsyncHttpClient#sendGet(String, HeaderSupplier, TokenBucket)}.
+ */
+public interface HeaderSupplier {
+    HashMap<String, String> get() throws BitsoAPIException;
+}
@@ -0,0 +1,62 @@
+package com.bitso.http;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Picks the Netty transport for the HTTP and WebSocket clients: the native epoll transport on Linux when its
+ * library loads, NIO everywhere else. Set the system property {@code bitso.netty.epoll} to false to always use
+ * NIO.
+ *
+ * Groups created here use daemon threads, so an application that forgets to close a client can still exit.
+ */
+public final class NettyTransport {
+    private static final boolean EPOLL = !"false".equalsIgnoreCase(System.getProperty("bitso.netty.epoll"))
+            && epollLoads();
+
+    private NettyTransport() {
+    }
+
+    public static boolean isEpollAvailable() {
+        return EPOLL;
+    }
+
+    /**
+     * @param threads
+     *            Number of event loop threads, 0 for Netty's default of twice the number of cores
+     * @param name
+     *            Prefix of the thread names
+     */
+    public static EventLoopGroup newEventLoopGroup(int threads, String name) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(name, true);
+        if (EPOLL) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+        return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * @return the socket channel class matching the transport of group
+     */
+    public static Class<? extends SocketChannel> socketChannelClass(EventLoopGroup group) {
+        if (EPOLL && group instanceof EpollEventLoopGroup) {
+            return EpollSocketChannel.class;
+        }
+        return NioSocketChannel.class;
+    }
+
+    private static boolean epollLoads() {
+        try {
+            return Epoll.isAvailable();
+        } catch (Throwable e) {
+            // Epoll classes or native library missing
+            return false;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.bitso.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.bitso.exceptions.BitsoAPIException;
+import com.bitso.exceptions.BitsoPayloadException;
+import com.bitso.exceptions.BitsoServerException;
+
+/**
+ * Turns a response body into a result while it is being received, see
+ * {@link BlockingHttpClient#sendGet(String, java.util.HashMap, TokenBucket, ResponseDecoder)}.
+ */
+public interface ResponseDecoder<T> {
+    /**
+     * @param body
+     *            Response body, null if the response had none. It does not need to be read to the end
+     */
+    T decode(InputStream body) throws IOException, BitsoAPIException, BitsoPayloadException, BitsoServerException;
+}
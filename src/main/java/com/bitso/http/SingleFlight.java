@@ -0,0 +1,59 @@
+package com.bitso.http;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical calls made at the same time: the first caller for a key runs the call, callers arriving
+ * with the same key while it is in flight wait for it and get its result, or its failure, instead of running
+ * their own. A call that arrives after the previous one finished runs again, nothing is cached.
+ */
+public class SingleFlight {
+    private final ConcurrentHashMap<Object, FutureTask<?>> mInFlight =
+            new ConcurrentHashMap<Object, FutureTask<?>>();
+    private final AtomicLong mCalls = new AtomicLong();
+    private final AtomicLong mCoalesced = new AtomicLong();
+
+    /**
+     * @param key
+     *            Identifies the call, equal keys must produce interchangeable results
+     * @return the result of call, or of the identical call in flight
+     * @throws ExecutionException
+     *             with the exception of the call as cause
+     * @throws InterruptedException
+     *             if interrupted while waiting for the call of another thread
+     */
+    public <T> T execute(Object key, Callable<T> call) throws ExecutionException, InterruptedException {
+        FutureTask<T> task = new FutureTask<T>(call);
+        @SuppressWarnings("unchecked")
+        FutureTask<T> inFlight = (FutureTask<T>) mInFlight.putIfAbsent(key, task);
+        if (inFlight != null) {
+            mCoalesced.incrementAndGet();
+            return inFlight.get();
+        }
+        mCalls.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            mInFlight.remove(key, task);
+        }
+        return task.get();
+    }
+
+    /**
+     * @return the number of calls that ran
+     */
+    public long getCalls() {
+        return mCalls.get();
+    }
+
+    /**
+     * @return the number of calls answered with the result of an identical call in flight
+     */
+    public long getCoalesced() {
+        return mCoalesced.get();
+    }
+}
@@ -0,0 +1,193 @@
+package com.bitso.http;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe token bucket holding up to {@code capacity} permits that are refilled evenly over {@code period}.
+ *
+ * The bucket state is a single timestamp, the time at which the bucket will be full again, updated with a
+ * compare-and-set, so concurrent callers never block each other while taking a permit. A permit can be taken
+ * blocking the caller ({@link #acquire()}), only if immediately available ({@link #tryAcquire()}) or through a
+ * future completed once it is granted ({@link #acquireAsync()}).
+ *
+ * When adaptive backoff is enabled, {@link #onRateLimited(long)} stops handing out permits for an exponentially
+ * growing time, reset by the next {@link #onSuccess()}.
+ */
+public class TokenBucket {
+    private final int capacity;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    // Theoretical arrival time of the next permit, the bucket is full when it is in the past
+    private final AtomicLong nextPermitNanos;
+    private final AtomicInteger consecutiveRateLimits = new AtomicInteger();
+
+    /**
+     * Creates a bucket without adaptive backoff.
+     *
+     * @param capacity
+     *            Maximum number of permits that can be taken at once
+     * @param period
+     *            Time needed to refill the whole bucket
+     */
+    public TokenBucket(int capacity, long period, TimeUnit unit) {
+        this(capacity, period, unit, 0, 0);
+    }
+
+    /**
+     * @param capacity
+     *            Maximum number of permits that can be taken at once
+     * @param period
+     *            Time needed to refill the whole bucket
+     * @param initialBackoffMs
+     *            Pause after the first rate limit error, doubled on each consecutive one. Zero disables adaptive
+     *            backoff
+     * @param maxBackoffMs
+     *            Upper bound for the pause after consecutive rate limit errors
+     */
+    public TokenBucket(int capacity, long period, TimeUnit unit, long initialBackoffMs, long maxBackoffMs) {
+        if (capacity <= 0 || period <= 0) {
+            throw new IllegalArgumentException("Capacity and period must be positive");
+        }
+        this.capacity = capacity;
+        this.intervalNanos = Math.max(1, unit.toNanos(period) / capacity);
+        this.toleranceNanos = (capacity - 1) * intervalNanos;
+        this.initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(initialBackoffMs);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(initialBackoffMs, maxBackoffMs));
+        this.nextPermitNanos = new AtomicLong(System.nanoTime());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Takes a permit, sleeping the caller until it is available.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve(Long.MAX_VALUE);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Takes a permit only if it is available right now.
+     *
+     * @return true if the permit was taken
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * Takes a permit if it becomes available within the given timeout, sleeping the caller until then.
+     *
+     * @return true if the permit was taken
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long waitNanos = reserve(unit.toNanos(timeout));
+        if (waitNanos < 0) {
+            return false;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return true;
+    }
+
+    /**
+     * Reserves a permit without blocking the caller.
+     *
+     * @return a future completed once the reserved permit can be used
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        long waitNanos = reserve(Long.MAX_VALUE);
+        if (waitNanos == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final CompletableFuture<Void> permit = new CompletableFuture<Void>();
+        Scheduler.INSTANCE.schedule(new Runnable() {
+            public void run() {
+                permit.complete(null);
+            }
+        }, waitNanos, TimeUnit.NANOSECONDS);
+        return permit;
+    }
+
+    /**
+     * Reports that the server rejected a request for exceeding its rate limit. With adaptive backoff enabled no
+     * permit is handed out until the backoff, or the server provided retry delay if larger, has elapsed.
+     *
+     * @param retryAfterMs
+     *            Delay requested by the server, zero or negative if unknown
+     */
+    public void onRateLimited(long retryAfterMs) {
+        if (initialBackoffNanos <= 0) {
+            return;
+        }
+        int attempt = Math.min(consecutiveRateLimits.incrementAndGet(), 32);
+        long backoffNanos = initialBackoffNanos << (attempt - 1);
+        if (backoffNanos <= 0 || backoffNanos > maxBackoffNanos) {
+            backoffNanos = maxBackoffNanos;
+        }
+        backoffNanos = Math.max(backoffNanos, TimeUnit.MILLISECONDS.toNanos(retryAfterMs));
+
+        long pausedUntil = System.nanoTime() + backoffNanos + toleranceNanos;
+        while (true) {
+            long current = nextPermitNanos.get();
+            if (current - pausedUntil >= 0 || nextPermitNanos.compareAndSet(current, pausedUntil)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reports a request that was not rate limited, resetting the adaptive backoff.
+     */
+    public void onSuccess() {
+        if (consecutiveRateLimits.get() != 0) {
+            consecutiveRateLimits.set(0);
+        }
+    }
+
+    /**
+     * @param maxWaitNanos
+     *            Longest acceptable wait for the permit
+     * @return nanoseconds until the reserved permit can be used, or -1 if that would exceed maxWaitNanos, in
+     *         which case nothing is reserved
+     */
+    private long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            long next = nextPermitNanos.get();
+            long base = (next - now > 0) ? next : now;
+            long waitNanos = Math.max(0, base - now - toleranceNanos);
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            if (nextPermitNanos.compareAndSet(next, base + intervalNanos)) {
+                return waitNanos;
+            }
+        }
+    }
+
+    private static class Scheduler {
+        private static final ScheduledExecutorService INSTANCE = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "bitso-rate-limiter");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+}
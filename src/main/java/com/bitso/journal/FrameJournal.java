@@ -0,0 +1,344 @@
+package com.bitso.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.bitso.websockets.BitsoChannels;
+import com.bitso.websockets.BitsoFrameHandler;
+
+/**
+ * Records the raw frames of a {@link com.bitso.websockets.BitsoWebSocket} to rolling memory-mapped files. Add it
+ * with {@link com.bitso.websockets.BitsoWebSocket#addFrameHandler(BitsoFrameHandler)}.
+ *
+ * Appending a frame only copies it into the mapping of the current segment, the operating system writes it
+ * back to disk in the background. The next segment is created, sized and mapped ahead of time on a journal
+ * thread, so rolling over does not touch the file system on the IO thread either. Frames are tagged with their
+ * book and channel, see {@link JournalFormat} for the layout, and read back with {@link FrameJournalReader}.
+ *
+ * A frame larger than a whole segment is dropped and counted in {@link #getDropped()}, so is an empty frame since
+ * a record length of 0 marks the end of what was written.
+ */
+public class FrameJournal implements BitsoFrameHandler, Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 128 * 1024 * 1024;
+    public static final int DEFAULT_INDEX_INTERVAL = 256;
+
+    private static final byte[] TYPE_KEY = "\"type\"".getBytes();
+    private static final byte[] BOOK_KEY = "\"book\"".getBytes();
+    private static final BitsoChannels[] CHANNELS = BitsoChannels.values();
+    private static final byte[][] CHANNEL_NAMES = new byte[CHANNELS.length][];
+
+    static {
+        for (int i = 0; i < CHANNELS.length; i++) {
+            CHANNEL_NAMES[i] = CHANNELS[i].toString().getBytes();
+        }
+    }
+
+    private final File mDirectory;
+    private final int mSegmentSize;
+    private final int mIndexInterval;
+    private final ExecutorService mExecutor;
+    private final byte[] mBook = new byte[JournalFormat.MAX_BOOK_LENGTH];
+    private Segment mSegment;
+    private Future<Segment> mNextSegment;
+    private long mRecords;
+    private long mDropped;
+    private boolean mClosed;
+
+    public FrameJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_INDEX_INTERVAL);
+    }
+
+    /**
+     * Appends to the segments already in directory, starting a new segment after the last one.
+     *
+     * @param segmentSize
+     *            Size in bytes of each segment file
+     * @param indexInterval
+     *            Number of records between index entries
+     */
+    public FrameJournal(File directory, int segmentSize, int indexInterval) throws IOException {
+        if (segmentSize <= JournalFormat.HEADER_SIZE + JournalFormat.RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        if (indexInterval < 1) {
+            throw new IllegalArgumentException("Index interval must be positive: " + indexInterval);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+        mDirectory = directory;
+        mSegmentSize = segmentSize;
+        mIndexInterval = indexInterval;
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "bitso-journal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        int[] segments = JournalFormat.segments(directory);
+        int first = (segments.length == 0) ? 0 : segments[segments.length - 1] + 1;
+        mSegment = new Segment(directory, first, segmentSize, indexInterval);
+        prepareNextSegment(first + 1);
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    @Override
+    public void onFrame(byte[] bytes, int offset, int length, long receivedNanos) {
+        BitsoChannels channel = channel(bytes, offset, length);
+        int bookLength = book(bytes, offset, length, mBook);
+        append(bytes, offset, length, receivedNanos, channel, mBook, bookLength);
+    }
+
+    /**
+     * Appends a frame with explicit tags.
+     */
+    public void append(String message, long receivedNanos, BitsoChannels channel, String book) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        byte[] bookBytes = (book == null) ? new byte[0] : book.getBytes();
+        append(bytes, 0, bytes.length, receivedNanos, channel, bookBytes,
+                Math.min(bookBytes.length, JournalFormat.MAX_BOOK_LENGTH));
+    }
+
+    private synchronized void append(byte[] bytes, int offset, int length, long receivedNanos,
+            BitsoChannels channel, byte[] book, int bookLength) {
+        if (mClosed) {
+            return;
+        }
+        if (length == 0) {
+            mDropped++;
+            return;
+        }
+        int recordSize = JournalFormat.RECORD_HEADER_SIZE + bookLength + length;
+        if (!mSegment.fits(recordSize)) {
+            if (JournalFormat.HEADER_SIZE + recordSize + 4 > mSegmentSize) {
+                mDropped++;
+                return;
+            }
+            roll();
+        }
+        mSegment.append(bytes, offset, length, receivedNanos, JournalFormat.channelCode(channel), book,
+                bookLength);
+        mRecords++;
+    }
+
+    public synchronized long getRecords() {
+        return mRecords;
+    }
+
+    public synchronized long getDropped() {
+        return mDropped;
+    }
+
+    /**
+     * Writes the current segment back to disk, for example before a planned shutdown.
+     */
+    public synchronized void force() {
+        if (!mClosed) {
+            mSegment.force();
+        }
+    }
+
+    /**
+     * Forces the current segment to disk and deletes the segment prepared ahead.
+     */
+    @Override
+    public void close() throws IOException {
+        Future<Segment> next;
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            mSegment.end();
+            mSegment.force();
+            next = mNextSegment;
+        }
+        mExecutor.shutdown();
+        try {
+            next.get().delete();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Nothing was created
+        }
+    }
+
+    private void roll() {
+        final Segment previous = mSegment;
+        previous.end();
+        Segment next;
+        try {
+            next = mNextSegment.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the next journal segment", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot create the next journal segment", e.getCause());
+        }
+        mSegment = next;
+        prepareNextSegment(next.mNumber + 1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                previous.force();
+            }
+        });
+    }
+
+    private void prepareNextSegment(final int number) {
+        mNextSegment = mExecutor.submit(new Callable<Segment>() {
+            @Override
+            public Segment call() throws IOException {
+                return new Segment(mDirectory, number, mSegmentSize, mIndexInterval);
+            }
+        });
+    }
+
+    static BitsoChannels channel(byte[] bytes, int offset, int length) {
+        int start = stringValue(bytes, offset, length, TYPE_KEY);
+        if (start < 0) {
+            return null;
+        }
+        int end = offset + length;
+        for (int i = 0; i < CHANNELS.length; i++) {
+            byte[] name = CHANNEL_NAMES[i];
+            if (start + name.length < end && bytes[start + name.length] == '"'
+                    && regionMatches(bytes, start, name)) {
+                return CHANNELS[i];
+            }
+        }
+        return null;
+    }
+
+    static int book(byte[] bytes, int offset, int length, byte[] into) {
+        int start = stringValue(bytes, offset, length, BOOK_KEY);
+        if (start < 0) {
+            return 0;
+        }
+        int end = offset + length;
+        int bookLength = 0;
+        for (int i = start; i < end && bytes[i] != '"' && bookLength < into.length; i++) {
+            into[bookLength++] = bytes[i];
+        }
+        return bookLength;
+    }
+
+    // Position of the first character of the string value of a top level or nested key, -1 if absent
+    private static int stringValue(byte[] bytes, int offset, int length, byte[] key) {
+        int end = offset + length - key.length;
+        for (int i = offset; i <= end; i++) {
+            if (bytes[i] == '"' && regionMatches(bytes, i, key)) {
+                int j = i + key.length;
+                while (j < offset + length && (bytes[j] == ' ' || bytes[j] == ':' || bytes[j] == '\t')) {
+                    j++;
+                }
+                if (j < offset + length && bytes[j] == '"') {
+                    return j + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(byte[] bytes, int start, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Segment {
+        private final File mFile;
+        private final File mIndexFile;
+        private final int mNumber;
+        private final int mIndexInterval;
+        private final MappedByteBuffer mData;
+        private final MappedByteBuffer mIndex;
+        private long mRecords;
+
+        private Segment(File directory, int number, int size, int indexInterval) throws IOException {
+            mFile = JournalFormat.segmentFile(directory, number);
+            mIndexFile = JournalFormat.indexFile(directory, number);
+            mNumber = number;
+            mIndexInterval = indexInterval;
+            mData = map(mFile, size);
+            // One entry per index interval of the smallest records
+            int maxEntries = size / (JournalFormat.RECORD_HEADER_SIZE * indexInterval) + 2;
+            mIndex = map(mIndexFile, maxEntries * JournalFormat.INDEX_ENTRY_SIZE);
+
+            mData.putInt(JournalFormat.MAGIC);
+            mData.putInt(JournalFormat.VERSION);
+            mData.putInt(number);
+            mData.putLong(System.currentTimeMillis());
+            mData.putLong(System.nanoTime());
+            mData.position(JournalFormat.HEADER_SIZE);
+        }
+
+        private static MappedByteBuffer map(File file, int size) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(size);
+                // The mapping stays valid once the file is closed
+                return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                raf.close();
+            }
+        }
+
+        private boolean fits(int recordSize) {
+            // Keep room for the end marker
+            return mData.remaining() >= recordSize + 4;
+        }
+
+        private void append(byte[] bytes, int offset, int length, long receivedNanos, byte channel, byte[] book,
+                int bookLength) {
+            int position = mData.position();
+            if (mRecords % mIndexInterval == 0 && mIndex.remaining() >= JournalFormat.INDEX_ENTRY_SIZE) {
+                mIndex.putLong(position);
+                mIndex.putLong(receivedNanos);
+            }
+            mData.position(position + 4);
+            mData.putLong(receivedNanos);
+            mData.put(channel);
+            mData.put((byte) bookLength);
+            mData.put(book, 0, bookLength);
+            mData.put(bytes, offset, length);
+            // Length last, a record with a length is complete
+            mData.putInt(position, length);
+            mRecords++;
+        }
+
+        private void end() {
+            mData.putInt(mData.position(), JournalFormat.END_OF_SEGMENT);
+        }
+
+        private void force() {
+            mData.force();
+            mIndex.force();
+        }
+
+        private void delete() {
+            mFile.delete();
+            mIndexFile.delete();
+        }
+    }
+}
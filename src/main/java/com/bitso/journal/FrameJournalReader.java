@@ -0,0 +1,245 @@
+package com.bitso.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import com.bitso.websockets.BitsoChannels;
+
+/**
+ * Reads back the frames recorded by a {@link FrameJournal}, oldest first, across its segments. The reader can
+ * follow a journal that is still being written: {@link #next()} returns false when it reaches the last frame
+ * written so far and can be called again later.
+ *
+ * The accessors describe the current frame, the bytes returned by {@link #getBytes()} are reused by the next
+ * call to {@link #next()}. Instances are not thread-safe.
+ */
+public class FrameJournalReader implements Closeable {
+    private final File mDirectory;
+    private int[] mSegments;
+    private int mSegmentIndex = -1;
+    private MappedByteBuffer mData;
+    private ByteBuffer mIndex;
+    private long mCreatedMillis;
+    private long mCreatedNanos;
+    private int mPosition;
+
+    private long mReceivedNanos;
+    private BitsoChannels mChannel;
+    private final byte[] mBookBytes = new byte[JournalFormat.MAX_BOOK_LENGTH];
+    private int mBookLength;
+    private String mBook;
+    private byte[] mBytes = new byte[4096];
+    private int mLength;
+
+    public FrameJournalReader(File directory) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IOException("No journal in " + directory);
+        }
+        mDirectory = directory;
+        mSegments = JournalFormat.segments(directory);
+        if (mSegments.length > 0) {
+            open(0);
+        }
+    }
+
+    /**
+     * Moves to the next frame.
+     *
+     * @return false if no more frames were written yet
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (mData == null && !advance(false)) {
+                return false;
+            }
+            int length = mData.getInt(mPosition);
+            if (length > 0) {
+                read(length);
+                return true;
+            }
+            if (!advance(length == JournalFormat.END_OF_SEGMENT)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Positions the reader so that {@link #next()} returns the first frame received at or after receivedNanos.
+     * Receive times come from {@link System#nanoTime()}, so they only compare within one recording run.
+     */
+    public void seek(long receivedNanos) throws IOException {
+        mSegments = JournalFormat.segments(mDirectory);
+        int segment = 0;
+        for (int i = 1; i < mSegments.length; i++) {
+            long first = firstIndexedNanos(mSegments[i]);
+            if (first == Long.MIN_VALUE || first > receivedNanos) {
+                break;
+            }
+            segment = i;
+        }
+        if (mSegments.length == 0) {
+            return;
+        }
+        open(segment);
+
+        // Last index entry at or before receivedNanos
+        for (int entry = 0; entry + JournalFormat.INDEX_ENTRY_SIZE <= mIndex.capacity();
+                entry += JournalFormat.INDEX_ENTRY_SIZE) {
+            long position = mIndex.getLong(entry);
+            if (position == 0 || mIndex.getLong(entry + 8) > receivedNanos) {
+                break;
+            }
+            mPosition = (int) position;
+        }
+        while (true) {
+            int length = mData.getInt(mPosition);
+            if (length > 0 && mData.getLong(mPosition + 4) < receivedNanos) {
+                mPosition += JournalFormat.RECORD_HEADER_SIZE + mData.get(mPosition + 13) + length;
+            } else if (length == JournalFormat.END_OF_SEGMENT && mSegmentIndex + 1 < mSegments.length) {
+                open(mSegmentIndex + 1);
+            } else {
+                return;
+            }
+        }
+    }
+
+    public long getReceivedNanos() {
+        return mReceivedNanos;
+    }
+
+    /**
+     * @return the wall clock time the frame was received at, derived from the segment's creation time
+     */
+    public long getReceivedMillis() {
+        return mCreatedMillis + (mReceivedNanos - mCreatedNanos) / 1000000L;
+    }
+
+    /**
+     * @return the channel of the frame, null when it did not name a known one
+     */
+    public BitsoChannels getChannel() {
+        return mChannel;
+    }
+
+    /**
+     * @return the book of the frame, null when it did not name one
+     */
+    public String getBook() {
+        if (mBook == null && mBookLength > 0) {
+            mBook = new String(mBookBytes, 0, mBookLength, StandardCharsets.US_ASCII);
+        }
+        return mBook;
+    }
+
+    public byte[] getBytes() {
+        return mBytes;
+    }
+
+    public int getLength() {
+        return mLength;
+    }
+
+    public String getMessage() {
+        return new String(mBytes, 0, mLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the number of the segment holding the current frame
+     */
+    public int getSegment() {
+        return (mSegmentIndex < 0) ? -1 : mSegments[mSegmentIndex];
+    }
+
+    @Override
+    public void close() {
+        mData = null;
+        mIndex = null;
+    }
+
+    private void read(int length) {
+        int position = mPosition;
+        mReceivedNanos = mData.getLong(position + 4);
+        mChannel = JournalFormat.channel(mData.get(position + 12));
+        int bookLength = mData.get(position + 13);
+        if (bookLength != mBookLength || !sameBook(position + JournalFormat.RECORD_HEADER_SIZE, bookLength)) {
+            for (int i = 0; i < bookLength; i++) {
+                mBookBytes[i] = mData.get(position + JournalFormat.RECORD_HEADER_SIZE + i);
+            }
+            mBookLength = bookLength;
+            mBook = null;
+        }
+        if (mBytes.length < length) {
+            mBytes = new byte[Math.max(length, mBytes.length << 1)];
+        }
+        mData.position(position + JournalFormat.RECORD_HEADER_SIZE + bookLength);
+        mData.get(mBytes, 0, length);
+        mLength = length;
+        mPosition = mData.position();
+    }
+
+    private boolean sameBook(int position, int bookLength) {
+        for (int i = 0; i < bookLength; i++) {
+            if (mData.get(position + i) != mBookBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Moves to the next segment once the writer has left the current one
+    private boolean advance(boolean ended) throws IOException {
+        if (mSegmentIndex + 1 >= mSegments.length) {
+            mSegments = JournalFormat.segments(mDirectory);
+        }
+        int next = mSegmentIndex + 1;
+        if (next >= mSegments.length) {
+            return false;
+        }
+        // Without an end marker the writer stopped abruptly, skip ahead only once a later segment has data
+        if (!ended && mData != null && firstIndexedNanos(mSegments[next]) == Long.MIN_VALUE) {
+            return false;
+        }
+        open(next);
+        return true;
+    }
+
+    private void open(int segmentIndex) throws IOException {
+        int segment = mSegments[segmentIndex];
+        mData = map(JournalFormat.segmentFile(mDirectory, segment));
+        if (mData.capacity() < JournalFormat.HEADER_SIZE || mData.getInt(0) != JournalFormat.MAGIC) {
+            throw new IOException("Not a journal segment: " + JournalFormat.segmentFile(mDirectory, segment));
+        }
+        File indexFile = JournalFormat.indexFile(mDirectory, segment);
+        mIndex = indexFile.exists() ? map(indexFile) : ByteBuffer.allocate(0);
+        mCreatedMillis = mData.getLong(JournalFormat.CREATED_MILLIS_OFFSET);
+        mCreatedNanos = mData.getLong(JournalFormat.CREATED_NANOS_OFFSET);
+        mSegmentIndex = segmentIndex;
+        mPosition = JournalFormat.HEADER_SIZE;
+    }
+
+    private long firstIndexedNanos(int segment) throws IOException {
+        File indexFile = JournalFormat.indexFile(mDirectory, segment);
+        if (!indexFile.exists()) {
+            return Long.MIN_VALUE;
+        }
+        MappedByteBuffer index = map(indexFile);
+        if (index.capacity() < JournalFormat.INDEX_ENTRY_SIZE || index.getLong(0) == 0) {
+            return Long.MIN_VALUE;
+        }
+        return index.getLong(8);
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+    }
+}
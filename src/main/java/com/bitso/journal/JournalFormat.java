@@ -0,0 +1,98 @@
+package com.bitso.journal;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+
+import com.bitso.websockets.BitsoChannels;
+
+/**
+ * Layout shared by {@link FrameJournal} and {@link FrameJournalReader}.
+ *
+ * A journal is a directory of segment files {@code frames-000000.journal}, {@code frames-000001.journal}, ... each
+ * pre-sized and written through a memory mapping. A segment starts with a {@value #HEADER_SIZE} byte header
+ * (magic, version, segment number, and the wall clock and {@link System#nanoTime()} at creation, which relate
+ * receive timestamps to the wall clock), followed by records:
+ *
+ * <pre>
+ * int  payload length, 0 where nothing was written yet, -1 once the writer moved on to the next segment
+ * long receive time, System.nanoTime()
+ * byte channel, 0 when unknown, otherwise BitsoChannels ordinal + 1
+ * byte book length
+ * book, ASCII
+ * payload, the UTF-8 frame text
+ * </pre>
+ *
+ * Each segment has a sibling {@code .index} file of {@value #INDEX_ENTRY_SIZE} byte entries, written for the
+ * first record and every few records after it:
+ *
+ * <pre>
+ * long position of the record in the segment
+ * long receive time of the record, System.nanoTime()
+ * </pre>
+ *
+ * An entry with position 0 ends the index.
+ */
+final class JournalFormat {
+    static final int MAGIC = 0x4254534a;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_HEADER_SIZE = 14;
+    static final int INDEX_ENTRY_SIZE = 16;
+    static final int MAX_BOOK_LENGTH = 32;
+    static final int END_OF_SEGMENT = -1;
+
+    static final int SEGMENT_NUMBER_OFFSET = 8;
+    static final int CREATED_MILLIS_OFFSET = 12;
+    static final int CREATED_NANOS_OFFSET = 20;
+
+    private static final String PREFIX = "frames-";
+    private static final String SUFFIX = ".journal";
+    private static final String INDEX_SUFFIX = ".index";
+    private static final BitsoChannels[] CHANNELS = BitsoChannels.values();
+
+    private JournalFormat() {
+    }
+
+    static File segmentFile(File directory, int segment) {
+        return new File(directory, String.format(Locale.ROOT, "%s%06d%s", PREFIX, segment, SUFFIX));
+    }
+
+    static File indexFile(File directory, int segment) {
+        return new File(directory, String.format(Locale.ROOT, "%s%06d%s", PREFIX, segment, INDEX_SUFFIX));
+    }
+
+    /**
+     * @return the segment numbers found in directory, in order
+     */
+    static int[] segments(File directory) {
+        String[] names = directory.list();
+        if (names == null) {
+            return new int[0];
+        }
+        int[] segments = new int[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                try {
+                    segments[count] = Integer.parseInt(name.substring(PREFIX.length(),
+                            name.length() - SUFFIX.length()));
+                    count++;
+                } catch (NumberFormatException e) {
+                    // Not a segment
+                }
+            }
+        }
+        segments = Arrays.copyOf(segments, count);
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    static byte channelCode(BitsoChannels channel) {
+        return (channel == null) ? 0 : (byte) (channel.ordinal() + 1);
+    }
+
+    static BitsoChannels channel(byte code) {
+        return (code <= 0 || code > CHANNELS.length) ? null : CHANNELS[code - 1];
+    }
+}
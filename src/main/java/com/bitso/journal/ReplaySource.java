@@ -0,0 +1,246 @@
+package com.bitso.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Observable;
+import java.util.concurrent.locks.LockSupport;
+
+import com.bitso.websockets.BitsoChannels;
+import com.bitso.websockets.BitsoDiffOrdersListener;
+import com.bitso.websockets.BitsoFrameHandler;
+import com.bitso.websockets.BitsoOrdersListener;
+import com.bitso.websockets.BitsoStreamListener;
+import com.bitso.websockets.BitsoStreamRouter;
+import com.bitso.websockets.BitsoTradesListener;
+
+/**
+ * Plays a {@link FrameJournal} back through the interfaces of {@link com.bitso.websockets.BitsoWebSocket}:
+ * observers get the connection Booleans and the message Strings, listeners registered per book get decoded
+ * updates through a {@link BitsoStreamRouter}, and frame handlers get the raw bytes. Code written against a
+ * live socket can so be backtested and benchmarked offline.
+ *
+ * Frames are paced by their recorded receive times divided by {@link #setSpeed(double) the speed}, or sent as
+ * fast as the consumers take them at {@link #MAX_SPEED}. Replays can also simulate disconnections, with frames
+ * lost while disconnected, and sequence gaps in the diff-orders channel.
+ */
+public class ReplaySource extends Observable implements Runnable {
+    public static final double REAL_TIME = 1;
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+    public static final long DEFAULT_MAX_PAUSE_MS = 5000;
+
+    private final File mDirectory;
+    private final BitsoStreamRouter mRouter = new BitsoStreamRouter();
+    private volatile BitsoFrameHandler[] mFrameHandlers = new BitsoFrameHandler[0];
+    private volatile boolean mRunning;
+    private double mSpeed = REAL_TIME;
+    private long mMaxPauseNanos = DEFAULT_MAX_PAUSE_MS * 1000000L;
+    private long mReconnectEvery;
+    private long mLostOnReconnect;
+    private long mDropDiffOrdersEvery;
+    private long mFrames;
+
+    public ReplaySource(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * @param speed
+     *            Multiple of the recorded pace, {@link #REAL_TIME} to keep it, {@link #MAX_SPEED} to not wait
+     *            at all
+     */
+    public void setSpeed(double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive: " + speed);
+        }
+        mSpeed = speed;
+    }
+
+    /**
+     * Caps the wait between two frames, recorded pauses such as the gap between two recording runs are
+     * shortened to it.
+     */
+    public void setMaxPauseMillis(long maxPauseMillis) {
+        mMaxPauseNanos = maxPauseMillis * 1000000L;
+    }
+
+    /**
+     * Simulates a disconnection every frames frames: observers are notified of the connection going down,
+     * lostFrames frames are skipped and the connection comes back up.
+     *
+     * @param frames
+     *            Frames between disconnections, 0 to never disconnect
+     */
+    public void setReconnectEvery(long frames, long lostFrames) {
+        mReconnectEvery = frames;
+        mLostOnReconnect = lostFrames;
+    }
+
+    /**
+     * Drops every frames-th diff-orders message, leaving a gap in its book's sequence numbers.
+     *
+     * @param frames
+     *            Diff-orders messages between drops, 0 to never drop
+     */
+    public void setDropDiffOrdersEvery(long frames) {
+        mDropDiffOrdersEvery = frames;
+    }
+
+    public BitsoStreamRouter getRouter() {
+        return mRouter;
+    }
+
+    public void addListener(String book, BitsoStreamListener listener) {
+        mRouter.addListener(book, listener);
+    }
+
+    public void addTradesListener(String book, BitsoTradesListener listener) {
+        mRouter.addTradesListener(book, listener);
+    }
+
+    public void addDiffOrdersListener(String book, BitsoDiffOrdersListener listener) {
+        mRouter.addDiffOrdersListener(book, listener);
+    }
+
+    public void addOrdersListener(String book, BitsoOrdersListener listener) {
+        mRouter.addOrdersListener(book, listener);
+    }
+
+    /**
+     * @see com.bitso.websockets.BitsoWebSocket#addFrameHandler(BitsoFrameHandler)
+     */
+    public synchronized void addFrameHandler(BitsoFrameHandler handler) {
+        BitsoFrameHandler[] handlers = Arrays.copyOf(mFrameHandlers, mFrameHandlers.length + 1);
+        handlers[handlers.length - 1] = handler;
+        mFrameHandlers = handlers;
+    }
+
+    public synchronized void removeFrameHandler(BitsoFrameHandler handler) {
+        List<BitsoFrameHandler> handlers = new ArrayList<BitsoFrameHandler>(Arrays.asList(mFrameHandlers));
+        if (handlers.remove(handler)) {
+            mFrameHandlers = handlers.toArray(new BitsoFrameHandler[handlers.size()]);
+        }
+    }
+
+    /**
+     * @return the number of frames delivered by the last replay
+     */
+    public long getFrames() {
+        return mFrames;
+    }
+
+    /**
+     * Stops a replay running on another thread after the current frame.
+     */
+    public void stop() {
+        mRunning = false;
+    }
+
+    @Override
+    public void run() {
+        try {
+            replay();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Replays the whole journal on the calling thread.
+     *
+     * @return the number of frames delivered
+     */
+    public long replay() throws IOException {
+        FrameJournalReader reader = new FrameJournalReader(mDirectory);
+        mRunning = true;
+        mFrames = 0;
+        long diffOrders = 0;
+        long sinceReconnect = 0;
+        long lost = 0;
+        long previousNanos = 0;
+        long deadline = System.nanoTime();
+        boolean paced = mSpeed != MAX_SPEED;
+        boolean first = true;
+        setConnected(Boolean.TRUE);
+        try {
+            while (mRunning && reader.next()) {
+                if (paced) {
+                    if (!first) {
+                        long pause = reader.getReceivedNanos() - previousNanos;
+                        if (pause > 0) {
+                            deadline += (long) (Math.min(pause, mMaxPauseNanos) / mSpeed);
+                        }
+                        waitUntil(deadline);
+                    }
+                    previousNanos = reader.getReceivedNanos();
+                    first = false;
+                }
+
+                if (lost > 0) {
+                    // Disconnected
+                    if (--lost == 0) {
+                        setConnected(Boolean.TRUE);
+                    }
+                    continue;
+                }
+                if (reader.getChannel() == BitsoChannels.DIFF_ORDERS && mDropDiffOrdersEvery > 0
+                        && ++diffOrders % mDropDiffOrdersEvery == 0) {
+                    continue;
+                }
+                if (mReconnectEvery > 0 && ++sinceReconnect > mReconnectEvery) {
+                    sinceReconnect = 0;
+                    setConnected(Boolean.FALSE);
+                    if (mLostOnReconnect > 0) {
+                        lost = mLostOnReconnect - 1;
+                        if (lost == 0) {
+                            setConnected(Boolean.TRUE);
+                        }
+                        continue;
+                    }
+                    setConnected(Boolean.TRUE);
+                }
+                deliver(reader);
+                mFrames++;
+            }
+        } finally {
+            reader.close();
+            mRunning = false;
+            setConnected(Boolean.FALSE);
+        }
+        return mFrames;
+    }
+
+    private void deliver(FrameJournalReader reader) {
+        long receivedNanos = System.nanoTime();
+        for (BitsoFrameHandler frameHandler : mFrameHandlers) {
+            frameHandler.onFrame(reader.getBytes(), 0, reader.getLength(), receivedNanos);
+        }
+        boolean observed = countObservers() > 0;
+        if (observed || mRouter.hasListeners()) {
+            String message = reader.getMessage();
+            mRouter.route(message);
+            if (observed) {
+                setChanged();
+                notifyObservers(message);
+            }
+        }
+    }
+
+    private void setConnected(Boolean connected) {
+        setChanged();
+        notifyObservers(connected);
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > 100000L) {
+                LockSupport.parkNanos(remaining - 50000L);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,647 @@
+package com.bitso.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+
+import com.bitso.helpers.FixedPoint;
+
+/**
+ * Pull parser reading UTF-8 encoded JSON straight from a byte stream.
+ *
+ * Values are consumed in document order with {@link #beginObject()}, {@link #nextName()}, {@link #nextString()}
+ * and friends, so model objects can be filled while the response is still being read, without building the
+ * whole document as a String and a tree of {@link org.json.JSONObject}s first. Strings and numbers are decoded
+ * into a reusable character buffer; object names and values drawn from a small set (see {@link #nextSymbol()})
+ * are cached, so the same key read thousands of times is only allocated once.
+ *
+ * Bitso encodes most numbers as strings, the typed accessors accept both representations. Instances are not
+ * thread-safe.
+ */
+public class BitsoJsonReader implements Closeable {
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int SYMBOL_CACHE_SIZE = 256;
+    private static final int MAX_SYMBOL_LENGTH = 32;
+
+    private final InputStream in;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+
+    private int[] stack = new int[32];
+    private int depth;
+    private Token peeked;
+
+    // Text of the last string or number read
+    private char[] chars = new char[64];
+    private int charCount;
+
+    private final String[] symbols = new String[SYMBOL_CACHE_SIZE];
+
+    public BitsoJsonReader(InputStream in) {
+        this(in, BUFFER_SIZE);
+    }
+
+    public BitsoJsonReader(InputStream in, int bufferSize) {
+        if (in == null) {
+            throw new IllegalArgumentException("Input stream can't be null");
+        }
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Reads a document already in memory, such as a WebSocket frame, without copying it.
+     */
+    public BitsoJsonReader(byte[] bytes, int offset, int length) {
+        this.in = null;
+        this.buffer = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Starts reading another in-memory document, reusing this reader and its buffers.
+     *
+     * @throws IllegalStateException
+     *             if the reader was created over a stream
+     */
+    public void reset(byte[] bytes, int offset, int length) {
+        if (in != null) {
+            throw new IllegalStateException("Only readers over a byte array can be reset");
+        }
+        buffer = bytes;
+        position = offset;
+        limit = offset + length;
+        depth = 0;
+        stack[depth++] = EMPTY_DOCUMENT;
+        peeked = null;
+    }
+
+    /**
+     * @return the type of the next token without consuming it
+     */
+    public Token peek() throws IOException {
+        if (peeked == null) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+        peeked = null;
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+        peeked = null;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+        peeked = null;
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+        peeked = null;
+    }
+
+    /**
+     * @return true if the current array or object has more elements
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        readString();
+        peeked = null;
+        return symbol();
+    }
+
+    /**
+     * @return the next string, number or boolean as text, null for a JSON null
+     */
+    public String nextString() throws IOException {
+        if (!readText()) {
+            return null;
+        }
+        return new String(chars, 0, charCount);
+    }
+
+    /**
+     * Appends the next string, number or boolean to a reusable builder instead of allocating a String.
+     *
+     * @return false for a JSON null, nothing is appended then
+     */
+    public boolean nextString(StringBuilder into) throws IOException {
+        if (!readText()) {
+            return false;
+        }
+        into.append(chars, 0, charCount);
+        return true;
+    }
+
+    /**
+     * Same as {@link #nextString()} for values repeated all over a response, such as book names, currencies or
+     * sides. Short values are cached and the same instance returned every time they are read.
+     */
+    public String nextSymbol() throws IOException {
+        if (!readText()) {
+            return null;
+        }
+        return symbol();
+    }
+
+    /**
+     * Reads a number or a numeric string. Null and empty values are read as zero, the same way
+     * {@link com.bitso.helpers.Helpers#getBD(org.json.JSONObject, String)} does.
+     */
+    public BigDecimal nextBigDecimal() throws IOException {
+        if (!readText()) {
+            return BigDecimal.ZERO;
+        }
+        int start = 0;
+        int end = charCount;
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+        if (isNullOrEmpty(start, end)) {
+            return BigDecimal.ZERO;
+        }
+        try {
+            return new BigDecimal(chars, start, end - start);
+        } catch (NumberFormatException e) {
+            throw new MalformedJsonException("Invalid number: " + new String(chars, start, end - start), e);
+        }
+    }
+
+    /**
+     * Reads a number or a numeric string as a long scaled by 10^scale, see {@link FixedPoint}. Null and empty
+     * values are read as zero.
+     */
+    public long nextFixed(int scale) throws IOException {
+        if (!readText()) {
+            return 0;
+        }
+        int start = 0;
+        int end = charCount;
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+        if (isNullOrEmpty(start, end)) {
+            return 0;
+        }
+        try {
+            return FixedPoint.parse(chars, start, end - start, scale);
+        } catch (NumberFormatException e) {
+            throw new MalformedJsonException("Invalid number: " + new String(chars, start, end - start), e);
+        } catch (ArithmeticException e) {
+            throw new MalformedJsonException("Number out of range: " + new String(chars, start, end - start), e);
+        }
+    }
+
+    // Empty or the string "null", both read as zero by the decimal readers
+    private boolean isNullOrEmpty(int start, int end) {
+        return start == end || (end - start == 4 && chars[start] == 'n' && chars[start + 1] == 'u'
+                && chars[start + 2] == 'l' && chars[start + 3] == 'l');
+    }
+
+    public long nextLong() throws IOException {
+        if (!readText()) {
+            throw new MalformedJsonException("Expected a number but was null");
+        }
+        if (charCount == 0) {
+            throw new MalformedJsonException("Expected a number but was an empty string");
+        }
+        int i = 0;
+        boolean negative = chars[0] == '-';
+        if (negative || chars[0] == '+') {
+            i++;
+        }
+        if (i == charCount) {
+            throw invalidNumber();
+        }
+        long value = 0;
+        for (; i < charCount; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                throw invalidNumber();
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw invalidNumber();
+        }
+        return (int) value;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        boolean value = buffer[position] == 't';
+        readLiteral(value ? "true" : "false");
+        peeked = null;
+        return value;
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        readLiteral("null");
+        peeked = null;
+    }
+
+    /**
+     * Skips the next value, including every nested value of an array or object.
+     */
+    public void skipValue() throws IOException {
+        int nested = 0;
+        do {
+            switch (peek()) {
+            case BEGIN_OBJECT:
+                beginObject();
+                nested++;
+                break;
+            case BEGIN_ARRAY:
+                beginArray();
+                nested++;
+                break;
+            case END_OBJECT:
+                endObject();
+                nested--;
+                break;
+            case END_ARRAY:
+                endArray();
+                nested--;
+                break;
+            case NAME:
+                nextName();
+                break;
+            case END_DOCUMENT:
+                throw new MalformedJsonException("Unexpected end of document");
+            default:
+                readText();
+                break;
+            }
+        } while (nested > 0);
+    }
+
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a string, number or boolean into the character buffer.
+     *
+     * @return false if the value was null
+     */
+    private boolean readText() throws IOException {
+        switch (peek()) {
+        case STRING:
+            readString();
+            break;
+        case NUMBER:
+            readNumber();
+            break;
+        case BOOLEAN:
+            String literal = buffer[position] == 't' ? "true" : "false";
+            readLiteral(literal);
+            charCount = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                appendChar(literal.charAt(i));
+            }
+            break;
+        case NULL:
+            readLiteral("null");
+            peeked = null;
+            return false;
+        default:
+            throw unexpected("a value");
+        }
+        peeked = null;
+        return true;
+    }
+
+    private Token doPeek() throws IOException {
+        int scope = stack[depth - 1];
+        int c;
+        switch (scope) {
+        case EMPTY_ARRAY:
+            stack[depth - 1] = NONEMPTY_ARRAY;
+            c = nextNonWhitespace();
+            if (c == ']') {
+                return Token.END_ARRAY;
+            }
+            position--;
+            break;
+        case NONEMPTY_ARRAY:
+            c = nextNonWhitespace();
+            if (c == ']') {
+                return Token.END_ARRAY;
+            }
+            if (c != ',') {
+                throw syntaxError("Unterminated array");
+            }
+            break;
+        case EMPTY_OBJECT:
+        case NONEMPTY_OBJECT:
+            c = nextNonWhitespace();
+            if (c == '}') {
+                return Token.END_OBJECT;
+            }
+            if (scope == NONEMPTY_OBJECT) {
+                if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+                c = nextNonWhitespace();
+            }
+            if (c != '"') {
+                throw syntaxError("Expected name");
+            }
+            stack[depth - 1] = DANGLING_NAME;
+            return Token.NAME;
+        case DANGLING_NAME:
+            stack[depth - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+            break;
+        case EMPTY_DOCUMENT:
+            stack[depth - 1] = NONEMPTY_DOCUMENT;
+            break;
+        default:
+            if (nextNonWhitespace() == -1) {
+                return Token.END_DOCUMENT;
+            }
+            throw syntaxError("Multiple top level values");
+        }
+
+        c = nextNonWhitespace();
+        switch (c) {
+        case '{':
+            return Token.BEGIN_OBJECT;
+        case '[':
+            return Token.BEGIN_ARRAY;
+        case '"':
+            return Token.STRING;
+        case 't':
+        case 'f':
+            position--;
+            return Token.BOOLEAN;
+        case 'n':
+            position--;
+            return Token.NULL;
+        case -1:
+            throw syntaxError("Unexpected end of document");
+        default:
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                position--;
+                return Token.NUMBER;
+            }
+            throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    // Reads a string whose opening quote was already consumed
+    private void readString() throws IOException {
+        charCount = 0;
+        while (true) {
+            if (position == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            int c = buffer[position++];
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                appendChar(readEscape());
+            } else if (c >= 0) {
+                appendChar((char) c);
+            } else {
+                readMultiByte(c);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = nextByte();
+        switch (c) {
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(nextByte(), 16);
+                if (digit < 0) {
+                    throw syntaxError("Invalid unicode escape");
+                }
+                value = (value << 4) | digit;
+            }
+            return (char) value;
+        case 'b':
+            return '\b';
+        case 'f':
+            return '\f';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 't':
+            return '\t';
+        case '"':
+        case '\\':
+        case '/':
+            return (char) c;
+        default:
+            throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    private void readMultiByte(int first) throws IOException {
+        int codePoint;
+        int continuation;
+        if ((first & 0xe0) == 0xc0) {
+            codePoint = first & 0x1f;
+            continuation = 1;
+        } else if ((first & 0xf0) == 0xe0) {
+            codePoint = first & 0x0f;
+            continuation = 2;
+        } else if ((first & 0xf8) == 0xf0) {
+            codePoint = first & 0x07;
+            continuation = 3;
+        } else {
+            throw syntaxError("Invalid UTF-8 sequence");
+        }
+        for (int i = 0; i < continuation; i++) {
+            int next = nextByte();
+            if ((next & 0xc0) != 0x80) {
+                throw syntaxError("Invalid UTF-8 sequence");
+            }
+            codePoint = (codePoint << 6) | (next & 0x3f);
+        }
+        if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            appendChar(Character.highSurrogate(codePoint));
+            appendChar(Character.lowSurrogate(codePoint));
+        } else {
+            appendChar((char) codePoint);
+        }
+    }
+
+    private void readNumber() throws IOException {
+        charCount = 0;
+        while (position < limit || fill()) {
+            int c = buffer[position];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                appendChar((char) c);
+                position++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (nextByte() != literal.charAt(i)) {
+                throw syntaxError("Expected " + literal);
+            }
+        }
+    }
+
+    private String symbol() {
+        if (charCount > MAX_SYMBOL_LENGTH) {
+            return new String(chars, 0, charCount);
+        }
+        int hash = 0;
+        for (int i = 0; i < charCount; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        // Two way set associative, so a pair of colliding names such as "d" and "diff-orders" both stay cached
+        int index = (hash ^ (hash >>> 16)) & (SYMBOL_CACHE_SIZE - 1);
+        int partner = index ^ 1;
+        if (matches(symbols[index])) {
+            return symbols[index];
+        }
+        if (matches(symbols[partner])) {
+            return symbols[partner];
+        }
+        String symbol = new String(chars, 0, charCount);
+        if (symbols[index] != null && symbols[partner] == null) {
+            symbols[partner] = symbols[index];
+        }
+        symbols[index] = symbol;
+        return symbol;
+    }
+
+    private boolean matches(String cached) {
+        if (cached == null || cached.length() != charCount) {
+            return false;
+        }
+        for (int i = 0; i < charCount; i++) {
+            if (cached.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendChar(char c) {
+        if (charCount == chars.length) {
+            char[] larger = new char[chars.length << 1];
+            System.arraycopy(chars, 0, larger, 0, charCount);
+            chars = larger;
+        }
+        chars[charCount++] = c;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (position < limit || fill()) {
+            int c = buffer[position++] & 0xff;
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private int nextByte() throws IOException {
+        if (position == limit && !fill()) {
+            throw syntaxError("Unexpected end of document");
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            position = limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            int[] larger = new int[depth << 1];
+            System.arraycopy(stack, 0, larger, 0, depth);
+            stack = larger;
+        }
+        stack[depth++] = scope;
+    }
+
+    private void expect(Token expected) throws IOException {
+        if (peek() != expected) {
+            throw unexpected(expected.name());
+        }
+    }
+
+    private MalformedJsonException unexpected(String expected) {
+        return new MalformedJsonException("Expected " + expected + " but was " + peeked);
+    }
+
+    private MalformedJsonException invalidNumber() {
+        return new MalformedJsonException("Invalid integer: " + new String(chars, 0, charCount));
+    }
+
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException(message);
+    }
+}
@@ -0,0 +1,66 @@
+package com.bitso.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.bitso.exceptions.BitsoAPIException;
+import com.bitso.exceptions.BitsoPayloadException;
+import com.bitso.exceptions.BitsoServerException;
+import com.bitso.http.ResponseDecoder;
+
+/**
+ * Decodes the envelope every Bitso API response is wrapped in, handing the {@code payload} value to a
+ * {@link PayloadReader} as soon as it is reached. Mirrors {@link com.bitso.Bitso#getJSONPayload(String)}: an
+ * {@code error} value is thrown as a {@link BitsoAPIException} carrying the server error code, a missing payload
+ * as a {@link BitsoPayloadException} and invalid JSON as a {@link BitsoServerException}.
+ */
+public class BitsoResponseDecoder<T> implements ResponseDecoder<T> {
+    private final PayloadReader<T> payloadReader;
+
+    public BitsoResponseDecoder(PayloadReader<T> payloadReader) {
+        this.payloadReader = payloadReader;
+    }
+
+    public T decode(InputStream body)
+            throws IOException, BitsoAPIException, BitsoPayloadException, BitsoServerException {
+        if (body == null) {
+            throw new BitsoServerException("Server response is null");
+        }
+
+        BitsoJsonReader reader = new BitsoJsonReader(body);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("payload".equals(name)) {
+                    return payloadReader.read(reader);
+                } else if ("error".equals(name)) {
+                    throw readError(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } catch (MalformedJsonException e) {
+            throw new BitsoServerException("Server response is not a valid JSON", e);
+        }
+        throw new BitsoPayloadException("Server response does not contain payload");
+    }
+
+    private BitsoAPIException readError(BitsoJsonReader reader) throws IOException {
+        int code = -1;
+        String message = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("code".equals(name)) {
+                code = reader.nextInt();
+            } else if ("message".equals(name)) {
+                message = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new BitsoAPIException(code, message);
+    }
+}
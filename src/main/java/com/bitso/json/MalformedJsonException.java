@@ -0,0 +1,18 @@
+package com.bitso.json;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link BitsoJsonReader} when the input is not valid JSON or does not have the expected structure.
+ */
+public class MalformedJsonException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public MalformedJsonException(String message) {
+        super(message);
+    }
+
+    public MalformedJsonException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,10 @@
+package com.bitso.json;
+
+import java.io.IOException;
+
+/**
+ * Reads the {@code payload} value of a Bitso API response, see {@link BitsoResponseDecoder}.
+ */
+public interface PayloadReader<T> {
+    T read(BitsoJsonReader reader) throws IOException;
+}
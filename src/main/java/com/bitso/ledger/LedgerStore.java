@@ -0,0 +1,380 @@
+package com.bitso.ledger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.bitso.BitsoOperation;
+import com.bitso.helpers.Iso8601;
+
+/**
+ * Append-only file of {@link BitsoOperation} entries, indexed in memory by entry id and by operation time.
+ *
+ * The file starts with a {@value #HEADER_SIZE} byte header (magic and version) followed by records:
+ *
+ * <pre>
+ * int   body length
+ * int   CRC32 of the body
+ * long  operation time, epoch millis, Long.MIN_VALUE when unknown
+ * str   eid
+ * str   operation
+ * byte  balance update count, each: str currency, byte scale, long unscaled amount
+ * short detail count, -1 when there are no details, each: str key, str value
+ * </pre>
+ *
+ * where str is a short UTF-8 length, -1 for null, followed by the bytes. Amounts whose unscaled value does not
+ * fit in a long are written with scale {@value #DECIMAL_AMOUNT} followed by their str form, a null amount is
+ * scale {@value #NULL_AMOUNT}.
+ *
+ * The indexes are rebuilt by scanning the file when it is opened. A record cut short or corrupted by a crash
+ * while appending ends the file and is truncated away. Lookups and queries read the records back from the file
+ * and never touch the network.
+ */
+public class LedgerStore implements Closeable {
+    static final int MAGIC = 0x4254534c;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final byte NULL_AMOUNT = Byte.MIN_VALUE;
+    static final byte DECIMAL_AMOUNT = Byte.MAX_VALUE;
+
+    private final File mFile;
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileChannel mChannel;
+    private final Map<String, Long> mPositions = new HashMap<String, Long>();
+    private final ByteArrayOutputStream mBuffer = new ByteArrayOutputStream(256);
+    private final DataOutputStream mOut = new DataOutputStream(mBuffer);
+    private final CRC32 mCrc = new CRC32();
+    // Record positions sorted by operation time, ties in the order they were added
+    private long[] mTimes = new long[1024];
+    private long[] mTimePositions = new long[1024];
+    private int mCount;
+    private long mEnd;
+    private String mNewestEntryId;
+
+    public LedgerStore(File file) throws IOException {
+        mFile = file;
+        mRandomAccessFile = new RandomAccessFile(file, "rw");
+        mChannel = mRandomAccessFile.getChannel();
+        try {
+            if (mChannel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).rewind();
+                writeFully(header, 0);
+                mEnd = HEADER_SIZE;
+            } else {
+                load();
+            }
+        } catch (IOException e) {
+            mRandomAccessFile.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Appends operation unless an entry with its id is stored already. The record reaches the disk on
+     * {@link #force()} or when the operating system writes it back.
+     *
+     * @return whether the operation was added
+     */
+    public synchronized boolean add(BitsoOperation operation) throws IOException {
+        String entryId = operation.getEntryId();
+        if (entryId == null) {
+            throw new IllegalArgumentException("Operation without an entry id");
+        }
+        if (mPositions.containsKey(entryId)) {
+            return false;
+        }
+        mBuffer.reset();
+        mOut.writeInt(0);
+        mOut.writeInt(0);
+        long time = operation.getOperationDateMillis();
+        mOut.writeLong(time);
+        writeString(entryId);
+        writeString(operation.getOperationDescription());
+        BitsoOperation.BalanceUpdate[] balances = operation.getAfterOperationBalances();
+        int balanceCount = (balances == null) ? 0 : balances.length;
+        if (balanceCount > Byte.MAX_VALUE) {
+            throw new IOException("Too many balance updates in " + entryId);
+        }
+        mOut.writeByte(balanceCount);
+        for (int i = 0; i < balanceCount; i++) {
+            writeString(balances[i].getCurrency());
+            writeAmount(balances[i].getAmount());
+        }
+        HashMap<String, String> details = operation.getDetails();
+        if (details == null) {
+            mOut.writeShort(-1);
+        } else {
+            mOut.writeShort(details.size());
+            for (Map.Entry<String, String> detail : details.entrySet()) {
+                writeString(detail.getKey());
+                writeString(detail.getValue());
+            }
+        }
+
+        byte[] record = mBuffer.toByteArray();
+        int bodyLength = record.length - RECORD_HEADER_SIZE;
+        mCrc.reset();
+        mCrc.update(record, RECORD_HEADER_SIZE, bodyLength);
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(0, bodyLength).putInt(4, (int) mCrc.getValue());
+        long position = mEnd;
+        writeFully(buffer, position);
+        mEnd += record.length;
+        index(entryId, time, position);
+        return true;
+    }
+
+    /**
+     * Forces the records added so far to the disk.
+     */
+    public synchronized void force() throws IOException {
+        mChannel.force(false);
+    }
+
+    /**
+     * @return the operation with entryId, null when it is not stored
+     */
+    public synchronized BitsoOperation get(String entryId) throws IOException {
+        Long position = mPositions.get(entryId);
+        return (position == null) ? null : read(position);
+    }
+
+    /**
+     * @param fromMillis
+     *            Earliest operation time, inclusive
+     * @param toMillis
+     *            Latest operation time, exclusive
+     * @param operation
+     *            trade, fee, funding or withdrawal, null for every operation
+     * @return the stored operations in the range, oldest first
+     */
+    public synchronized List<BitsoOperation> query(long fromMillis, long toMillis, String operation)
+            throws IOException {
+        List<BitsoOperation> operations = new ArrayList<BitsoOperation>();
+        int start = (fromMillis == Long.MIN_VALUE) ? 0 : upperBound(fromMillis - 1);
+        for (int i = start; i < mCount && mTimes[i] < toMillis; i++) {
+            BitsoOperation stored = read(mTimePositions[i]);
+            if (operation == null || operation.equals(stored.getOperationDescription())) {
+                operations.add(stored);
+            }
+        }
+        return operations;
+    }
+
+    public synchronized int size() {
+        return mCount;
+    }
+
+    /**
+     * @return the id of the stored entry with the latest operation time, the last one added among several with
+     *         that time, null when the store is empty
+     */
+    public synchronized String getNewestEntryId() {
+        return mNewestEntryId;
+    }
+
+    /**
+     * @return the latest operation time stored, {@link Iso8601#INVALID} when the store is empty
+     */
+    public synchronized long getNewestMillis() {
+        return (mCount == 0) ? Iso8601.INVALID : mTimes[mCount - 1];
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mRandomAccessFile.close();
+    }
+
+    private void load() throws IOException {
+        long size = mChannel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (size >= HEADER_SIZE) {
+            readFully(header, 0);
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException(mFile + " is not a ledger store");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported ledger store version " + header.getInt(4) + " in " + mFile);
+        }
+
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= size) {
+            recordHeader.clear();
+            readFully(recordHeader, position);
+            int bodyLength = recordHeader.getInt(0);
+            if (bodyLength <= 0 || position + RECORD_HEADER_SIZE + bodyLength > size) {
+                break;
+            }
+            byte[] body = new byte[bodyLength];
+            readFully(ByteBuffer.wrap(body), position + RECORD_HEADER_SIZE);
+            mCrc.reset();
+            mCrc.update(body, 0, bodyLength);
+            if ((int) mCrc.getValue() != recordHeader.getInt(4)) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            long time = in.readLong();
+            index(readString(in), time, position);
+            position += RECORD_HEADER_SIZE + bodyLength;
+        }
+        if (position < size) {
+            // Torn or corrupted tail
+            mChannel.truncate(position);
+        }
+        mEnd = position;
+    }
+
+    private void index(String entryId, long time, long position) {
+        mPositions.put(entryId, position);
+        if (mCount == mTimes.length) {
+            mTimes = Arrays.copyOf(mTimes, mCount * 2);
+            mTimePositions = Arrays.copyOf(mTimePositions, mCount * 2);
+        }
+        int index = upperBound(time);
+        System.arraycopy(mTimes, index, mTimes, index + 1, mCount - index);
+        System.arraycopy(mTimePositions, index, mTimePositions, index + 1, mCount - index);
+        mTimes[index] = time;
+        mTimePositions[index] = position;
+        mCount++;
+        if (index == mCount - 1) {
+            mNewestEntryId = entryId;
+        }
+    }
+
+    /**
+     * @return the index of the first entry with a time after time
+     */
+    private int upperBound(long time) {
+        // Entries are mostly added in time order
+        if (mCount == 0 || mTimes[mCount - 1] <= time) {
+            return mCount;
+        }
+        int low = 0;
+        int high = mCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mTimes[middle] <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private BitsoOperation read(long position) throws IOException {
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(recordHeader, position);
+        byte[] body = new byte[recordHeader.getInt(0)];
+        readFully(ByteBuffer.wrap(body), position + RECORD_HEADER_SIZE);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        long time = in.readLong();
+        String entryId = readString(in);
+        String description = readString(in);
+        BitsoOperation operation = new BitsoOperation(entryId, description,
+                (time == Iso8601.INVALID) ? null : new Date(time), null);
+        BitsoOperation.BalanceUpdate[] balances = new BitsoOperation.BalanceUpdate[in.readByte()];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = operation.new BalanceUpdate(readString(in), readAmount(in));
+        }
+        operation.setAfterOperationBalances(balances);
+        int detailCount = in.readShort();
+        if (detailCount >= 0) {
+            HashMap<String, String> details = new HashMap<String, String>();
+            for (int i = 0; i < detailCount; i++) {
+                details.put(readString(in), readString(in));
+            }
+            operation.setDetails(details);
+        }
+        return operation;
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            mOut.writeShort(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IOException("String of " + bytes.length + " bytes is too long for the ledger store");
+        }
+        mOut.writeShort(bytes.length);
+        mOut.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeAmount(BigDecimal amount) throws IOException {
+        if (amount == null) {
+            mOut.writeByte(NULL_AMOUNT);
+        } else if (amount.scale() > NULL_AMOUNT && amount.scale() < DECIMAL_AMOUNT
+                && amount.unscaledValue().bitLength() < 64) {
+            mOut.writeByte(amount.scale());
+            mOut.writeLong(amount.unscaledValue().longValue());
+        } else {
+            mOut.writeByte(DECIMAL_AMOUNT);
+            writeString(amount.toString());
+        }
+    }
+
+    private static BigDecimal readAmount(DataInputStream in) throws IOException {
+        byte scale = in.readByte();
+        if (scale == NULL_AMOUNT) {
+            return null;
+        }
+        if (scale == DECIMAL_AMOUNT) {
+            return new BigDecimal(readString(in));
+        }
+        return new BigDecimal(BigInteger.valueOf(in.readLong()), scale);
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += mChannel.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = mChannel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + mFile);
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.bitso.ledger;
+
+import java.io.IOException;
+
+import com.bitso.Bitso;
+import com.bitso.BitsoOperation;
+import com.bitso.BitsoPageIterator;
+import com.bitso.exceptions.BitsoAPIException;
+import com.bitso.exceptions.BitsoPaginationException;
+import com.bitso.exceptions.BitsoPayloadException;
+import com.bitso.exceptions.BitsoServerException;
+
+/**
+ * Keeps a {@link LedgerStore} up to date with the ledger of the account.
+ *
+ * Each {@link #sync()} walks the ledger oldest first starting after the newest entry of the store, so only
+ * operations that are not stored yet are downloaded. The first sync of an empty store downloads the whole
+ * history. Queries go to {@link #getStore()} and are answered from the local file.
+ */
+public class LedgerSync {
+    private final Bitso mBitso;
+    private final LedgerStore mStore;
+    private final int mPageSize;
+
+    public LedgerSync(Bitso bitso, LedgerStore store) {
+        this(bitso, store, BitsoPageIterator.MAX_PAGE_SIZE);
+    }
+
+    /**
+     * @param pageSize
+     *            Entries requested per ledger page, at most {@link BitsoPageIterator#MAX_PAGE_SIZE}
+     */
+    public LedgerSync(Bitso bitso, LedgerStore store, int pageSize) {
+        mBitso = bitso;
+        mStore = store;
+        mPageSize = pageSize;
+    }
+
+    public LedgerStore getStore() {
+        return mStore;
+    }
+
+    /**
+     * Downloads and stores the operations newer than the newest stored entry. When a request fails, the
+     * operations stored before it are kept and the next sync resumes after them.
+     *
+     * @return the number of operations added to the store
+     */
+    public synchronized int sync()
+            throws BitsoAPIException, BitsoPayloadException, BitsoServerException, IOException {
+        String newest = mStore.getNewestEntryId();
+        BitsoPageIterator<BitsoOperation> ledger = (newest == null)
+                ? mBitso.iterateLedger(null, mPageSize, "sort=asc")
+                : mBitso.iterateLedger(null, mPageSize, "sort=asc", "marker=" + newest);
+        int added = 0;
+        try {
+            while (ledger.hasNext()) {
+                if (mStore.add(ledger.next())) {
+                    added++;
+                }
+            }
+        } catch (BitsoPaginationException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BitsoAPIException) {
+                throw (BitsoAPIException) cause;
+            } else if (cause instanceof BitsoPayloadException) {
+                throw (BitsoPayloadException) cause;
+            } else if (cause instanceof BitsoServerException) {
+                throw (BitsoServerException) cause;
+            }
+            throw e;
+        } finally {
+            ledger.close();
+            mStore.force();
+        }
+        return added;
+    }
+}
@@ -0,0 +1,8 @@
+package com.bitso.websockets;
+
+/**
+ * Receives the decoded messages of the diff-orders channel from a {@link BitsoStreamRouter}.
+ */
+public interface BitsoDiffOrdersListener {
+    void onDiffOrders(BitsoStreamDiffOrders diffOrders);
+}
@@ -0,0 +1,9 @@
+package com.bitso.websockets;
+
+/**
+ * Receives the raw UTF-8 bytes of every text frame of a {@link BitsoWebSocket}, on its IO thread and before any
+ * decoding. The bytes are only valid during the call, copy what has to outlive it.
+ */
+public interface BitsoFrameHandler {
+    void onFrame(byte[] bytes, int offset, int length, long receivedNanos);
+}
@@ -0,0 +1,8 @@
+package com.bitso.websockets;
+
+/**
+ * Receives the decoded messages of the orders channel from a {@link BitsoStreamRouter}.
+ */
+public interface BitsoOrdersListener {
+    void onOrders(BitsoStreamOrders orders);
+}
@@ -0,0 +1,12 @@
+package com.bitso.websockets;
+
+/**
+ * Receives the decoded updates of the books it was registered for on a {@link BitsoStreamRouter}.
+ */
+public interface BitsoStreamListener {
+    /**
+     * @param update
+     *            A {@link BitsoStreamTrades}, {@link BitsoStreamDiffOrders} or {@link BitsoStreamOrders}
+     */
+    void onUpdate(BitsoStreamUpdate update);
+}
@@ -0,0 +1,215 @@
+package com.bitso.websockets;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Routes the messages of a {@link BitsoWebSocket} carrying several books to listeners registered per book and
+ * channel.
+ *
+ * Each message is parsed once and decoded into a {@link BitsoStreamTrades}, {@link BitsoStreamDiffOrders} or
+ * {@link BitsoStreamOrders} only if some listener wants its book and channel; every listener receives that same
+ * instance. Subscription acknowledgements and keep alive messages are not routed. Listeners registered for
+ * {@link #ALL_BOOKS} receive the messages of every book. An exception thrown by a listener is reported and does
+ * not keep the message from the other listeners.
+ */
+public class BitsoStreamRouter {
+    public static final String ALL_BOOKS = "*";
+
+    private final ConcurrentHashMap<String, BookListeners> mListeners =
+            new ConcurrentHashMap<String, BookListeners>();
+
+    public void addListener(String book, BitsoStreamListener listener) {
+        listeners(book).mUpdates.add(listener);
+    }
+
+    public void removeListener(String book, BitsoStreamListener listener) {
+        BookListeners listeners = mListeners.get(book);
+        if (listeners != null) {
+            listeners.mUpdates.remove(listener);
+        }
+    }
+
+    public void addTradesListener(String book, BitsoTradesListener listener) {
+        listeners(book).mTrades.add(listener);
+    }
+
+    public void removeTradesListener(String book, BitsoTradesListener listener) {
+        BookListeners listeners = mListeners.get(book);
+        if (listeners != null) {
+            listeners.mTrades.remove(listener);
+        }
+    }
+
+    public void addDiffOrdersListener(String book, BitsoDiffOrdersListener listener) {
+        listeners(book).mDiffOrders.add(listener);
+    }
+
+    public void removeDiffOrdersListener(String book, BitsoDiffOrdersListener listener) {
+        BookListeners listeners = mListeners.get(book);
+        if (listeners != null) {
+            listeners.mDiffOrders.remove(listener);
+        }
+    }
+
+    public void addOrdersListener(String book, BitsoOrdersListener listener) {
+        listeners(book).mOrders.add(listener);
+    }
+
+    public void removeOrdersListener(String book, BitsoOrdersListener listener) {
+        BookListeners listeners = mListeners.get(book);
+        if (listeners != null) {
+            listeners.mOrders.remove(listener);
+        }
+    }
+
+    /**
+     * @return whether any listener is registered, messages are not decoded otherwise
+     */
+    public boolean hasListeners() {
+        for (BookListeners listeners : mListeners.values()) {
+            if (!listeners.mUpdates.isEmpty() || !listeners.mTrades.isEmpty() || !listeners.mDiffOrders.isEmpty()
+                    || !listeners.mOrders.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes a message and hands it to the listeners of its book and channel.
+     *
+     * @return the decoded update, null if the message was not routed
+     */
+    public BitsoStreamUpdate route(String message) {
+        if (mListeners.isEmpty()) {
+            return null;
+        }
+        try {
+            JSONObject jsonObject = new JSONObject(message);
+            if (jsonObject.has("action") || !jsonObject.has("payload")) {
+                return null;
+            }
+            BitsoChannels channel = BitsoChannels.getBitsoChannel(jsonObject.optString("type"));
+            if (channel == null || channel == BitsoChannels.KA) {
+                return null;
+            }
+            BookListeners bookListeners = mListeners.get(jsonObject.optString("book"));
+            BookListeners allListeners = mListeners.get(ALL_BOOKS);
+            if (!wants(bookListeners, channel) && !wants(allListeners, channel)) {
+                return null;
+            }
+            BitsoStreamUpdate update = decode(jsonObject);
+            dispatch(bookListeners, update);
+            dispatch(allListeners, update);
+            return update;
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @return the update of a channel message, null for keep alive or unknown channels
+     */
+    public static BitsoStreamUpdate decode(JSONObject jsonObject) {
+        BitsoChannels channel = BitsoChannels.getBitsoChannel(jsonObject.optString("type"));
+        if (channel == null) {
+            return null;
+        }
+        switch (channel) {
+        case TRADES:
+            return new BitsoStreamTrades(jsonObject);
+        case DIFF_ORDERS:
+            return new BitsoStreamDiffOrders(jsonObject);
+        case ORDERS:
+            return new BitsoStreamOrders(jsonObject);
+        default:
+            return null;
+        }
+    }
+
+    private BookListeners listeners(String book) {
+        BookListeners listeners = mListeners.get(book);
+        if (listeners == null) {
+            BookListeners created = new BookListeners();
+            listeners = mListeners.putIfAbsent(book, created);
+            if (listeners == null) {
+                listeners = created;
+            }
+        }
+        return listeners;
+    }
+
+    private static boolean wants(BookListeners listeners, BitsoChannels channel) {
+        if (listeners == null) {
+            return false;
+        }
+        if (!listeners.mUpdates.isEmpty()) {
+            return true;
+        }
+        switch (channel) {
+        case TRADES:
+            return !listeners.mTrades.isEmpty();
+        case DIFF_ORDERS:
+            return !listeners.mDiffOrders.isEmpty();
+        case ORDERS:
+            return !listeners.mOrders.isEmpty();
+        default:
+            return false;
+        }
+    }
+
+    private static void dispatch(BookListeners listeners, BitsoStreamUpdate update) {
+        if (listeners == null || update == null) {
+            return;
+        }
+        // A failing listener must not take down the connection the other books and channels share
+        if (update instanceof BitsoStreamTrades) {
+            for (BitsoTradesListener listener : listeners.mTrades) {
+                try {
+                    listener.onTrades((BitsoStreamTrades) update);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        } else if (update instanceof BitsoStreamDiffOrders) {
+            for (BitsoDiffOrdersListener listener : listeners.mDiffOrders) {
+                try {
+                    listener.onDiffOrders((BitsoStreamDiffOrders) update);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        } else if (update instanceof BitsoStreamOrders) {
+            for (BitsoOrdersListener listener : listeners.mOrders) {
+                try {
+                    listener.onOrders((BitsoStreamOrders) update);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        for (BitsoStreamListener listener : listeners.mUpdates) {
+            try {
+                listener.onUpdate(update);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static class BookListeners {
+        private final CopyOnWriteArrayList<BitsoStreamListener> mUpdates =
+                new CopyOnWriteArrayList<BitsoStreamListener>();
+        private final CopyOnWriteArrayList<BitsoTradesListener> mTrades =
+                new CopyOnWriteArrayList<BitsoTradesListener>();
+        private final CopyOnWriteArrayList<BitsoDiffOrdersListener> mDiffOrders =
+                new CopyOnWriteArrayList<BitsoDiffOrdersListener>();
+        private final CopyOnWriteArrayList<BitsoOrdersListener> mOrders =
+                new CopyOnWriteArrayList<BitsoOrdersListener>();
+    }
+}
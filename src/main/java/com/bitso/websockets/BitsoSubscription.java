@@ -0,0 +1,54 @@
+package com.bitso.websockets;
+
+/**
+ * A channel of a book subscribed on a {@link BitsoWebSocket}.
+ */
+public class BitsoSubscription {
+    private final String mBook;
+    private final BitsoChannels mChannel;
+
+    public BitsoSubscription(String book, BitsoChannels channel) {
+        if (book == null || channel == null) {
+            throw new IllegalArgumentException("Book and channel are required");
+        }
+        mBook = book;
+        mChannel = channel;
+    }
+
+    public String getBook() {
+        return mBook;
+    }
+
+    public BitsoChannels getChannel() {
+        return mChannel;
+    }
+
+    /**
+     * @return the frame that subscribes to this channel
+     */
+    public String toSubscribeFrame() {
+        return "{ \"action\": \"subscribe\", \"book\": \"" + mBook + "\", \"type\": \"" + mChannel + "\" }";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BitsoSubscription)) {
+            return false;
+        }
+        BitsoSubscription other = (BitsoSubscription) o;
+        return mBook.equals(other.mBook) && mChannel == other.mChannel;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * mBook.hashCode() + mChannel.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mBook + ":" + mChannel;
+    }
+}
@@ -0,0 +1,8 @@
+package com.bitso.websockets;
+
+/**
+ * Receives the decoded messages of the trades channel from a {@link BitsoStreamRouter}.
+ */
+public interface BitsoTradesListener {
+    void onTrades(BitsoStreamTrades trades);
+}
@@ -2,24 +2,34 @@ package com.bitso.websockets;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Observable;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLException;
 
+import com.bitso.dispatch.FrameDispatcher;
+import com.bitso.http.NettyTransport;
 import com.bitso.exceptions.BitsoWebSocketException;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpClientCodec;
@@ -33,28 +43,105 @@ import io.netty.handler.codec.http.websocketx.WebSocketVersion;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
 
+/**
+ * Connection to the Bitso WebSocket API.
+ *
+ * With {@link #setAutoReconnect(boolean)} a dropped or stale connection is reopened with exponential backoff and
+ * every subscription is sent again. Observers see the connection go down and up again through the usual
+ * Boolean notifications. Bitso sends a {@code ka} message on connections without other traffic, so no frame
+ * at all for {@link #setIdleTimeoutSeconds(int) the idle timeout} means the connection is stale.
+ */
 public class BitsoWebSocket extends Observable{
-    private final String URL = "wss://ws.bitso.com";
-    private final int PORT = 443;
+    private static final String URL = "wss://ws.bitso.com";
+    private static final int PORT = 443;
+
+    public static final long DEFAULT_INITIAL_RECONNECT_DELAY_MS = 250;
+    public static final long DEFAULT_MAX_RECONNECT_DELAY_MS = 30000;
+    public static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 30;
+    public static final int DEFAULT_EVENT_LOOP_THREADS = 1;
+
+    private static SslContext sDefaultSslContext;
 
     private URI mUri;
     private SslContext mSslContext;
     private Channel mChannel;
     private EventLoopGroup mGroup;
+    private final boolean mOwnsGroup;
     private String mMessageReceived;
-    private Boolean mConnected;
+    private volatile Boolean mConnected;
+    private volatile boolean mAutoReconnect;
+    private volatile boolean mClosing;
+    private volatile int mIdleTimeoutSeconds = DEFAULT_IDLE_TIMEOUT_SECONDS;
+    private volatile long mInitialReconnectDelayMs = DEFAULT_INITIAL_RECONNECT_DELAY_MS;
+    private volatile long mMaxReconnectDelayMs = DEFAULT_MAX_RECONNECT_DELAY_MS;
+    private long mReconnectDelayMs = DEFAULT_INITIAL_RECONNECT_DELAY_MS;
+    private final Set<BitsoSubscription> mSubscriptions =
+            Collections.synchronizedSet(new LinkedHashSet<BitsoSubscription>());
+    private final BitsoStreamRouter mRouter = new BitsoStreamRouter();
+    private volatile FrameDispatcher mDispatcher;
+    private volatile BitsoFrameHandler[] mFrameHandlers = new BitsoFrameHandler[0];
     
+    /**
+     * Creates a socket with its own single threaded event loop, epoll when available.
+     */
     public BitsoWebSocket() throws SSLException,
         URISyntaxException{
-        mUri = new URI(URL);
-        mSslContext = SslContextBuilder.forClient().
-                trustManager(InsecureTrustManagerFactory.INSTANCE).build();
-        mGroup = new NioEventLoopGroup();
+        this(new URI(URL), NettyTransport.newEventLoopGroup(DEFAULT_EVENT_LOOP_THREADS, "bitso-ws"), true, null);
+    }
+
+    /**
+     * Connects somewhere else than the Bitso WebSocket API, such as a local stand-in. Plain {@code ws} URIs are
+     * connected without TLS.
+     */
+    public BitsoWebSocket(URI uri) throws SSLException{
+        this(uri, NettyTransport.newEventLoopGroup(DEFAULT_EVENT_LOOP_THREADS, "bitso-ws"), true, null);
+    }
+
+    /**
+     * Shares an event loop group and SSL context with other sockets and clients, useful when many sockets run in
+     * the same JVM.
+     *
+     * @param group
+     *            Event loop group of the connection, it is not shut down by {@link #closeConnection()}
+     * @param sslContext
+     *            Client SSL context, null for the default one shared by every socket
+     */
+    public BitsoWebSocket(EventLoopGroup group, SslContext sslContext) throws SSLException,
+        URISyntaxException{
+        this(new URI(URL), group, false, sslContext);
+    }
+
+    public BitsoWebSocket(URI uri, EventLoopGroup group, SslContext sslContext) throws SSLException{
+        this(uri, group, false, sslContext);
+    }
+
+    private BitsoWebSocket(URI uri, EventLoopGroup group, boolean ownsGroup, SslContext sslContext)
+            throws SSLException{
+        mUri = uri;
+        if ("ws".equalsIgnoreCase(uri.getScheme())) {
+            mSslContext = null;
+        } else {
+            mSslContext = (sslContext == null) ? defaultSslContext() : sslContext;
+        }
+        mGroup = group;
+        mOwnsGroup = ownsGroup;
         mMessageReceived = "";
         mConnected = Boolean.FALSE;
     }
+
+    private static synchronized SslContext defaultSslContext() throws SSLException{
+        if (sDefaultSslContext == null) {
+            sDefaultSslContext = SslContextBuilder.forClient().
+                    trustManager(InsecureTrustManagerFactory.INSTANCE).build();
+        }
+        return sDefaultSslContext;
+    }
     
     public void setConnected(Boolean connected){
         mConnected = connected;
@@ -63,62 +150,295 @@ public class BitsoWebSocket extends Observable{
     }
     
     public void setMessageReceived(String messageReceived){
+        FrameDispatcher dispatcher = mDispatcher;
+        if (dispatcher != null) {
+            dispatcher.publish(messageReceived, System.nanoTime());
+            return;
+        }
         mMessageReceived = messageReceived;
+        mRouter.route(messageReceived);
         setChanged();
         notifyObservers(mMessageReceived);
     }
 
+    /**
+     * Reopens the connection whenever it drops, until {@link #closeConnection()}.
+     */
+    public void setAutoReconnect(boolean autoReconnect){
+        mAutoReconnect = autoReconnect;
+    }
+
+    public void setAutoReconnect(boolean autoReconnect, long initialDelayMs, long maxDelayMs){
+        mInitialReconnectDelayMs = initialDelayMs;
+        mMaxReconnectDelayMs = maxDelayMs;
+        mAutoReconnect = autoReconnect;
+    }
+
+    public boolean isAutoReconnect(){
+        return mAutoReconnect;
+    }
+
+    /**
+     * Closes connections that receive no frame for this long, 0 disables the watchdog. Applies from the next
+     * connection.
+     */
+    public void setIdleTimeoutSeconds(int idleTimeoutSeconds){
+        mIdleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    public Boolean isConnected(){
+        return mConnected;
+    }
+
     public void openConnection() throws InterruptedException{
-        Bootstrap bootstrap = new Bootstrap();
+        mClosing = false;
+        WebSocketClientHandler handler = newHandler();
+        mChannel = newBootstrap(handler).connect(mUri.getHost(), port()).sync().channel();
+        handler.handshakeFuture().sync();
+        onHandshakeComplete();
+    }
 
-        final WebSocketClientHandler handler =
-                new WebSocketClientHandler(
-                        WebSocketClientHandshakerFactory.newHandshaker(
-                                mUri, WebSocketVersion.V08, null, false,
-                                new DefaultHttpHeaders()));
+    private int port(){
+        if (mUri.getPort() != -1) {
+            return mUri.getPort();
+        }
+        return (mSslContext == null) ? 80 : PORT;
+    }
 
+    private WebSocketClientHandler newHandler(){
+        return new WebSocketClientHandler(
+                WebSocketClientHandshakerFactory.newHandshaker(
+                        mUri, WebSocketVersion.V08, null, false,
+                        new DefaultHttpHeaders()));
+    }
+
+    private Bootstrap newBootstrap(final WebSocketClientHandler handler){
+        final int idleTimeoutSeconds = mIdleTimeoutSeconds;
+        Bootstrap bootstrap = new Bootstrap();
         bootstrap.group(mGroup)
-        .channel(NioSocketChannel.class)
+        .channel(NettyTransport.socketChannelClass(mGroup))
         .handler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     public void initChannel(SocketChannel socketChannel){
                         ChannelPipeline channelPipeline =
                                 socketChannel.pipeline();
-                        channelPipeline.addLast(mSslContext.newHandler(
-                                socketChannel.alloc(),
-                                mUri.getHost(),
-                                PORT));
+                        if (mSslContext != null) {
+                            channelPipeline.addLast(mSslContext.newHandler(
+                                    socketChannel.alloc(),
+                                    mUri.getHost(),
+                                    port()));
+                        }
+                        if (idleTimeoutSeconds > 0) {
+                            channelPipeline.addLast(new IdleStateHandler(idleTimeoutSeconds, 0, 0));
+                        }
                         channelPipeline.addLast(new HttpClientCodec(),
                                 new HttpObjectAggregator(8192),
                                 handler);
                     }
                 });
+        return bootstrap;
+    }
 
-        mChannel = bootstrap.connect(mUri.getHost(), PORT).sync().channel();
-        handler.handshakeFuture().sync();
+    private void onHandshakeComplete(){
+        synchronized (this) {
+            mReconnectDelayMs = mInitialReconnectDelayMs;
+        }
         setConnected(Boolean.TRUE);
+
+        // Replay every subscription of the previous connection
+        List<BitsoSubscription> subscriptions = getSubscriptions();
+        if (!subscriptions.isEmpty()) {
+            for (BitsoSubscription subscription : subscriptions) {
+                mChannel.write(new TextWebSocketFrame(subscription.toSubscribeFrame()));
+            }
+            mChannel.flush();
+        }
+    }
+
+    private void scheduleReconnect(){
+        if (mClosing || !mAutoReconnect || mGroup.isShuttingDown()) {
+            return;
+        }
+        long delayMs;
+        synchronized (this) {
+            delayMs = mReconnectDelayMs;
+            mReconnectDelayMs = Math.min(mReconnectDelayMs * 2, mMaxReconnectDelayMs);
+        }
+        mGroup.schedule(new Runnable() {
+            public void run() {
+                reconnect();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void reconnect(){
+        if (mClosing) {
+            return;
+        }
+        final WebSocketClientHandler handler = newHandler();
+        newBootstrap(handler).connect(mUri.getHost(), port()).addListener(new ChannelFutureListener() {
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    // Never became active, so channelInactive won't schedule the next attempt
+                    scheduleReconnect();
+                    return;
+                }
+                mChannel = future.channel();
+                handler.handshakeFuture().addListener(new ChannelFutureListener() {
+                    public void operationComplete(ChannelFuture handshake) {
+                        if (handshake.isSuccess()) {
+                            onHandshakeComplete();
+                        } else {
+                            handshake.channel().close();
+                        }
+                    }
+                });
+            }
+        });
     }
     
+    /**
+     * Subscribes to a channel of the btc_mxn book.
+     */
     public void subscribeBitsoChannel(String channel){
-        if(mConnected){
-            String frameMessage = "{ \"action\": \"subscribe\", \"book\": \"btc_mxn\", \"type\": \""
-                        + channel + "\" }";
-            mChannel.writeAndFlush(new TextWebSocketFrame(frameMessage));
-        }else{
+        BitsoChannels bitsoChannel = BitsoChannels.getBitsoChannel(channel);
+        if (bitsoChannel == null) {
+            throw new BitsoWebSocketException("Unknown channel: " + channel);
+        }
+        subscribe("btc_mxn", bitsoChannel);
+    }
+
+    public void subscribe(String book, BitsoChannels channel){
+        subscribe(Collections.singletonList(new BitsoSubscription(book, channel)));
+    }
+
+    public void subscribe(String book, BitsoChannels... channels){
+        subscribe(Collections.singletonList(book), channels);
+    }
+
+    /**
+     * Subscribes to every channel of every book, all the frames are sent in a single flush.
+     */
+    public void subscribe(Collection<String> books, BitsoChannels... channels){
+        List<BitsoSubscription> subscriptions = new ArrayList<BitsoSubscription>(books.size() * channels.length);
+        for (String book : books) {
+            for (BitsoChannels channel : channels) {
+                subscriptions.add(new BitsoSubscription(book, channel));
+            }
+        }
+        subscribe(subscriptions);
+    }
+
+    public void subscribe(List<BitsoSubscription> subscriptions){
+        if(!mConnected){
+            if (mAutoReconnect && !mClosing) {
+                // Sent once the connection is back
+                mSubscriptions.addAll(subscriptions);
+                return;
+            }
             String message = "Subscription to any channel is not possible while web socket is not connected";
             throw new BitsoWebSocketException(message);
         }
+        Channel channel = mChannel;
+        for (BitsoSubscription subscription : subscriptions) {
+            if (mSubscriptions.add(subscription)) {
+                channel.write(new TextWebSocketFrame(subscription.toSubscribeFrame()));
+            }
+        }
+        channel.flush();
+    }
+
+    /**
+     * @return the channels subscribed on this connection, in subscription order
+     */
+    public List<BitsoSubscription> getSubscriptions(){
+        synchronized (mSubscriptions) {
+            return new ArrayList<BitsoSubscription>(mSubscriptions);
+        }
+    }
+
+    public boolean isSubscribed(String book, BitsoChannels channel){
+        return mSubscriptions.contains(new BitsoSubscription(book, channel));
+    }
+
+    /**
+     * @return the router that hands decoded updates to listeners registered per book
+     */
+    public BitsoStreamRouter getRouter(){
+        return mRouter;
+    }
+
+    /**
+     * Publishes received frames to a dispatcher instead of notifying observers and the router on the IO thread.
+     * Observers are still notified of connection changes. Add {@link FrameDispatcher#routeTo(BitsoStreamRouter)}
+     * with {@link #getRouter()} to keep routing updates to listeners.
+     *
+     * @param dispatcher
+     *            Started dispatcher, null to go back to notifying on the IO thread
+     */
+    public void setDispatcher(FrameDispatcher dispatcher){
+        mDispatcher = dispatcher;
+    }
+
+    public FrameDispatcher getDispatcher(){
+        return mDispatcher;
+    }
+
+    /**
+     * Hands the bytes of every text frame to handler before anything else sees the frame, for example to a
+     * {@link com.bitso.journal.FrameJournal} or a {@link com.bitso.websockets.fixed.PooledStreamDecoder}. When
+     * there is no observer, router listener or dispatcher the frame is not even turned into a String, so the
+     * handlers can consume the feed without allocating.
+     *
+     * @param handler
+     *            Handler called on the IO thread, in the order handlers were added
+     */
+    public synchronized void addFrameHandler(BitsoFrameHandler handler){
+        BitsoFrameHandler[] handlers = Arrays.copyOf(mFrameHandlers, mFrameHandlers.length + 1);
+        handlers[handlers.length - 1] = handler;
+        mFrameHandlers = handlers;
+    }
+
+    public synchronized void removeFrameHandler(BitsoFrameHandler handler){
+        List<BitsoFrameHandler> handlers = new ArrayList<BitsoFrameHandler>(Arrays.asList(mFrameHandlers));
+        if (handlers.remove(handler)) {
+            mFrameHandlers = handlers.toArray(new BitsoFrameHandler[handlers.size()]);
+        }
+    }
+
+    public void addListener(String book, BitsoStreamListener listener){
+        mRouter.addListener(book, listener);
+    }
+
+    public void removeListener(String book, BitsoStreamListener listener){
+        mRouter.removeListener(book, listener);
+    }
+
+    public void addTradesListener(String book, BitsoTradesListener listener){
+        mRouter.addTradesListener(book, listener);
+    }
+
+    public void addDiffOrdersListener(String book, BitsoDiffOrdersListener listener){
+        mRouter.addDiffOrdersListener(book, listener);
+    }
+
+    public void addOrdersListener(String book, BitsoOrdersListener listener){
+        mRouter.addOrdersListener(book, listener);
     }
     
     public void closeConnection() throws InterruptedException{
+        mClosing = true;
         mChannel.writeAndFlush(new CloseWebSocketFrame());
         mChannel.closeFuture().sync();
-        mGroup.shutdownGracefully();
+        if (mOwnsGroup) {
+            mGroup.shutdownGracefully();
+        }
     }
 
     public class WebSocketClientHandler extends ChannelInboundHandlerAdapter {
         private final WebSocketClientHandshaker mHandshaker;
         private ChannelPromise mHandshakeFuture;
+        private byte[] mFrameBytes = new byte[4096];
 
         public WebSocketClientHandler(WebSocketClientHandshaker handshaker) {
             mHandshaker = handshaker;
@@ -139,11 +459,60 @@ public class BitsoWebSocket extends Observable{
         }
 
         @Override
-        public void channelInactive(ChannelHandlerContext ctx) throws Exception {}
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            if (ctx.channel() != mChannel) {
+                return;
+            }
+            if (mConnected) {
+                setConnected(Boolean.FALSE);
+            }
+            scheduleReconnect();
+        }
+
+        private void handleFrame(BitsoFrameHandler[] frameHandlers, ByteBuf content) {
+            long receivedNanos = System.nanoTime();
+            int length = content.readableBytes();
+            byte[] bytes;
+            int offset;
+            if (content.hasArray()) {
+                bytes = content.array();
+                offset = content.arrayOffset() + content.readerIndex();
+            } else {
+                if (mFrameBytes.length < length) {
+                    mFrameBytes = new byte[Math.max(length, mFrameBytes.length << 1)];
+                }
+                content.getBytes(content.readerIndex(), mFrameBytes, 0, length);
+                bytes = mFrameBytes;
+                offset = 0;
+            }
+            for (BitsoFrameHandler frameHandler : frameHandlers) {
+                frameHandler.onFrame(bytes, offset, length, receivedNanos);
+            }
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent && ((IdleStateEvent) evt).state() == IdleState.READER_IDLE) {
+                // Not even a keep alive message, the connection is stale. channelInactive reports it and
+                // reconnects
+                ctx.close();
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
 
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object msg)
                 throws Exception {
+            try {
+                read(ctx, msg);
+            } finally {
+                // Frames come from the pooled allocator, nothing holds on to them past this call
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        private void read(ChannelHandlerContext ctx, Object msg) throws Exception {
             Channel channel = ctx.channel();
 
             if(!mHandshaker.isHandshakeComplete()) {
@@ -161,11 +530,20 @@ public class BitsoWebSocket extends Observable{
             WebSocketFrame frame = (WebSocketFrame) msg;
             if (frame instanceof TextWebSocketFrame) {
                 TextWebSocketFrame textFrame = (TextWebSocketFrame) frame;
-                setMessageReceived(textFrame.text());
+                BitsoFrameHandler[] frameHandlers = mFrameHandlers;
+                if (frameHandlers.length == 0) {
+                    setMessageReceived(textFrame.text());
+                } else {
+                    handleFrame(frameHandlers, textFrame.content());
+                    if (mDispatcher != null || countObservers() > 0 || mRouter.hasListeners()) {
+                        setMessageReceived(textFrame.text());
+                    }
+                }
             }
             
             if(frame instanceof CloseWebSocketFrame){
                 setConnected(Boolean.FALSE);
+                ctx.close();
             }
         }
 
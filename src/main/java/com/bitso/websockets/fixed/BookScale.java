@@ -0,0 +1,46 @@
+package com.bitso.websockets.fixed;
+
+import com.bitso.exchange.BookInfo;
+
+/**
+ * Decimals of the prices, amounts and values of a book, taken from its {@link BookInfo}.
+ */
+public class BookScale {
+    private final String mBook;
+    private final int mPriceScale;
+    private final int mAmountScale;
+    private final int mValueScale;
+
+    public BookScale(BookInfo bookInfo) {
+        this(bookInfo.getBook(), bookInfo.getPriceScale(), bookInfo.getAmountScale(), bookInfo.getValueScale());
+    }
+
+    public BookScale(String book, int priceScale, int amountScale, int valueScale) {
+        mBook = book;
+        mPriceScale = priceScale;
+        mAmountScale = amountScale;
+        mValueScale = valueScale;
+    }
+
+    public String getBook() {
+        return mBook;
+    }
+
+    public int getPriceScale() {
+        return mPriceScale;
+    }
+
+    public int getAmountScale() {
+        return mAmountScale;
+    }
+
+    public int getValueScale() {
+        return mValueScale;
+    }
+
+    @Override
+    public String toString() {
+        return "Book:" + mBook + ", Price scale:" + mPriceScale + ", Amount scale:" + mAmountScale
+                + ", Value scale:" + mValueScale;
+    }
+}
@@ -0,0 +1,37 @@
+package com.bitso.websockets.fixed;
+
+import java.util.Arrays;
+
+import com.bitso.websockets.BitsoChannels;
+
+/**
+ * Message of the diff-orders channel in fixed point.
+ */
+public class FixedPointDiffOrders extends FixedPointUpdate {
+    private final FixedPointOrder[] mPayload;
+    private long mSequenceNumber;
+
+    public FixedPointDiffOrders(BookScale scale, long sequenceNumber, FixedPointOrder[] payload) {
+        super(BitsoChannels.DIFF_ORDERS, scale);
+        mSequenceNumber = sequenceNumber;
+        mPayload = payload;
+    }
+
+    public FixedPointOrder[] getPayload() {
+        return mPayload;
+    }
+
+    public long getSequenceNumber() {
+        return mSequenceNumber;
+    }
+
+    // The sequence may follow the payload in the message
+    void setSequenceNumber(long sequenceNumber) {
+        mSequenceNumber = sequenceNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "Book:" + getBook() + ", Sequence:" + mSequenceNumber + ", Orders:" + Arrays.toString(mPayload);
+    }
+}
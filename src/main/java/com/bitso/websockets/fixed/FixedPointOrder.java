@@ -0,0 +1,147 @@
+package com.bitso.websockets.fixed;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import com.bitso.BitsoOrder;
+import com.bitso.helpers.FixedPoint;
+import com.bitso.json.BitsoJsonReader;
+
+/**
+ * Order of the diff-orders or orders channel with its rate, amount and value as scaled longs, see
+ * {@link FixedPoint}. The BigDecimal getters are computed on each call.
+ *
+ * Orders held by a {@link StreamMessage} are reused for later messages, the order id is then kept as characters
+ * and only turned into a String if {@link #getOrderId()} is called.
+ */
+public class FixedPointOrder {
+    private BookScale mScale;
+    private long mOrderDateMillis;
+    private long mRate;
+    private BitsoOrder.SIDE mSide;
+    private long mAmount;
+    private long mValue;
+    private final StringBuilder mOrderIdChars = new StringBuilder(32);
+    private String mOrderId;
+    private String mStatus;
+
+    public FixedPointOrder(BitsoJsonReader reader, BookScale scale) throws IOException {
+        read(reader, scale);
+    }
+
+    FixedPointOrder() {
+    }
+
+    void read(BitsoJsonReader reader, BookScale scale) throws IOException {
+        mScale = scale;
+        mOrderDateMillis = 0;
+        mRate = 0;
+        mSide = null;
+        mAmount = 0;
+        mValue = 0;
+        mOrderIdChars.setLength(0);
+        mOrderId = null;
+        mStatus = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "d":
+                mOrderDateMillis = reader.nextLong() * 1000;
+                break;
+            case "r":
+                mRate = reader.nextFixed(scale.getPriceScale());
+                break;
+            case "t":
+                mSide = (reader.nextInt() == 1) ? BitsoOrder.SIDE.SELL : BitsoOrder.SIDE.BUY;
+                break;
+            case "a":
+                mAmount = reader.nextFixed(scale.getAmountScale());
+                break;
+            case "v":
+                mValue = reader.nextFixed(scale.getValueScale());
+                break;
+            case "o":
+                reader.nextString(mOrderIdChars);
+                break;
+            case "s":
+                mStatus = reader.nextSymbol();
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    public BookScale getScale() {
+        return mScale;
+    }
+
+    public long getOrderDateMillis() {
+        return mOrderDateMillis;
+    }
+
+    /**
+     * @return the rate scaled by 10^{@link BookScale#getPriceScale()}
+     */
+    public long getRate() {
+        return mRate;
+    }
+
+    public BigDecimal getRateDecimal() {
+        return FixedPoint.toBigDecimal(mRate, mScale.getPriceScale());
+    }
+
+    public BitsoOrder.SIDE getSide() {
+        return mSide;
+    }
+
+    /**
+     * @return the amount scaled by 10^{@link BookScale#getAmountScale()}, 0 for removed orders
+     */
+    public long getAmount() {
+        return mAmount;
+    }
+
+    public BigDecimal getAmountDecimal() {
+        return FixedPoint.toBigDecimal(mAmount, mScale.getAmountScale());
+    }
+
+    /**
+     * @return the value scaled by 10^{@link BookScale#getValueScale()}
+     */
+    public long getValue() {
+        return mValue;
+    }
+
+    public BigDecimal getValueDecimal() {
+        return FixedPoint.toBigDecimal(mValue, mScale.getValueScale());
+    }
+
+    /**
+     * @return the order id, null if the message did not include it
+     */
+    public String getOrderId() {
+        if (mOrderId == null && mOrderIdChars.length() > 0) {
+            mOrderId = mOrderIdChars.toString();
+        }
+        return mOrderId;
+    }
+
+    /**
+     * @return the order id without allocating, valid until the order is reused
+     */
+    public CharSequence getOrderIdChars() {
+        return mOrderIdChars;
+    }
+
+    public String getStatus() {
+        return mStatus;
+    }
+
+    @Override
+    public String toString() {
+        return "Order id:" + getOrderId() + ", Side:" + mSide + ", Rate:" + getRateDecimal() + ", Amount:"
+                + getAmountDecimal() + ", Status:" + mStatus;
+    }
+}
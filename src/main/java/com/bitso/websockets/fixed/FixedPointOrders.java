@@ -0,0 +1,32 @@
+package com.bitso.websockets.fixed;
+
+import java.util.Arrays;
+
+import com.bitso.websockets.BitsoChannels;
+
+/**
+ * Message of the orders channel in fixed point, the top of each side of the book.
+ */
+public class FixedPointOrders extends FixedPointUpdate {
+    private final FixedPointOrder[] mBids;
+    private final FixedPointOrder[] mAsks;
+
+    public FixedPointOrders(BookScale scale, FixedPointOrder[] bids, FixedPointOrder[] asks) {
+        super(BitsoChannels.ORDERS, scale);
+        mBids = bids;
+        mAsks = asks;
+    }
+
+    public FixedPointOrder[] getBids() {
+        return mBids;
+    }
+
+    public FixedPointOrder[] getAsks() {
+        return mAsks;
+    }
+
+    @Override
+    public String toString() {
+        return "Book:" + getBook() + ", Bids:" + Arrays.toString(mBids) + ", Asks:" + Arrays.toString(mAsks);
+    }
+}
@@ -0,0 +1,153 @@
+package com.bitso.websockets.fixed;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.bitso.exchange.BookInfo;
+import com.bitso.json.BitsoJsonReader;
+import com.bitso.websockets.BitsoChannels;
+
+/**
+ * Decodes WebSocket messages into fixed point updates, reading prices, amounts and values straight from the JSON
+ * text as longs at the scale of their book, without going through double or BigDecimal.
+ *
+ * Only books with a known scale are decoded, register them from {@link com.bitso.Bitso#getAvailableBooks()}.
+ * Subscription acknowledgements, keep alive messages and messages of other books decode to null. Instances are
+ * thread-safe.
+ */
+public class FixedPointStreamDecoder {
+    private final ConcurrentHashMap<String, BookScale> mScales = new ConcurrentHashMap<String, BookScale>();
+
+    public FixedPointStreamDecoder(BookInfo... books) {
+        for (BookInfo book : books) {
+            addBook(new BookScale(book));
+        }
+    }
+
+    public void addBook(BookScale scale) {
+        mScales.put(scale.getBook(), scale);
+    }
+
+    public BookScale getScale(String book) {
+        return mScales.get(book);
+    }
+
+    public FixedPointUpdate decode(String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        return decode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param bytes
+     *            UTF-8 text of the message
+     * @return the update, null if the message is not a channel update of a known book
+     */
+    public FixedPointUpdate decode(byte[] bytes, int offset, int length) throws IOException {
+        BitsoJsonReader reader = new BitsoJsonReader(bytes, offset, length);
+        BitsoChannels channel = null;
+        BookScale scale = null;
+        long sequence = -1;
+        boolean payloadSkipped = false;
+        FixedPointUpdate update = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "type":
+                String type = reader.nextSymbol();
+                channel = (type == null) ? null : BitsoChannels.getBitsoChannel(type);
+                break;
+            case "book":
+                String book = reader.nextSymbol();
+                scale = (book == null) ? null : mScales.get(book);
+                if (scale == null) {
+                    return null;
+                }
+                break;
+            case "sequence":
+                sequence = reader.nextLong();
+                break;
+            case "action":
+                // Subscription acknowledgement
+                return null;
+            case "payload":
+                if (channel != null && scale != null) {
+                    update = readPayload(reader, channel, scale);
+                } else {
+                    reader.skipValue();
+                    payloadSkipped = true;
+                }
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (payloadSkipped && channel != null && scale != null) {
+            // Type or book came after the payload, read it again now that its scale is known
+            reader = new BitsoJsonReader(bytes, offset, length);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("payload".equals(reader.nextName())) {
+                    update = readPayload(reader, channel, scale);
+                } else {
+                    reader.skipValue();
+                }
+            }
+        }
+        if (update instanceof FixedPointDiffOrders) {
+            ((FixedPointDiffOrders) update).setSequenceNumber(sequence);
+        }
+        return update;
+    }
+
+    private static FixedPointUpdate readPayload(BitsoJsonReader reader, BitsoChannels channel, BookScale scale)
+            throws IOException {
+        switch (channel) {
+        case TRADES:
+            ArrayList<FixedPointTrade> trades = new ArrayList<FixedPointTrade>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                trades.add(new FixedPointTrade(reader, scale));
+            }
+            reader.endArray();
+            return new FixedPointTrades(scale, trades.toArray(new FixedPointTrade[trades.size()]));
+        case DIFF_ORDERS:
+            return new FixedPointDiffOrders(scale, -1, readOrders(reader, scale));
+        case ORDERS:
+            FixedPointOrder[] bids = new FixedPointOrder[0];
+            FixedPointOrder[] asks = new FixedPointOrder[0];
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                case "bids":
+                    bids = readOrders(reader, scale);
+                    break;
+                case "asks":
+                    asks = readOrders(reader, scale);
+                    break;
+                default:
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return new FixedPointOrders(scale, bids, asks);
+        default:
+            reader.skipValue();
+            return null;
+        }
+    }
+
+    private static FixedPointOrder[] readOrders(BitsoJsonReader reader, BookScale scale) throws IOException {
+        ArrayList<FixedPointOrder> orders = new ArrayList<FixedPointOrder>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            orders.add(new FixedPointOrder(reader, scale));
+        }
+        reader.endArray();
+        return orders.toArray(new FixedPointOrder[orders.size()]);
+    }
+}
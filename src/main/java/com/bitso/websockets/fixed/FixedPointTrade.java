@@ -0,0 +1,140 @@
+package com.bitso.websockets.fixed;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import com.bitso.BitsoOrder;
+import com.bitso.helpers.FixedPoint;
+import com.bitso.json.BitsoJsonReader;
+
+/**
+ * Trade of the trades channel with its amount, rate and value as scaled longs, see {@link FixedPoint}.
+ */
+public class FixedPointTrade {
+    private BookScale mScale;
+    private long mTradeId;
+    private long mAmount;
+    private long mRate;
+    private long mValue;
+    private BitsoOrder.SIDE mMakerSide;
+    private final StringBuilder mMakerOrderIdChars = new StringBuilder(32);
+    private final StringBuilder mTakerOrderIdChars = new StringBuilder(32);
+    private String mMakerOrderId;
+    private String mTakerOrderId;
+
+    public FixedPointTrade(BitsoJsonReader reader, BookScale scale) throws IOException {
+        read(reader, scale);
+    }
+
+    FixedPointTrade() {
+    }
+
+    void read(BitsoJsonReader reader, BookScale scale) throws IOException {
+        mScale = scale;
+        mTradeId = 0;
+        mAmount = 0;
+        mRate = 0;
+        mValue = 0;
+        mMakerSide = null;
+        mMakerOrderIdChars.setLength(0);
+        mTakerOrderIdChars.setLength(0);
+        mMakerOrderId = null;
+        mTakerOrderId = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "i":
+                mTradeId = reader.nextLong();
+                break;
+            case "a":
+                mAmount = reader.nextFixed(scale.getAmountScale());
+                break;
+            case "r":
+                mRate = reader.nextFixed(scale.getPriceScale());
+                break;
+            case "v":
+                mValue = reader.nextFixed(scale.getValueScale());
+                break;
+            case "t":
+                mMakerSide = (reader.nextInt() == 1) ? BitsoOrder.SIDE.SELL : BitsoOrder.SIDE.BUY;
+                break;
+            case "mo":
+                reader.nextString(mMakerOrderIdChars);
+                break;
+            case "to":
+                reader.nextString(mTakerOrderIdChars);
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    public BookScale getScale() {
+        return mScale;
+    }
+
+    public long getTradeId() {
+        return mTradeId;
+    }
+
+    public long getAmount() {
+        return mAmount;
+    }
+
+    public BigDecimal getAmountDecimal() {
+        return FixedPoint.toBigDecimal(mAmount, mScale.getAmountScale());
+    }
+
+    public long getRate() {
+        return mRate;
+    }
+
+    public BigDecimal getRateDecimal() {
+        return FixedPoint.toBigDecimal(mRate, mScale.getPriceScale());
+    }
+
+    public long getValue() {
+        return mValue;
+    }
+
+    public BigDecimal getValueDecimal() {
+        return FixedPoint.toBigDecimal(mValue, mScale.getValueScale());
+    }
+
+    /**
+     * @return side of the resting order, null if the message did not include it
+     */
+    public BitsoOrder.SIDE getMakerSide() {
+        return mMakerSide;
+    }
+
+    public String getMakerOrderId() {
+        if (mMakerOrderId == null && mMakerOrderIdChars.length() > 0) {
+            mMakerOrderId = mMakerOrderIdChars.toString();
+        }
+        return mMakerOrderId;
+    }
+
+    public CharSequence getMakerOrderIdChars() {
+        return mMakerOrderIdChars;
+    }
+
+    public String getTakerOrderId() {
+        if (mTakerOrderId == null && mTakerOrderIdChars.length() > 0) {
+            mTakerOrderId = mTakerOrderIdChars.toString();
+        }
+        return mTakerOrderId;
+    }
+
+    public CharSequence getTakerOrderIdChars() {
+        return mTakerOrderIdChars;
+    }
+
+    @Override
+    public String toString() {
+        return "Trade id:" + mTradeId + ", Amount:" + getAmountDecimal() + ", Rate:" + getRateDecimal()
+                + ", Value:" + getValueDecimal();
+    }
+}
@@ -0,0 +1,26 @@
+package com.bitso.websockets.fixed;
+
+import java.util.Arrays;
+
+import com.bitso.websockets.BitsoChannels;
+
+/**
+ * Message of the trades channel in fixed point.
+ */
+public class FixedPointTrades extends FixedPointUpdate {
+    private final FixedPointTrade[] mPayload;
+
+    public FixedPointTrades(BookScale scale, FixedPointTrade[] payload) {
+        super(BitsoChannels.TRADES, scale);
+        mPayload = payload;
+    }
+
+    public FixedPointTrade[] getPayload() {
+        return mPayload;
+    }
+
+    @Override
+    public String toString() {
+        return "Book:" + getBook() + ", Trades:" + Arrays.toString(mPayload);
+    }
+}
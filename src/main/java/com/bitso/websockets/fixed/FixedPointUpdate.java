@@ -0,0 +1,28 @@
+package com.bitso.websockets.fixed;
+
+import com.bitso.websockets.BitsoChannels;
+
+/**
+ * Channel message decoded by a {@link FixedPointStreamDecoder}.
+ */
+public abstract class FixedPointUpdate {
+    protected final BitsoChannels mChannel;
+    protected final BookScale mScale;
+
+    protected FixedPointUpdate(BitsoChannels channel, BookScale scale) {
+        mChannel = channel;
+        mScale = scale;
+    }
+
+    public BitsoChannels getChannel() {
+        return mChannel;
+    }
+
+    public String getBook() {
+        return mScale.getBook();
+    }
+
+    public BookScale getScale() {
+        return mScale;
+    }
+}
@@ -0,0 +1,214 @@
+package com.bitso.websockets.fixed;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.bitso.exchange.BookInfo;
+import com.bitso.json.BitsoJsonReader;
+import com.bitso.websockets.BitsoChannels;
+
+/**
+ * Decodes WebSocket messages into pooled {@link StreamMessage}s, the allocation free counterpart of
+ * {@link FixedPointStreamDecoder}. Once the pool and the messages' order arrays have grown to the feed's
+ * sizes, decoding a frame allocates nothing: the reader, its buffers and the encoded bytes are reused, names and
+ * statuses come from the reader's symbol cache and order ids stay in reusable character buffers.
+ *
+ * Instances are not thread-safe, use one per IO thread. Messages may be released from any thread.
+ */
+public class PooledStreamDecoder {
+    private final ConcurrentHashMap<String, BookScale> mScales = new ConcurrentHashMap<String, BookScale>();
+    private final StreamMessagePool mPool;
+    private final BitsoJsonReader mReader = new BitsoJsonReader(new byte[0], 0, 0);
+    private byte[] mBytes = new byte[4096];
+
+    public PooledStreamDecoder(StreamMessagePool pool, BookInfo... books) {
+        mPool = pool;
+        for (BookInfo book : books) {
+            addBook(new BookScale(book));
+        }
+    }
+
+    public void addBook(BookScale scale) {
+        mScales.put(scale.getBook(), scale);
+    }
+
+    public StreamMessagePool getPool() {
+        return mPool;
+    }
+
+    /**
+     * @return a borrowed message, null if the message is not a channel update of a known book
+     */
+    public StreamMessage decode(CharSequence message, long receivedNanos) throws IOException {
+        int length = encode(message);
+        return decode(mBytes, 0, length, receivedNanos);
+    }
+
+    /**
+     * @param bytes
+     *            UTF-8 text of the message, it is not kept
+     * @return a borrowed message, null if the message is not a channel update of a known book
+     */
+    public StreamMessage decode(byte[] bytes, int offset, int length, long receivedNanos) throws IOException {
+        StreamMessage message = mPool.borrow();
+        try {
+            if (decode(message, bytes, offset, length, receivedNanos)) {
+                return message;
+            }
+        } catch (IOException e) {
+            message.release();
+            throw e;
+        } catch (RuntimeException e) {
+            message.release();
+            throw e;
+        }
+        message.release();
+        return null;
+    }
+
+    private boolean decode(StreamMessage message, byte[] bytes, int offset, int length, long receivedNanos)
+            throws IOException {
+        BitsoJsonReader reader = mReader;
+        reader.reset(bytes, offset, length);
+        BitsoChannels channel = null;
+        BookScale scale = null;
+        long sequence = -1;
+        boolean payloadRead = false;
+        boolean payloadSkipped = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "type":
+                String type = reader.nextSymbol();
+                channel = (type == null) ? null : BitsoChannels.getBitsoChannel(type);
+                if (channel == null || channel == BitsoChannels.KA) {
+                    return false;
+                }
+                break;
+            case "book":
+                String book = reader.nextSymbol();
+                scale = (book == null) ? null : mScales.get(book);
+                if (scale == null) {
+                    return false;
+                }
+                break;
+            case "sequence":
+                sequence = reader.nextLong();
+                break;
+            case "action":
+                // Subscription acknowledgement
+                return false;
+            case "payload":
+                if (channel != null && scale != null) {
+                    message.setHeader(channel, scale, receivedNanos);
+                    readPayload(reader, message, channel, scale);
+                    payloadRead = true;
+                } else {
+                    reader.skipValue();
+                    payloadSkipped = true;
+                }
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!payloadRead && payloadSkipped && channel != null && scale != null) {
+            // Type or book came after the payload, read it again now that its scale is known
+            reader.reset(bytes, offset, length);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("payload".equals(reader.nextName())) {
+                    message.setHeader(channel, scale, receivedNanos);
+                    readPayload(reader, message, channel, scale);
+                    payloadRead = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+        }
+        if (channel == BitsoChannels.DIFF_ORDERS) {
+            message.setSequenceNumber(sequence);
+        }
+        return payloadRead;
+    }
+
+    private static void readPayload(BitsoJsonReader reader, StreamMessage message, BitsoChannels channel,
+            BookScale scale) throws IOException {
+        switch (channel) {
+        case TRADES:
+            reader.beginArray();
+            while (reader.hasNext()) {
+                message.nextTrade().read(reader, scale);
+            }
+            reader.endArray();
+            break;
+        case DIFF_ORDERS:
+            reader.beginArray();
+            while (reader.hasNext()) {
+                message.nextOrder().read(reader, scale);
+            }
+            reader.endArray();
+            break;
+        case ORDERS:
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                case "bids":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        message.nextOrder().read(reader, scale);
+                    }
+                    reader.endArray();
+                    break;
+                case "asks":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        message.nextAsk().read(reader, scale);
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            break;
+        default:
+            reader.skipValue();
+        }
+    }
+
+    // UTF-8 encodes the message into the reusable byte buffer
+    private int encode(CharSequence message) {
+        int length = message.length();
+        if (mBytes.length < length * 3) {
+            mBytes = new byte[Math.max(length * 3, mBytes.length << 1)];
+        }
+        byte[] bytes = mBytes;
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xc0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(message.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, message.charAt(++i));
+                bytes[position++] = (byte) (0xf0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else {
+                bytes[position++] = (byte) (0xe0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return position;
+    }
+}
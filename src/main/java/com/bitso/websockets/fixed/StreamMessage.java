@@ -0,0 +1,203 @@
+package com.bitso.websockets.fixed;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.bitso.websockets.BitsoChannels;
+
+/**
+ * Reusable, mutable channel message borrowed from a {@link StreamMessagePool} by a {@link PooledStreamDecoder}.
+ *
+ * Holds the orders of a diff-orders message, the bids and asks of an orders message or the trades of a trades
+ * message, in fixed point. The orders and trades are themselves reused, so nothing read from a message may be
+ * kept after {@link #release()}. Hand a message to more than one consumer by calling {@link #retain()} once per
+ * extra consumer; it goes back to the pool when the last one releases it.
+ */
+public class StreamMessage {
+    private final StreamMessagePool mPool;
+    private final AtomicInteger mReferences = new AtomicInteger();
+
+    private BitsoChannels mChannel;
+    private BookScale mScale;
+    private long mSequenceNumber = -1;
+    private long mReceivedNanos;
+
+    private FixedPointOrder[] mOrders = new FixedPointOrder[0];
+    private int mOrderCount;
+    private FixedPointOrder[] mAsks = new FixedPointOrder[0];
+    private int mAskCount;
+    private FixedPointTrade[] mTrades = new FixedPointTrade[0];
+    private int mTradeCount;
+
+    StreamMessage(StreamMessagePool pool) {
+        mPool = pool;
+    }
+
+    public BitsoChannels getChannel() {
+        return mChannel;
+    }
+
+    public String getBook() {
+        return (mScale == null) ? null : mScale.getBook();
+    }
+
+    public BookScale getScale() {
+        return mScale;
+    }
+
+    /**
+     * @return sequence of a diff-orders message, -1 for other channels
+     */
+    public long getSequenceNumber() {
+        return mSequenceNumber;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the frame was received, 0 if unknown
+     */
+    public long getReceivedNanos() {
+        return mReceivedNanos;
+    }
+
+    /**
+     * @return number of orders of a diff-orders message
+     */
+    public int getOrderCount() {
+        return mOrderCount;
+    }
+
+    public FixedPointOrder getOrder(int index) {
+        checkIndex(index, mOrderCount);
+        return mOrders[index];
+    }
+
+    /**
+     * @return number of bids of an orders message
+     */
+    public int getBidCount() {
+        return mOrderCount;
+    }
+
+    public FixedPointOrder getBid(int index) {
+        return getOrder(index);
+    }
+
+    /**
+     * @return number of asks of an orders message
+     */
+    public int getAskCount() {
+        return mAskCount;
+    }
+
+    public FixedPointOrder getAsk(int index) {
+        checkIndex(index, mAskCount);
+        return mAsks[index];
+    }
+
+    public int getTradeCount() {
+        return mTradeCount;
+    }
+
+    public FixedPointTrade getTrade(int index) {
+        checkIndex(index, mTradeCount);
+        return mTrades[index];
+    }
+
+    /**
+     * Adds a consumer, which must call {@link #release()} as well.
+     */
+    public StreamMessage retain() {
+        if (mReferences.getAndIncrement() <= 0) {
+            mReferences.getAndDecrement();
+            throw new IllegalStateException("Message was already released");
+        }
+        return this;
+    }
+
+    /**
+     * Gives the message back to its pool once every consumer released it.
+     */
+    public void release() {
+        int references = mReferences.decrementAndGet();
+        if (references == 0) {
+            clear();
+            mPool.giveBack(this);
+        } else if (references < 0) {
+            mReferences.incrementAndGet();
+            throw new IllegalStateException("Message was already released");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Channel:" + mChannel + ", Book:" + getBook() + ", Sequence:" + mSequenceNumber + ", Orders:"
+                + Arrays.toString(Arrays.copyOf(mOrders, mOrderCount)) + ", Asks:"
+                + Arrays.toString(Arrays.copyOf(mAsks, mAskCount)) + ", Trades:"
+                + Arrays.toString(Arrays.copyOf(mTrades, mTradeCount));
+    }
+
+    void borrowed() {
+        mReferences.set(1);
+    }
+
+    void clear() {
+        mChannel = null;
+        mScale = null;
+        mSequenceNumber = -1;
+        mReceivedNanos = 0;
+        mOrderCount = 0;
+        mAskCount = 0;
+        mTradeCount = 0;
+    }
+
+    void setHeader(BitsoChannels channel, BookScale scale, long receivedNanos) {
+        mChannel = channel;
+        mScale = scale;
+        mReceivedNanos = receivedNanos;
+    }
+
+    void setSequenceNumber(long sequenceNumber) {
+        mSequenceNumber = sequenceNumber;
+    }
+
+    // The next slot, orders and trades are only allocated the first time a message holds that many
+
+    FixedPointOrder nextOrder() {
+        if (mOrderCount == mOrders.length) {
+            mOrders = grow(mOrders);
+        }
+        return mOrders[mOrderCount++];
+    }
+
+    FixedPointOrder nextAsk() {
+        if (mAskCount == mAsks.length) {
+            mAsks = grow(mAsks);
+        }
+        return mAsks[mAskCount++];
+    }
+
+    FixedPointTrade nextTrade() {
+        if (mTradeCount == mTrades.length) {
+            FixedPointTrade[] larger = Arrays.copyOf(mTrades, Math.max(8, mTrades.length << 1));
+            for (int i = mTrades.length; i < larger.length; i++) {
+                larger[i] = new FixedPointTrade();
+            }
+            mTrades = larger;
+        }
+        return mTrades[mTradeCount++];
+    }
+
+    private static FixedPointOrder[] grow(FixedPointOrder[] orders) {
+        FixedPointOrder[] larger = Arrays.copyOf(orders, Math.max(8, orders.length << 1));
+        for (int i = orders.length; i < larger.length; i++) {
+            larger[i] = new FixedPointOrder();
+        }
+        return larger;
+    }
+
+    private static void checkIndex(int index, int count) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+    }
+}
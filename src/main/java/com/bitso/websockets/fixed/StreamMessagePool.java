@@ -0,0 +1,68 @@
+package com.bitso.websockets.fixed;
+
+/**
+ * Bounded pool of {@link StreamMessage}s. Messages are created up front; when the pool runs dry a new one is
+ * created, and messages given back to a full pool are left to the garbage collector. Borrowing and giving back
+ * take a short lock and allocate nothing, from any thread.
+ */
+public class StreamMessagePool {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final StreamMessage[] mFree;
+    private int mFreeCount;
+    private long mCreated;
+
+    public StreamMessagePool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity
+     *            Messages created up front and kept at most, should cover those in flight at the same time
+     */
+    public StreamMessagePool(int capacity) {
+        mFree = new StreamMessage[capacity];
+        for (int i = 0; i < capacity; i++) {
+            mFree[i] = new StreamMessage(this);
+        }
+        mFreeCount = capacity;
+        mCreated = capacity;
+    }
+
+    /**
+     * @return a cleared message held once, {@link StreamMessage#release()} it when done
+     */
+    public StreamMessage borrow() {
+        StreamMessage message = null;
+        synchronized (this) {
+            if (mFreeCount > 0) {
+                message = mFree[--mFreeCount];
+                mFree[mFreeCount] = null;
+            } else {
+                mCreated++;
+            }
+        }
+        if (message == null) {
+            message = new StreamMessage(this);
+        }
+        message.borrowed();
+        return message;
+    }
+
+    synchronized void giveBack(StreamMessage message) {
+        if (mFreeCount < mFree.length) {
+            mFree[mFreeCount++] = message;
+        }
+    }
+
+    public synchronized int getAvailable() {
+        return mFreeCount;
+    }
+
+    /**
+     * @return messages created since the pool was, more than its capacity means it was undersized
+     */
+    public synchronized long getCreated() {
+        return mCreated;
+    }
+}
@@ -0,0 +1,172 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+
+import org.json.JSONArray;
+import org.junit.Test;
+
+import com.bitso.exceptions.BitsoAPIException;
+import com.bitso.exceptions.BitsoPayloadException;
+import com.bitso.exceptions.BitsoServerException;
+import com.bitso.helpers.Helpers;
+import com.bitso.json.BitsoJsonReader;
+
+public class BitsoJsonReaderTest {
+    private static final String PATH = "src/test/java/JSONFiles/";
+
+    @Test
+    public void testOrderBook() throws Exception {
+        BitsoOrderBook expected = new BitsoOrderBook(
+                Helpers.getJSONFromFile("publicOrderBook.json").getJSONObject("payload"));
+        BitsoOrderBook actual = Bitso.ORDER_BOOK_DECODER.decode(fixture("publicOrderBook.json"));
+
+        assertEquals(expected.getOrderDate(), actual.getOrderDate());
+        assertEquals(expected.getSequence(), actual.getSequence());
+        assertOrdersEqual(expected.getBids(), actual.getBids());
+        assertOrdersEqual(expected.getAsks(), actual.getAsks());
+    }
+
+    @Test
+    public void testTrades() throws Exception {
+        BitsoTransactions expected = new BitsoTransactions(
+                Helpers.getJSONFromFile("publicTrades.json").getJSONArray("payload"));
+        BitsoTransactions actual = Bitso.TRANSACTIONS_DECODER.decode(fixture("publicTrades.json"));
+
+        assertEquals(expected.getTransactionsList().length, actual.getTransactionsList().length);
+        for (int i = 0; i < expected.getTransactionsList().length; i++) {
+            BitsoTransactions.Transaction e = expected.getTransactionsList()[i];
+            BitsoTransactions.Transaction a = actual.getTransactionsList()[i];
+            assertEquals(e.getDate(), a.getDate());
+            assertEquals(e.getTid(), a.getTid());
+            assertEquals(e.getPrice(), a.getPrice());
+            assertEquals(e.getAmount(), a.getAmount());
+            assertEquals(e.getSide(), a.getSide());
+            assertEquals(e.getBook(), a.getBook());
+        }
+    }
+
+    @Test
+    public void testUserTrades() throws Exception {
+        BitsoTrade[] expected = Bitso
+                .parseUserTrades(Helpers.getJSONFromFile("privateUserTrades.json").getJSONArray("payload"));
+        BitsoTrade[] actual = Bitso.USER_TRADES_DECODER.decode(fixture("privateUserTrades.json"));
+
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].toString(), actual[i].toString());
+        }
+    }
+
+    @Test
+    public void testLedger() throws Exception {
+        JSONArray payload = Helpers.getJSONFromFile("privateLedger.json").getJSONArray("payload");
+        BitsoOperation[] expected = Bitso.parseOperations(payload);
+        BitsoOperation[] actual = Bitso.OPERATIONS_DECODER.decode(fixture("privateLedger.json"));
+
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getEntryId(), actual[i].getEntryId());
+            assertEquals(expected[i].getOperationDescription(), actual[i].getOperationDescription());
+            assertEquals(expected[i].getOperationDate(), actual[i].getOperationDate());
+            assertEquals(expected[i].getDetails(), actual[i].getDetails());
+            BitsoOperation.BalanceUpdate[] expectedBalances = expected[i].getAfterOperationBalances();
+            BitsoOperation.BalanceUpdate[] actualBalances = actual[i].getAfterOperationBalances();
+            assertEquals(expectedBalances.length, actualBalances.length);
+            for (int j = 0; j < expectedBalances.length; j++) {
+                assertEquals(expectedBalances[j].getCurrency(), actualBalances[j].getCurrency());
+                assertEquals(expectedBalances[j].getAmount(), actualBalances[j].getAmount());
+            }
+        }
+    }
+
+    @Test
+    public void testErrorEnvelope() throws Exception {
+        String response = "{\"success\": false, \"error\": {\"code\": \"0301\", \"message\": \"Unknown OrderID\"}}";
+        try {
+            Bitso.USER_TRADES_DECODER.decode(stream(response));
+            fail("Expected BitsoAPIException");
+        } catch (BitsoAPIException e) {
+            assertEquals(301, e.getErrorCode());
+            assertEquals("Unknown OrderID", e.getMessage());
+        }
+
+        try {
+            Bitso.USER_TRADES_DECODER.decode(stream("{\"success\": true}"));
+            fail("Expected BitsoPayloadException");
+        } catch (BitsoPayloadException e) {
+        }
+
+        try {
+            Bitso.USER_TRADES_DECODER.decode(stream("<html>Bad Gateway</html>"));
+            fail("Expected BitsoServerException");
+        } catch (BitsoServerException e) {
+        }
+    }
+
+    @Test
+    public void testReader() throws Exception {
+        String json = "{\"a\": [1, -2.5e3, true, null, \"\\u00f1\\n\\\"x\\\"\"], \"b\": {\"c\": [{}, []]},"
+                + " \"d\": \"ñandú €\", \"e\": \"\", \"f\": 9007199254740993}";
+        // A tiny buffer makes every value span several reads
+        BitsoJsonReader reader = new BitsoJsonReader(stream(json), 3);
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        reader.beginArray();
+        assertEquals(1, reader.nextInt());
+        assertEquals(new BigDecimal("-2.5e3"), reader.nextBigDecimal());
+        assertTrue(reader.nextBoolean());
+        reader.nextNull();
+        assertEquals("ñ\n\"x\"", reader.nextString());
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals("b", reader.nextName());
+        reader.skipValue();
+        assertEquals("d", reader.nextName());
+        assertEquals("ñandú €", reader.nextString());
+        assertEquals("e", reader.nextName());
+        assertEquals(BigDecimal.ZERO, reader.nextBigDecimal());
+        assertEquals("f", reader.nextName());
+        assertEquals(9007199254740993L, reader.nextLong());
+        reader.endObject();
+        assertEquals(BitsoJsonReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void testNullAndEmptyDecimals() throws Exception {
+        BitsoJsonReader reader = new BitsoJsonReader(stream("[null, \"null\", \"\", \" null \", \"1.25\"]"), 3);
+        reader.beginArray();
+        assertEquals(0, reader.nextFixed(8));
+        assertEquals(0, reader.nextFixed(8));
+        assertEquals(0, reader.nextFixed(8));
+        assertEquals(BigDecimal.ZERO, reader.nextBigDecimal());
+        assertEquals(125000000L, reader.nextFixed(8));
+        reader.endArray();
+    }
+
+    private static void assertOrdersEqual(BitsoOrderBook.PublicOrder[] expected,
+            BitsoOrderBook.PublicOrder[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getBook(), actual[i].getBook());
+            assertEquals(expected[i].getPrice(), actual[i].getPrice());
+            assertEquals(expected[i].getAmount(), actual[i].getAmount());
+            assertEquals(expected[i].getOrderId(), actual[i].getOrderId());
+        }
+    }
+
+    private static InputStream fixture(String fileName) throws Exception {
+        return new FileInputStream(PATH + fileName);
+    }
+
+    private static InputStream stream(String json) throws Exception {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+}
@@ -0,0 +1,102 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+import com.bitso.auth.BitsoRequestSigner;
+import com.bitso.exceptions.BitsoAPIException;
+
+public class BitsoRequestSignerTest {
+    private static final String KEY = "key";
+    private static final String SECRET = "secret";
+
+    private final BitsoRequestSigner signer = new BitsoRequestSigner(KEY, SECRET);
+
+    @Test
+    public void testMatchesReferenceSignature() throws Exception {
+        long nonce = 1503433346094L;
+        assertEquals(reference(nonce, "GET", "/api/v3/balance", null),
+                signer.buildAuthHeader(nonce, "GET", "/api/v3/balance", (String) null));
+        assertEquals(reference(nonce, "DELETE", "/api/v3/orders/all", ""),
+                signer.buildAuthHeader(nonce, "DELETE", "/api/v3/orders/all", ""));
+
+        String payload = "{\"book\":\"btc_mxn\",\"side\":\"buy\",\"type\":\"limit\",\"major\":\"0.1\","
+                + "\"price\":\"50000\"}";
+        assertEquals(reference(nonce, "POST", "/api/v3/orders", payload),
+                signer.buildAuthHeader(nonce, "POST", "/api/v3/orders", payload));
+
+        byte[] bytes = payload.getBytes(Charset.forName("UTF-8"));
+        assertEquals(reference(nonce, "POST", "/api/v3/orders", payload),
+                signer.buildAuthHeader(nonce, "POST", "/api/v3/orders", bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void testNonAsciiAndLargePayloads() throws Exception {
+        String payload = "{\"notes\":\"depósito ñandú\"}";
+        assertEquals(reference(7, "POST", "/api/v3/spei_withdrawal", payload),
+                signer.buildAuthHeader(7, "POST", "/api/v3/spei_withdrawal", payload));
+
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            large.append("{\"oid\":\"").append(i).append("\"}");
+        }
+        assertEquals(reference(8, "POST", "/api/v3/orders", large.toString()),
+                signer.buildAuthHeader(8, "POST", "/api/v3/orders", large.toString()));
+        // Buffers are reused, a shorter message must not carry over bytes from the previous one
+        assertEquals(reference(9, "GET", "/api/v3/fees", null),
+                signer.buildAuthHeader(9, "GET", "/api/v3/fees", (String) null));
+    }
+
+    @Test
+    public void testConcurrentSigning() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            @SuppressWarnings("unchecked")
+            Future<String>[] signatures = new Future[64];
+            for (int i = 0; i < signatures.length; i++) {
+                final long nonce = 1000 + i;
+                signatures[i] = executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return signer.buildAuthHeader(nonce, "GET", "/api/v3/ledger?limit=" + nonce,
+                                (String) null);
+                    }
+                });
+            }
+            for (int i = 0; i < signatures.length; i++) {
+                long nonce = 1000 + i;
+                assertEquals(reference(nonce, "GET", "/api/v3/ledger?limit=" + nonce, null),
+                        signatures[i].get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = BitsoAPIException.class)
+    public void testEmptySecret() throws BitsoAPIException {
+        new BitsoRequestSigner(KEY, "").buildAuthHeader(1, "GET", "/api/v3/balance", (String) null);
+    }
+
+    private static String reference(long nonce, String httpMethod, String requestPath, String jsonPayload)
+            throws Exception {
+        if (jsonPayload == null) jsonPayload = "";
+        String message = String.valueOf(nonce) + httpMethod + requestPath + jsonPayload;
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes("UTF-8"), "HmacSHA256"));
+        byte[] arrayOfByte = mac.doFinal(message.getBytes("UTF-8"));
+        BigInteger bigInteger = new BigInteger(1, arrayOfByte);
+        String signature = String.format("%0" + (arrayOfByte.length << 1) + "x", new Object[] { bigInteger });
+        return String.format("Bitso %s:%s:%s", KEY, nonce, signature);
+    }
+}
@@ -0,0 +1,117 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.bitso.websockets.BitsoDiffOrdersListener;
+import com.bitso.websockets.BitsoStreamDiffOrders;
+import com.bitso.websockets.BitsoStreamListener;
+import com.bitso.websockets.BitsoStreamRouter;
+import com.bitso.websockets.BitsoStreamTrades;
+import com.bitso.websockets.BitsoStreamUpdate;
+import com.bitso.websockets.BitsoTradesListener;
+
+public class BitsoStreamRouterTest {
+    private static final String TRADES = "{\"type\":\"trades\",\"book\":\"%s\",\"payload\":[{\"i\":1,"
+            + "\"a\":\"0.00100000\",\"r\":\"46850.01\",\"v\":\"46.85\",\"t\":0,\"mo\":\"m1\",\"to\":\"t1\"}]}";
+    private static final String DIFF_ORDERS = "{\"type\":\"diff-orders\",\"book\":\"%s\",\"sequence\":7,"
+            + "\"payload\":[{\"d\":1501621674,\"r\":\"46850.01\",\"t\":1,\"a\":\"0.25000000\",\"v\":\"11712.50\","
+            + "\"o\":\"o1\",\"s\":\"open\"}]}";
+
+    private final BitsoStreamRouter mRouter = new BitsoStreamRouter();
+    private final List<BitsoStreamTrades> mTrades = new ArrayList<BitsoStreamTrades>();
+    private final List<BitsoStreamDiffOrders> mDiffOrders = new ArrayList<BitsoStreamDiffOrders>();
+    private final List<BitsoStreamUpdate> mUpdates = new ArrayList<BitsoStreamUpdate>();
+
+    @Test
+    public void testRoutesByBookAndChannel() {
+        mRouter.addTradesListener("btc_mxn", tradesListener());
+        mRouter.addDiffOrdersListener("eth_mxn", diffOrdersListener());
+        mRouter.addListener(BitsoStreamRouter.ALL_BOOKS, updatesListener());
+
+        BitsoStreamUpdate trades = mRouter.route(String.format(TRADES, "btc_mxn"));
+        assertEquals(1, mTrades.size());
+        assertSame(trades, mTrades.get(0));
+        assertSame(trades, mUpdates.get(0));
+        assertEquals("btc_mxn", trades.getBitsoBook());
+        assertTrue(mDiffOrders.isEmpty());
+
+        BitsoStreamUpdate diffOrders = mRouter.route(String.format(DIFF_ORDERS, "eth_mxn"));
+        assertEquals(1, mDiffOrders.size());
+        assertSame(diffOrders, mDiffOrders.get(0));
+        assertEquals(7, mDiffOrders.get(0).getSequenceNumber());
+
+        // Only the listeners of every book want this one
+        mRouter.route(String.format(DIFF_ORDERS, "btc_mxn"));
+        mRouter.route(String.format(TRADES, "eth_mxn"));
+        assertEquals(1, mTrades.size());
+        assertEquals(1, mDiffOrders.size());
+        assertEquals(4, mUpdates.size());
+    }
+
+    @Test
+    public void testSkipsUnwantedMessages() {
+        assertNull(mRouter.route(String.format(TRADES, "btc_mxn")));
+        assertFalse(mRouter.hasListeners());
+
+        mRouter.addTradesListener("btc_mxn", tradesListener());
+        assertTrue(mRouter.hasListeners());
+        assertNull(mRouter.route("{\"action\":\"subscribe\",\"response\":\"ok\",\"time\":1501621674000,"
+                + "\"type\":\"trades\"}"));
+        assertNull(mRouter.route("{\"type\":\"ka\"}"));
+        assertNull(mRouter.route(String.format(DIFF_ORDERS, "btc_mxn")));
+        assertNull(mRouter.route(String.format(TRADES, "eth_mxn")));
+        assertTrue(mTrades.isEmpty());
+    }
+
+    @Test
+    public void testFailingListenerDoesNotStopOthers() {
+        mRouter.addTradesListener("btc_mxn", new BitsoTradesListener() {
+            @Override
+            public void onTrades(BitsoStreamTrades trades) {
+                throw new IllegalStateException("Listener failure");
+            }
+        });
+        mRouter.addTradesListener("btc_mxn", tradesListener());
+        mRouter.addListener("btc_mxn", updatesListener());
+
+        assertTrue(mRouter.route(String.format(TRADES, "btc_mxn")) instanceof BitsoStreamTrades);
+        assertEquals(1, mTrades.size());
+        assertEquals(1, mUpdates.size());
+    }
+
+    private BitsoTradesListener tradesListener() {
+        return new BitsoTradesListener() {
+            @Override
+            public void onTrades(BitsoStreamTrades trades) {
+                mTrades.add(trades);
+            }
+        };
+    }
+
+    private BitsoDiffOrdersListener diffOrdersListener() {
+        return new BitsoDiffOrdersListener() {
+            @Override
+            public void onDiffOrders(BitsoStreamDiffOrders diffOrders) {
+                mDiffOrders.add(diffOrders);
+            }
+        };
+    }
+
+    private BitsoStreamListener updatesListener() {
+        return new BitsoStreamListener() {
+            @Override
+            public void onUpdate(BitsoStreamUpdate update) {
+                mUpdates.add(update);
+            }
+        };
+    }
+}
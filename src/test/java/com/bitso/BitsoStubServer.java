@@ -0,0 +1,593 @@
+package com.bitso;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.bitso.auth.BitsoRequestSigner;
+import com.bitso.exceptions.BitsoAPIException;
+import com.bitso.http.NettyTransport;
+import com.bitso.websockets.BitsoChannels;
+import com.bitso.websockets.BitsoSubscription;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
+import io.netty.util.AttributeKey;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/**
+ * Local stand-in for the Bitso REST and WebSocket APIs, for exercising the real clients offline and under load.
+ *
+ * REST requests to the v3 endpoints are answered with the fixtures in {@code src/test/java/JSONFiles}, private
+ * ones only if they carry a valid signature with an increasing nonce for the configured key. WebSocket clients
+ * connect to {@link #getWebSocketUri()} on the same port, get acknowledgements for their subscriptions and then
+ * synthetic {@code trades}, {@code diff-orders} and {@code orders} messages at the rate set per channel. Latency,
+ * server errors and dropped WebSocket connections can be injected, and paginated listings can be served from a
+ * synthetic history of any length.
+ */
+public class BitsoStubServer implements Closeable {
+    public static final long HISTORY_START_MILLIS = 1500000000000L;
+    private static final String FIXTURES = "src/test/java/JSONFiles/";
+    private static final String API = "/api/v3/";
+    private static final AttributeKey<Set<BitsoSubscription>> SUBSCRIPTIONS =
+            AttributeKey.valueOf("bitso.subscriptions");
+    private static final Map<String, String> PUBLIC_FIXTURES = new HashMap<String, String>();
+    private static final Map<String, String> PRIVATE_FIXTURES = new HashMap<String, String>();
+    private static final Map<String, String> HISTORY_IDS = new HashMap<String, String>();
+
+    static {
+        PUBLIC_FIXTURES.put("available_books", "publicAvailableBooks.json");
+        PUBLIC_FIXTURES.put("ticker", "publicTicker.json");
+        PUBLIC_FIXTURES.put("order_book", "publicOrderBook.json");
+        PUBLIC_FIXTURES.put("trades", "publicTrades.json");
+
+        PRIVATE_FIXTURES.put("GET account_status", "privateAccountStatus.json");
+        PRIVATE_FIXTURES.put("GET balance", "privateAccountBalance.json");
+        PRIVATE_FIXTURES.put("GET fees", "privateFees.json");
+        PRIVATE_FIXTURES.put("GET ledger", "privateLedger.json");
+        PRIVATE_FIXTURES.put("GET ledger/trades", "privateLedgerTrades.json");
+        PRIVATE_FIXTURES.put("GET ledger/fees", "privateLedgerFees.json");
+        PRIVATE_FIXTURES.put("GET ledger/fundings", "privateLedgerFundings.json");
+        PRIVATE_FIXTURES.put("GET ledger/withdrawals", "privateLedgerWithdrawals.json");
+        PRIVATE_FIXTURES.put("GET withdrawals", "privateWithdrawals.json");
+        PRIVATE_FIXTURES.put("GET fundings", "privateFundings.json");
+        PRIVATE_FIXTURES.put("GET user_trades", "privateUserTrades.json");
+        PRIVATE_FIXTURES.put("GET order_trades", "privateUserTrades.json");
+        PRIVATE_FIXTURES.put("GET open_orders", "privateOpenOrders.json");
+        PRIVATE_FIXTURES.put("GET orders", "privateLookUpOrders.json");
+        PRIVATE_FIXTURES.put("POST orders", "privatePlaceOrder.json");
+        PRIVATE_FIXTURES.put("DELETE orders", "privateCancelOrder.json");
+        PRIVATE_FIXTURES.put("GET funding_destination", "privateFundingDestination.json");
+        PRIVATE_FIXTURES.put("GET mx_bank_codes", "privateBankCodes.json");
+        PRIVATE_FIXTURES.put("POST bitcoin_withdrawal", "privateBitcoinWithdrawal.json");
+        PRIVATE_FIXTURES.put("POST ether_withdrawal", "privateEtherWithdrawal.json");
+        PRIVATE_FIXTURES.put("POST spei_withdrawal", "privateSPEIWithdrawal.json");
+        PRIVATE_FIXTURES.put("POST debit_card_withdrawal", "privateDebitCardWithdrawal.json");
+        PRIVATE_FIXTURES.put("POST phone_withdrawal", "privatePhoneNumberWithdrawal.json");
+
+        HISTORY_IDS.put("trades", "tid");
+        HISTORY_IDS.put("ledger", "eid");
+        HISTORY_IDS.put("withdrawals", "wid");
+        HISTORY_IDS.put("fundings", "fid");
+        HISTORY_IDS.put("user_trades", "tid");
+    }
+
+    private final BitsoRequestSigner mSigner;
+    private final String mApiKey;
+    private final EventLoopGroup mGroup = NettyTransport.newEventLoopGroup(2, "bitso-stub");
+    private final ChannelGroup mWebSockets = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final ConcurrentHashMap<String, byte[]> mFixtures = new ConcurrentHashMap<String, byte[]>();
+    private final ConcurrentHashMap<BitsoChannels, ScheduledFuture<?>> mStreams =
+            new ConcurrentHashMap<BitsoChannels, ScheduledFuture<?>>();
+    private final ConcurrentHashMap<String, BookStream> mBooks = new ConcurrentHashMap<String, BookStream>();
+    private final Random mRandom = new Random(1);
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mRejected = new AtomicLong();
+    private final AtomicLong mMessages = new AtomicLong();
+    private long mLastNonce;
+    private volatile long mLatencyMs;
+    private volatile double mErrorRate;
+    private volatile int mHistorySize;
+    private Channel mServerChannel;
+
+    /**
+     * @param apiKey
+     *            Key private requests must be signed with
+     * @param secret
+     *            Secret private requests must be signed with
+     */
+    public BitsoStubServer(String apiKey, String secret) {
+        mApiKey = apiKey;
+        mSigner = new BitsoRequestSigner(apiKey, secret);
+    }
+
+    /**
+     * Listens on an ephemeral port of the loopback interface.
+     */
+    public BitsoStubServer start() throws InterruptedException {
+        Class<? extends ServerSocketChannel> channelClass = (mGroup instanceof EpollEventLoopGroup)
+                ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+        mServerChannel = new ServerBootstrap().group(mGroup).channel(channelClass)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    public void initChannel(SocketChannel socketChannel) {
+                        socketChannel.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(65536),
+                                new StubHandler());
+                    }
+                }).bind("127.0.0.1", 0).sync().channel();
+        return this;
+    }
+
+    public int getPort() {
+        return ((InetSocketAddress) mServerChannel.localAddress()).getPort();
+    }
+
+    /**
+     * @return the URL to pass to {@link Bitso#setBaseURL(String)}
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + getPort();
+    }
+
+    public URI getWebSocketUri() {
+        return URI.create("ws://127.0.0.1:" + getPort() + "/");
+    }
+
+    /**
+     * Delays every REST response by latencyMs.
+     */
+    public void setLatencyMillis(long latencyMs) {
+        mLatencyMs = latencyMs;
+    }
+
+    /**
+     * Answers the given fraction of REST requests with a 500 and a Bitso error body.
+     */
+    public void setErrorRate(double errorRate) {
+        mErrorRate = errorRate;
+    }
+
+    /**
+     * Answers the trades, ledger, withdrawals, fundings and user_trades listings with pages of a history of
+     * entries elements, copies of the first element of the fixture with ids from 1 to entries created a minute
+     * apart after {@link #HISTORY_START_MILLIS}. The {@code limit}, {@code marker} and {@code sort} parameters
+     * are honored. 0 serves the fixtures as they are.
+     */
+    public void setHistorySize(int entries) {
+        mHistorySize = entries;
+    }
+
+    /**
+     * Sends messagesPerSecond synthetic messages of channel to every subscription of it, 0 to stop.
+     */
+    public synchronized void setStreamRate(final BitsoChannels channel, double messagesPerSecond) {
+        ScheduledFuture<?> previous = mStreams.remove(channel);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        if (messagesPerSecond <= 0) {
+            return;
+        }
+        // Ticks of at least a millisecond, several messages per tick above 1000 per second
+        long periodNanos = Math.max(1000000L, (long) (1e9 / messagesPerSecond));
+        final int perTick = Math.max(1, (int) Math.round(messagesPerSecond * periodNanos / 1e9));
+        mStreams.put(channel, mGroup.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                emit(channel, perTick);
+            }
+        }, periodNanos, periodNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Drops every WebSocket connection without a close frame, as a network failure would.
+     */
+    public void disconnectWebSockets() throws InterruptedException {
+        mWebSockets.close().sync();
+    }
+
+    public int getWebSocketCount() {
+        return mWebSockets.size();
+    }
+
+    public long getRequestCount() {
+        return mRequests.get();
+    }
+
+    /**
+     * @return the number of private requests rejected for a missing or invalid signature or nonce
+     */
+    public long getRejectedCount() {
+        return mRejected.get();
+    }
+
+    /**
+     * @return the number of stream messages sent
+     */
+    public long getMessageCount() {
+        return mMessages.get();
+    }
+
+    @Override
+    public void close() {
+        if (mServerChannel != null) {
+            mServerChannel.close().syncUninterruptibly();
+        }
+        mWebSockets.close().syncUninterruptibly();
+        mGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private void emit(BitsoChannels channel, int count) {
+        for (Channel webSocket : mWebSockets) {
+            Set<BitsoSubscription> subscriptions = webSocket.attr(SUBSCRIPTIONS).get();
+            if (subscriptions == null) {
+                continue;
+            }
+            boolean written = false;
+            synchronized (subscriptions) {
+                for (BitsoSubscription subscription : subscriptions) {
+                    if (subscription.getChannel() != channel) {
+                        continue;
+                    }
+                    BookStream book = book(subscription.getBook());
+                    for (int i = 0; i < count; i++) {
+                        webSocket.write(new TextWebSocketFrame(book.next(channel)));
+                        mMessages.incrementAndGet();
+                    }
+                    written = true;
+                }
+            }
+            if (written) {
+                webSocket.flush();
+            }
+        }
+    }
+
+    private BookStream book(String book) {
+        BookStream stream = mBooks.get(book);
+        if (stream == null) {
+            BookStream created = new BookStream(book);
+            stream = mBooks.putIfAbsent(book, created);
+            if (stream == null) {
+                stream = created;
+            }
+        }
+        return stream;
+    }
+
+    private byte[] fixture(String name) throws IOException {
+        byte[] bytes = mFixtures.get(name);
+        if (bytes == null) {
+            bytes = Files.readAllBytes(Paths.get(FIXTURES + name));
+            mFixtures.put(name, bytes);
+        }
+        return bytes;
+    }
+
+    private Response respond(String method, String uri, String authorization, String body) {
+        mRequests.incrementAndGet();
+        synchronized (mRandom) {
+            if (mErrorRate > 0 && mRandom.nextDouble() < mErrorRate) {
+                return error(HttpResponseStatus.INTERNAL_SERVER_ERROR, "0100", "Injected server error");
+            }
+        }
+        String path = uri;
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        if (!path.startsWith(API)) {
+            return error(HttpResponseStatus.NOT_FOUND, "0404", "Unknown endpoint " + path);
+        }
+        String endpoint = path.substring(API.length());
+
+        String fixture = PUBLIC_FIXTURES.get(endpoint);
+        if (fixture != null && "GET".equals(method) && authorization == null) {
+            return fixtureResponse(fixture, uri, endpoint);
+        }
+        if (!verify(method, uri, authorization, body)) {
+            mRejected.incrementAndGet();
+            return error(HttpResponseStatus.UNAUTHORIZED, "0201", "Invalid Nonce or Invalid Signature");
+        }
+        if (fixture == null) {
+            fixture = privateFixture(method, endpoint);
+        }
+        if (fixture == null) {
+            return error(HttpResponseStatus.NOT_FOUND, "0404", "Unknown endpoint " + method + " " + path);
+        }
+        return "GET".equals(method) ? fixtureResponse(fixture, uri, endpoint) : fixtureResponse(fixture);
+    }
+
+    private static String privateFixture(String method, String endpoint) {
+        String fixture = PRIVATE_FIXTURES.get(method + " " + endpoint);
+        // Ids in the path, e.g. orders/<oid>-<oid> or withdrawals/<wid>
+        int slash = endpoint.indexOf('/');
+        if (fixture == null && slash > 0) {
+            fixture = PRIVATE_FIXTURES.get(method + " " + endpoint.substring(0, slash));
+        }
+        return fixture;
+    }
+
+    private boolean verify(String method, String uri, String authorization, String body) {
+        if (authorization == null || !authorization.startsWith("Bitso ")) {
+            return false;
+        }
+        String[] parts = authorization.substring("Bitso ".length()).split(":");
+        if (parts.length != 3 || !parts[0].equals(mApiKey)) {
+            return false;
+        }
+        try {
+            long nonce = Long.parseLong(parts[1]);
+            String expected = mSigner.buildAuthHeader(nonce, method, uri, body.isEmpty() ? null : body);
+            if (!expected.equals(authorization)) {
+                return false;
+            }
+            synchronized (this) {
+                if (nonce <= mLastNonce) {
+                    return false;
+                }
+                mLastNonce = nonce;
+            }
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        } catch (BitsoAPIException e) {
+            return false;
+        }
+    }
+
+    private Response fixtureResponse(String fixture) {
+        try {
+            return new Response(HttpResponseStatus.OK, fixture(fixture));
+        } catch (IOException e) {
+            return error(HttpResponseStatus.INTERNAL_SERVER_ERROR, "0100", "Missing fixture " + fixture);
+        }
+    }
+
+    private Response fixtureResponse(String fixture, String uri, String endpoint) {
+        // Ledger operations are listed under ledger/<operation>
+        String idField = HISTORY_IDS.get(endpoint.startsWith("ledger") ? "ledger" : endpoint);
+        int entries = mHistorySize;
+        if (idField == null || entries == 0) {
+            return fixtureResponse(fixture);
+        }
+        Map<String, String> parameters = new HashMap<String, String>();
+        int query = uri.indexOf('?');
+        if (query >= 0) {
+            for (String parameter : uri.substring(query + 1).split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+                }
+            }
+        }
+        try {
+            int limit = parameters.containsKey("limit") ? Integer.parseInt(parameters.get("limit")) : 25;
+            boolean ascending = "asc".equals(parameters.get("sort"));
+            int id = ascending ? 1 : entries;
+            if (parameters.containsKey("marker")) {
+                id = Integer.parseInt(parameters.get("marker")) + (ascending ? 1 : -1);
+            }
+            JSONObject body = new JSONObject(new String(fixture(fixture), CharsetUtil.UTF_8));
+            JSONObject template = body.getJSONArray("payload").getJSONObject(0);
+            boolean numeric = !(template.get(idField) instanceof String);
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.ROOT);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            JSONArray page = new JSONArray();
+            for (; page.length() < limit && id >= 1 && id <= entries; id += ascending ? 1 : -1) {
+                JSONObject element = new JSONObject(template.toString());
+                element.put(idField, numeric ? (Object) id : String.valueOf(id));
+                if (element.has("created_at")) {
+                    element.put("created_at", format.format(new Date(HISTORY_START_MILLIS + id * 60000L)));
+                }
+                page.put(element);
+            }
+            body.put("payload", page);
+            return new Response(HttpResponseStatus.OK, body.toString().getBytes(CharsetUtil.UTF_8));
+        } catch (NumberFormatException e) {
+            return error(HttpResponseStatus.BAD_REQUEST, "0301", "Invalid pagination parameters");
+        } catch (IOException e) {
+            return error(HttpResponseStatus.INTERNAL_SERVER_ERROR, "0100", "Missing fixture " + fixture);
+        }
+    }
+
+    private static Response error(HttpResponseStatus status, String code, String message) {
+        JSONObject error = new JSONObject();
+        error.put("code", code);
+        error.put("message", message);
+        JSONObject body = new JSONObject();
+        body.put("success", false);
+        body.put("error", error);
+        return new Response(status, body.toString().getBytes(CharsetUtil.UTF_8));
+    }
+
+    private static class Response {
+        private final HttpResponseStatus mStatus;
+        private final byte[] mBody;
+
+        private Response(HttpResponseStatus status, byte[] body) {
+            mStatus = status;
+            mBody = body;
+        }
+    }
+
+    // Synthetic market of one book
+    private static class BookStream {
+        private final String mBook;
+        private final Random mRandom;
+        private long mSequence;
+        private long mTradeId;
+        private long mOrderId;
+
+        private BookStream(String book) {
+            mBook = book;
+            mRandom = new Random(book.hashCode());
+        }
+
+        private synchronized String next(BitsoChannels channel) {
+            long seconds = System.currentTimeMillis() / 1000;
+            switch (channel) {
+            case TRADES:
+                return "{\"type\":\"trades\",\"book\":\"" + mBook + "\",\"payload\":[{\"i\":" + (++mTradeId)
+                        + ",\"a\":\"0.00100000\",\"r\":\"" + price() + "\",\"v\":\"46.85\",\"t\":"
+                        + mRandom.nextInt(2) + ",\"mo\":\"m" + mTradeId + "\",\"to\":\"t" + mTradeId + "\"}]}";
+            case DIFF_ORDERS:
+                return "{\"type\":\"diff-orders\",\"book\":\"" + mBook + "\",\"sequence\":" + (++mSequence)
+                        + ",\"payload\":[" + order(seconds, mRandom.nextInt(2)) + "]}";
+            case ORDERS:
+                return "{\"type\":\"orders\",\"book\":\"" + mBook + "\",\"payload\":{\"bids\":["
+                        + order(seconds, 0) + "],\"asks\":[" + order(seconds, 1) + "]}}";
+            default:
+                return "{\"type\":\"ka\"}";
+            }
+        }
+
+        private String order(long seconds, int side) {
+            return "{\"d\":" + seconds + ",\"r\":\"" + price() + "\",\"t\":" + side
+                    + ",\"a\":\"0.25000000\",\"v\":\"11712.50\",\"o\":\"o" + (++mOrderId) + "\",\"s\":\"open\"}";
+        }
+
+        private String price() {
+            return (46000 + mRandom.nextInt(2000)) + "." + (10 + mRandom.nextInt(90));
+        }
+    }
+
+    private class StubHandler extends SimpleChannelInboundHandler<Object> {
+        private WebSocketServerHandshaker mHandshaker;
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof FullHttpRequest) {
+                handleHttp(ctx, (FullHttpRequest) msg);
+            } else if (msg instanceof WebSocketFrame) {
+                handleFrame(ctx, (WebSocketFrame) msg);
+            }
+        }
+
+        private void handleHttp(final ChannelHandlerContext ctx, FullHttpRequest request) {
+            String upgrade = request.headers().get(HttpHeaderNames.UPGRADE);
+            if (HttpHeaderValues.WEBSOCKET.contentEqualsIgnoreCase(upgrade)) {
+                WebSocketServerHandshakerFactory factory =
+                        new WebSocketServerHandshakerFactory(getWebSocketUri().toString(), null, false);
+                mHandshaker = factory.newHandshaker(request);
+                if (mHandshaker == null) {
+                    WebSocketServerHandshakerFactory.sendUnsupportedVersionResponse(ctx.channel());
+                    return;
+                }
+                mHandshaker.handshake(ctx.channel(), request);
+                ctx.channel().attr(SUBSCRIPTIONS).set(
+                        Collections.synchronizedSet(new LinkedHashSet<BitsoSubscription>()));
+                mWebSockets.add(ctx.channel());
+                return;
+            }
+
+            final boolean keepAlive = HttpUtil.isKeepAlive(request);
+            final Response response = respond(request.method().name(), request.uri(),
+                    request.headers().get(HttpHeaderNames.AUTHORIZATION),
+                    request.content().toString(CharsetUtil.UTF_8));
+            long latencyMs = mLatencyMs;
+            if (latencyMs > 0) {
+                ctx.executor().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        write(ctx, response, keepAlive);
+                    }
+                }, latencyMs, TimeUnit.MILLISECONDS);
+            } else {
+                write(ctx, response, keepAlive);
+            }
+        }
+
+        private void write(ChannelHandlerContext ctx, Response response, boolean keepAlive) {
+            FullHttpResponse httpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, response.mStatus,
+                    Unpooled.wrappedBuffer(response.mBody));
+            httpResponse.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+            HttpUtil.setContentLength(httpResponse, response.mBody.length);
+            if (keepAlive) {
+                HttpUtil.setKeepAlive(httpResponse, true);
+                ctx.writeAndFlush(httpResponse);
+            } else {
+                ctx.writeAndFlush(httpResponse).addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        private void handleFrame(ChannelHandlerContext ctx, WebSocketFrame frame) {
+            if (frame instanceof CloseWebSocketFrame) {
+                mHandshaker.close(ctx.channel(), (CloseWebSocketFrame) frame.retain());
+                return;
+            }
+            if (frame instanceof PingWebSocketFrame) {
+                ctx.writeAndFlush(new PongWebSocketFrame(frame.content().retain()));
+                return;
+            }
+            if (!(frame instanceof TextWebSocketFrame)) {
+                return;
+            }
+            try {
+                JSONObject message = new JSONObject(((TextWebSocketFrame) frame).text());
+                BitsoChannels channel = BitsoChannels.getBitsoChannel(message.optString("type"));
+                if (!"subscribe".equals(message.optString("action")) || channel == null) {
+                    return;
+                }
+                ctx.channel().attr(SUBSCRIPTIONS).get().add(
+                        new BitsoSubscription(message.getString("book"), channel));
+                ctx.writeAndFlush(new TextWebSocketFrame("{\"action\":\"subscribe\",\"response\":\"ok\",\"time\":"
+                        + System.currentTimeMillis() + ",\"type\":\"" + channel + "\"}"));
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
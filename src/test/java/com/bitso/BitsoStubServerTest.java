@@ -0,0 +1,520 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bitso.exceptions.BitsoAPIException;
+import com.bitso.exceptions.BitsoPaginationException;
+import com.bitso.exchange.BookInfo;
+import com.bitso.http.BlockingHttpClient;
+import com.bitso.http.NettyTransport;
+import com.bitso.websockets.BitsoChannels;
+import com.bitso.websockets.BitsoDiffOrdersListener;
+import com.bitso.websockets.BitsoStreamDiffOrders;
+import com.bitso.websockets.BitsoStreamTrades;
+import com.bitso.websockets.BitsoTradesListener;
+import com.bitso.websockets.BitsoWebSocket;
+
+import io.netty.channel.EventLoopGroup;
+
+public class BitsoStubServerTest {
+    private static final String KEY = "stub-key";
+    private static final String SECRET = "stub-secret";
+
+    private BitsoStubServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new BitsoStubServer(KEY, SECRET).start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.close();
+    }
+
+    @Test
+    public void testRestFixtures() throws Exception {
+        Bitso bitso = bitso(KEY, SECRET);
+        BookInfo[] books = bitso.getAvailableBooks();
+        assertTrue(books.length > 0);
+        assertEquals("btc_mxn", books[0].getBook());
+        assertEquals("111111", bitso.getAccountStatus().getClientId());
+        assertEquals(0, mServer.getRejectedCount());
+    }
+
+    @Test
+    public void testRejectsBadSignature() throws Exception {
+        try {
+            bitso(KEY, "wrong-secret").getAccountStatus();
+            fail("Request with a bad signature was accepted");
+        } catch (BitsoAPIException e) {
+            assertEquals(201, e.getErrorCode());
+        }
+        // Rejections with code 0201 are resent with a fresh nonce before giving up
+        assertEquals(1 + Bitso.DEFAULT_NONCE_RETRIES, mServer.getRejectedCount());
+    }
+
+    @Test
+    public void testResendsRejectedNonces() throws Exception {
+        final Bitso bitso = bitso(KEY, SECRET);
+        mServer.setLatencyMillis(5);
+        Object[] results = concurrently(8, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                List<Object> responses = new ArrayList<Object>();
+                for (int i = 0; i < 5; i++) {
+                    responses.add(bitso.placeOrder("btc_mxn", BitsoOrder.SIDE.BUY, BitsoOrder.TYPE.LIMIT,
+                            new BigDecimal("0.001"), null, new BigDecimal("46850")));
+                    responses.add(bitso.getOpenOrders("btc_mxn"));
+                    responses.add(bitso.getLedger(null));
+                    responses.add(bitso.cancelOrder("qlbga6b600n3xta7"));
+                }
+                return responses;
+            }
+        });
+        for (Object result : results) {
+            assertEquals(20, ((List<?>) result).size());
+            for (Object response : (List<?>) result) {
+                assertNotNull(response);
+            }
+        }
+        assertEquals(8 * 20, acceptedRequests());
+    }
+
+    @Test
+    public void testInjectedErrorsAndLatency() throws Exception {
+        Bitso bitso = bitso(KEY, SECRET);
+        mServer.setLatencyMillis(100);
+        long start = System.nanoTime();
+        bitso.getAvailableBooks();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        mServer.setLatencyMillis(0);
+        mServer.setErrorRate(1);
+        try {
+            bitso.getAvailableBooks();
+            fail("Injected error was not reported");
+        } catch (BitsoAPIException e) {
+            assertEquals(100, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void testStreamsAndReconnect() throws Exception {
+        BitsoWebSocket webSocket = new BitsoWebSocket(mServer.getWebSocketUri());
+        webSocket.setAutoReconnect(true, 50, 200);
+        final AtomicInteger connections = new AtomicInteger();
+        webSocket.addObserver(new Observer() {
+            @Override
+            public void update(Observable o, Object arg) {
+                if (Boolean.TRUE.equals(arg)) {
+                    connections.incrementAndGet();
+                }
+            }
+        });
+        final CountDownLatch before = new CountDownLatch(20);
+        final CountDownLatch after = new CountDownLatch(40);
+        webSocket.addDiffOrdersListener("btc_mxn", new BitsoDiffOrdersListener() {
+            @Override
+            public void onDiffOrders(BitsoStreamDiffOrders diffOrders) {
+                if (connections.get() > 1) {
+                    after.countDown();
+                } else {
+                    before.countDown();
+                }
+            }
+        });
+        mServer.setStreamRate(BitsoChannels.DIFF_ORDERS, 1000);
+
+        webSocket.openConnection();
+        webSocket.subscribe("btc_mxn", BitsoChannels.DIFF_ORDERS);
+        assertTrue(before.await(5, TimeUnit.SECONDS));
+
+        // The subscription is sent again on the new connection
+        mServer.disconnectWebSockets();
+        assertTrue(after.await(5, TimeUnit.SECONDS));
+        assertEquals(2, connections.get());
+        assertEquals(1, mServer.getWebSocketCount());
+        webSocket.closeConnection();
+    }
+
+    @Test
+    public void testSubscribesBooksAndChannels() throws Exception {
+        BitsoWebSocket webSocket = new BitsoWebSocket(mServer.getWebSocketUri());
+        List<String> books = Arrays.asList("btc_mxn", "eth_mxn");
+        final CountDownLatch received = new CountDownLatch(books.size() * 2 * 10);
+        final AtomicInteger misrouted = new AtomicInteger();
+        for (final String book : books) {
+            final CountDownLatch trades = new CountDownLatch(10);
+            final CountDownLatch diffOrders = new CountDownLatch(10);
+            webSocket.addTradesListener(book, new BitsoTradesListener() {
+                @Override
+                public void onTrades(BitsoStreamTrades update) {
+                    if (!book.equals(update.getBitsoBook())) {
+                        misrouted.incrementAndGet();
+                    } else if (trades.getCount() > 0) {
+                        trades.countDown();
+                        received.countDown();
+                    }
+                }
+            });
+            webSocket.addDiffOrdersListener(book, new BitsoDiffOrdersListener() {
+                @Override
+                public void onDiffOrders(BitsoStreamDiffOrders update) {
+                    if (!book.equals(update.getBitsoBook())) {
+                        misrouted.incrementAndGet();
+                    } else if (diffOrders.getCount() > 0) {
+                        diffOrders.countDown();
+                        received.countDown();
+                    }
+                }
+            });
+        }
+        mServer.setStreamRate(BitsoChannels.TRADES, 500);
+        mServer.setStreamRate(BitsoChannels.DIFF_ORDERS, 500);
+
+        webSocket.openConnection();
+        webSocket.subscribe(books, BitsoChannels.TRADES, BitsoChannels.DIFF_ORDERS);
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertEquals(0, misrouted.get());
+        assertEquals(1, mServer.getWebSocketCount());
+        for (String book : books) {
+            assertTrue(webSocket.isSubscribed(book, BitsoChannels.TRADES));
+            assertTrue(webSocket.isSubscribed(book, BitsoChannels.DIFF_ORDERS));
+        }
+        webSocket.closeConnection();
+    }
+
+    @Test
+    public void testSharedEventLoopGroup() throws Exception {
+        EventLoopGroup group = NettyTransport.newEventLoopGroup(1, "bitso-ws-test");
+        BitsoWebSocket first = new BitsoWebSocket(mServer.getWebSocketUri(), group, null);
+        BitsoWebSocket second = new BitsoWebSocket(mServer.getWebSocketUri(), group, null);
+        final CountDownLatch firstTrades = new CountDownLatch(10);
+        final AtomicInteger secondTrades = new AtomicInteger();
+        first.addTradesListener("btc_mxn", new BitsoTradesListener() {
+            @Override
+            public void onTrades(BitsoStreamTrades trades) {
+                firstTrades.countDown();
+            }
+        });
+        second.addTradesListener("btc_mxn", new BitsoTradesListener() {
+            @Override
+            public void onTrades(BitsoStreamTrades trades) {
+                secondTrades.incrementAndGet();
+            }
+        });
+        mServer.setStreamRate(BitsoChannels.TRADES, 500);
+
+        first.openConnection();
+        second.openConnection();
+        first.subscribe("btc_mxn", BitsoChannels.TRADES);
+        second.subscribe("btc_mxn", BitsoChannels.TRADES);
+        assertTrue(firstTrades.await(5, TimeUnit.SECONDS));
+        assertEquals(2, mServer.getWebSocketCount());
+
+        // Closing a socket leaves the group it does not own running for the other one
+        first.closeConnection();
+        assertFalse(group.isShuttingDown());
+        int received = secondTrades.get();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (secondTrades.get() < received + 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(secondTrades.get() >= received + 10);
+        second.closeConnection();
+        assertFalse(group.isShuttingDown());
+        group.shutdownGracefully().sync();
+    }
+
+    @Test
+    public void testIdleConnectionReconnects() throws Exception {
+        BitsoWebSocket webSocket = new BitsoWebSocket(mServer.getWebSocketUri());
+        webSocket.setAutoReconnect(true, 50, 200);
+        webSocket.setIdleTimeoutSeconds(1);
+        final List<Object> states = new ArrayList<Object>();
+        final CountDownLatch reconnected = new CountDownLatch(2);
+        webSocket.addObserver(new Observer() {
+            @Override
+            public void update(Observable o, Object arg) {
+                if (arg instanceof Boolean) {
+                    synchronized (states) {
+                        states.add(arg);
+                    }
+                    if (Boolean.TRUE.equals(arg)) {
+                        reconnected.countDown();
+                    }
+                }
+            }
+        });
+        final CountDownLatch messages = new CountDownLatch(10);
+        webSocket.addDiffOrdersListener("btc_mxn", new BitsoDiffOrdersListener() {
+            @Override
+            public void onDiffOrders(BitsoStreamDiffOrders diffOrders) {
+                messages.countDown();
+            }
+        });
+
+        webSocket.openConnection();
+        webSocket.subscribe("btc_mxn", BitsoChannels.DIFF_ORDERS);
+        // Nothing is streamed, the connection goes stale after the subscription ack
+        assertTrue(reconnected.await(5, TimeUnit.SECONDS));
+        synchronized (states) {
+            assertEquals(Boolean.TRUE, states.get(0));
+            assertEquals(Boolean.FALSE, states.get(1));
+            assertEquals(Boolean.TRUE, states.get(2));
+        }
+
+        // The subscription was sent again on the new connection
+        mServer.setStreamRate(BitsoChannels.DIFF_ORDERS, 100);
+        assertTrue(messages.await(5, TimeUnit.SECONDS));
+        assertEquals(1, mServer.getWebSocketCount());
+        webSocket.closeConnection();
+    }
+
+    @Test
+    public void testPagination() throws Exception {
+        Bitso bitso = bitso(KEY, SECRET);
+        mServer.setHistorySize(250);
+        mServer.setLatencyMillis(20);
+        BitsoPageIterator<BitsoOperation> ledger = bitso.iterateLedger(null, 100);
+        assertEquals("250", ledger.next().getEntryId());
+        // The second page is requested while the first one is consumed
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mServer.getRequestCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, ledger.getPageCount());
+        assertEquals(2, mServer.getRequestCount());
+        int expected = 249;
+        while (ledger.hasNext()) {
+            assertEquals(String.valueOf(expected--), ledger.next().getEntryId());
+        }
+        assertEquals(0, expected);
+        assertEquals(3, ledger.getPageCount());
+        assertEquals(3, mServer.getRequestCount());
+
+        // A full last page takes one more, empty, page to detect the end
+        mServer.setHistorySize(200);
+        BitsoPageIterator<BitsoTrade> trades = bitso.iterateUserTrades(50, "sort=asc", "marker=100", "limit=7");
+        assertEquals(100, trades.stream().count());
+        assertEquals(3, trades.getPageCount());
+
+        mServer.setHistorySize(10);
+        mServer.setErrorRate(1);
+        try {
+            bitso.iterateFundings(5).hasNext();
+            fail("Failed page request was not reported");
+        } catch (BitsoPaginationException e) {
+            assertEquals(100, ((BitsoAPIException) e.getCause()).getErrorCode());
+        }
+    }
+
+    @Test
+    public void testOrderBooks() throws Exception {
+        Bitso bitso = bitso(KEY, SECRET);
+        List<String> books = new ArrayList<String>();
+        for (BookInfo book : bitso.getAvailableBooks()) {
+            books.add(book.getBook());
+        }
+        mServer.setLatencyMillis(100);
+        long start = System.nanoTime();
+        BitsoOrderBookSnapshots snapshots = bitso.getOrderBooks(books, books.size());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100 * books.size()));
+        assertEquals(books, new ArrayList<String>(snapshots.getOrderBooks().keySet()));
+        assertFalse(snapshots.hasErrors());
+
+        // By default as many requests are in flight as the client has connections per route
+        BlockingHttpClient client = new BlockingHttpClient(false, 0, 2, 2,
+                BlockingHttpClient.DEFAULT_IDLE_TIMEOUT_MS);
+        assertEquals(2, client.getMaxConnectionsPerRoute());
+        Bitso pooled = new Bitso(KEY, SECRET, 0, false, true, client);
+        pooled.setBaseURL(mServer.getBaseUrl());
+        snapshots = pooled.getOrderBooks(books);
+        assertEquals(books, new ArrayList<String>(snapshots.getOrderBooks().keySet()));
+        pooled.close();
+
+        // Failures are reported per book
+        mServer.setLatencyMillis(0);
+        mServer.setErrorRate(0.5);
+        BitsoAsync async = new BitsoAsync(bitso);
+        snapshots = async.getOrderBooks(books).get(5, TimeUnit.SECONDS);
+        async.close();
+        assertEquals(books.size(), snapshots.getOrderBooks().size() + snapshots.getErrors().size());
+        assertTrue(snapshots.hasErrors());
+        for (Throwable error : snapshots.getErrors().values()) {
+            assertEquals(100, ((BitsoAPIException) error).getErrorCode());
+        }
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        Bitso bitso = bitso(KEY, SECRET);
+        BitsoCache cache = new BitsoCache(2);
+        cache.setTtl("available_books", 400, TimeUnit.MILLISECONDS);
+        cache.setRefreshAhead(0.5);
+        bitso.setCache(cache);
+
+        bitso.getAvailableBooks();
+        bitso.getAvailableBooks()[0].setBook("eth_mxn");
+        assertEquals("btc_mxn", bitso.getAvailableBooks()[0].getBook());
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(2, cache.getHits());
+
+        // Past half the TTL a hit reloads the entry in the background
+        Thread.sleep(250);
+        bitso.getAvailableBooks();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getRefreshes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, mServer.getRequestCount());
+        bitso.getAvailableBooks();
+        assertEquals(2, mServer.getRequestCount());
+
+        cache.invalidate("available_books");
+        bitso.getAvailableBooks();
+        assertEquals(3, mServer.getRequestCount());
+
+        // Bounded to the two most recently used entries
+        bitso.fundingDestination("fund_currency=btc");
+        bitso.getAvailableBooks();
+        bitso.fundingDestination("fund_currency=eth");
+        bitso.getAvailableBooks();
+        assertEquals(2, cache.size());
+        assertEquals(5, mServer.getRequestCount());
+        bitso.fundingDestination("fund_currency=btc");
+        assertEquals(6, mServer.getRequestCount());
+
+        // Every caller decodes objects of its own
+        bitso.getAccountStatus().setClientId("222222");
+        assertEquals("111111", bitso.getAccountStatus().getClientId());
+        assertEquals(7, mServer.getRequestCount());
+
+        // A reload in flight when the entry is invalidated does not bring it back
+        cache.invalidate("available_books");
+        bitso.getAvailableBooks();
+        Thread.sleep(250);
+        mServer.setLatencyMillis(200);
+        long refreshes = cache.getRefreshes();
+        bitso.getAvailableBooks();
+        cache.invalidate("available_books");
+        deadline = System.currentTimeMillis() + 5000;
+        while (cache.getRefreshes() == refreshes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(refreshes + 1, cache.getRefreshes());
+        long misses = cache.getMisses();
+        bitso.getAvailableBooks();
+        assertEquals(misses + 1, cache.getMisses());
+        cache.close();
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        final Bitso bitso = bitso(KEY, SECRET);
+        mServer.setLatencyMillis(300);
+        Object[] results = concurrently(8, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return bitso.getOrderBook("btc_mxn");
+            }
+        });
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(0, mServer.getRejectedCount());
+        assertEquals(7, bitso.getSingleFlight().getCoalesced());
+        for (Object result : results) {
+            assertSame(results[0], result);
+        }
+
+        // Signed requests are sent by each thread unless enabled
+        Callable<Object> openOrders = new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return bitso.getOpenOrders("btc_mxn");
+            }
+        };
+        concurrently(4, openOrders);
+        assertEquals(5, acceptedRequests());
+        long rejected = mServer.getRejectedCount();
+        bitso.setCoalesceSignedRequests(true);
+        concurrently(4, openOrders);
+        assertEquals(6, acceptedRequests());
+        assertEquals(rejected, mServer.getRejectedCount());
+
+        // Requests that are not in flight together are sent again
+        mServer.setLatencyMillis(0);
+        bitso.getOrderBook("btc_mxn");
+        bitso.setCoalesceRequests(false);
+        bitso.getOrderBook("btc_mxn");
+        assertEquals(8, acceptedRequests());
+        assertEquals(rejected, mServer.getRejectedCount());
+    }
+
+    // Signed requests sent together may arrive out of nonce order, the rejected ones are resent
+    private long acceptedRequests() {
+        return mServer.getRequestCount() - mServer.getRejectedCount();
+    }
+
+    /**
+     * @return the non null result of each thread, the first exception thrown by a thread is rethrown
+     */
+    private static Object[] concurrently(int count, final Callable<Object> call) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Object[] results = new Object[count];
+        final Exception[] errors = new Exception[count];
+        Thread[] threads = new Thread[count];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        results[index] = call.call();
+                    } catch (Exception e) {
+                        errors[index] = e;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < count; i++) {
+            if (errors[i] != null) {
+                throw errors[i];
+            }
+            assertNotNull(results[i]);
+        }
+        return results;
+    }
+
+    private Bitso bitso(String key, String secret) {
+        Bitso bitso = new Bitso(key, secret, 0, false, true);
+        bitso.setBaseURL(mServer.getBaseUrl());
+        return bitso;
+    }
+}
@@ -0,0 +1,157 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.bitso.exchange.BookInfo;
+import com.bitso.helpers.FixedPoint;
+import com.bitso.helpers.Helpers;
+import com.bitso.websockets.fixed.FixedPointDiffOrders;
+import com.bitso.websockets.fixed.FixedPointOrder;
+import com.bitso.websockets.fixed.FixedPointStreamDecoder;
+import com.bitso.websockets.fixed.FixedPointTrades;
+import com.bitso.websockets.fixed.PooledStreamDecoder;
+import com.bitso.websockets.fixed.StreamMessage;
+import com.bitso.websockets.fixed.StreamMessagePool;
+
+public class FixedPointTest {
+
+    @Test
+    public void testParse() {
+        assertEquals(4685001L, FixedPoint.parse("46850.01", 2));
+        assertEquals(4685001L, FixedPoint.parse("46850.010000", 2));
+        assertEquals(4685000L, FixedPoint.parse("46850", 2));
+        assertEquals(15000L, FixedPoint.parse("0.00015", 8));
+        assertEquals(-15000L, FixedPoint.parse("-0.00015", 8));
+        assertEquals(15000L, FixedPoint.parse("1.5e-4", 8));
+        assertEquals(150000000L, FixedPoint.parse("1.5E+0", 8));
+        assertEquals(2L, FixedPoint.parse("0.015", 2));
+        assertEquals(-2L, FixedPoint.parse("-0.015", 2));
+        assertEquals(1L, FixedPoint.parse("0.014999", 2));
+        assertEquals(0L, FixedPoint.parse("0.000", 8));
+        assertEquals(123456789012345679L, FixedPoint.parse("1234567890.12345678912345", 8));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseInvalid() {
+        FixedPoint.parse("12a.5", 2);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testParseOverflow() {
+        FixedPoint.parse("100000000000", 8);
+    }
+
+    @Test
+    public void testMatchesBigDecimal() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            BigDecimal value = BigDecimal.valueOf(random.nextLong() % 10000000000L, random.nextInt(12));
+            int scale = random.nextInt(9);
+            assertEquals(value.toPlainString(), FixedPoint.fromBigDecimal(value, scale),
+                    FixedPoint.parse(value.toPlainString(), scale));
+            assertEquals(value.toString(), FixedPoint.fromBigDecimal(value, scale),
+                    FixedPoint.parse(value.toString(), scale));
+        }
+    }
+
+    @Test
+    public void testBookScales() throws Exception {
+        BookInfo btcMxn = null;
+        BookInfo xrpBtc = null;
+        for (BookInfo book : Bitso.parseAvailableBooks(
+                Helpers.getJSONFromFile("publicAvailableBooks.json").getJSONArray("payload"))) {
+            if (book.getBook().equals("btc_mxn")) {
+                btcMxn = book;
+            } else if (book.getBook().equals("xrp_btc")) {
+                xrpBtc = book;
+            }
+        }
+        assertEquals(2, btcMxn.getPriceScale());
+        assertEquals(8, btcMxn.getAmountScale());
+        assertEquals(8, xrpBtc.getPriceScale());
+        assertEquals(12, xrpBtc.getValueScale());
+    }
+
+    @Test
+    public void testDecodeDiffOrders() throws Exception {
+        FixedPointStreamDecoder decoder = new FixedPointStreamDecoder(btcMxn());
+        FixedPointDiffOrders diff = (FixedPointDiffOrders) decoder.decode("{\"type\": \"diff-orders\","
+                + " \"book\": \"btc_mxn\", \"payload\": [{\"d\": 1501621674, \"r\": \"46850.01\", \"t\": 1,"
+                + " \"a\": \"0.25\", \"v\": \"11712.5025\", \"o\": \"a1\", \"s\": \"open\"},"
+                + " {\"d\": 1501621674, \"r\": 46800.5, \"t\": 0, \"o\": \"b1\", \"s\": \"cancelled\"}],"
+                + " \"sequence\": 42}");
+
+        assertEquals("btc_mxn", diff.getBook());
+        assertEquals(42, diff.getSequenceNumber());
+        FixedPointOrder ask = diff.getPayload()[0];
+        assertEquals(BitsoOrder.SIDE.SELL, ask.getSide());
+        assertEquals(4685001L, ask.getRate());
+        assertEquals(25000000L, ask.getAmount());
+        assertEquals(0, new BigDecimal("11712.5025").compareTo(ask.getValueDecimal()));
+        assertEquals(1501621674000L, ask.getOrderDateMillis());
+        FixedPointOrder bid = diff.getPayload()[1];
+        assertEquals(4680050L, bid.getRate());
+        assertEquals(0L, bid.getAmount());
+    }
+
+    @Test
+    public void testDecodeTradesAndFiltering() throws Exception {
+        FixedPointStreamDecoder decoder = new FixedPointStreamDecoder(btcMxn());
+        // Book after the payload
+        FixedPointTrades trades = (FixedPointTrades) decoder.decode("{\"type\": \"trades\", \"payload\":"
+                + " [{\"i\": 7, \"a\": \"0.001\", \"r\": \"46850.00\", \"v\": \"46.85\", \"t\": 0}],"
+                + " \"book\": \"btc_mxn\"}");
+        assertEquals(1, trades.getPayload().length);
+        assertEquals(7, trades.getPayload()[0].getTradeId());
+        assertEquals(100000L, trades.getPayload()[0].getAmount());
+        assertEquals(BitsoOrder.SIDE.BUY, trades.getPayload()[0].getMakerSide());
+
+        assertNull(decoder.decode("{\"action\": \"subscribe\", \"response\": \"ok\", \"time\": 1,"
+                + " \"type\": \"trades\"}"));
+        assertNull(decoder.decode("{\"type\": \"ka\"}"));
+        assertNull(decoder.decode("{\"type\": \"trades\", \"book\": \"eth_mxn\", \"payload\": []}"));
+    }
+
+    @Test
+    public void testPooledDecoder() throws Exception {
+        StreamMessagePool pool = new StreamMessagePool(1);
+        PooledStreamDecoder decoder = new PooledStreamDecoder(pool, btcMxn());
+        String diff = "{\"type\": \"diff-orders\", \"book\": \"btc_mxn\", \"sequence\": %d, \"payload\":"
+                + " [{\"d\": 1501621674, \"r\": \"46850.01\", \"t\": 1, \"a\": \"0.25\","
+                + " \"v\": \"11712.5025\", \"o\": \"a%d\", \"s\": \"open\"}]}";
+
+        StreamMessage first = decoder.decode(String.format(diff, 1, 1), 10L);
+        assertEquals(1, first.getSequenceNumber());
+        assertEquals(1, first.getOrderCount());
+        assertEquals("a1", first.getOrder(0).getOrderId());
+        assertEquals(4685001L, first.getOrder(0).getRate());
+        assertEquals(10L, first.getReceivedNanos());
+        first.release();
+
+        StreamMessage second = decoder.decode(String.format(diff, 2, 2), 20L);
+        assertSame(first, second);
+        assertEquals(2, second.getSequenceNumber());
+        assertEquals(1, second.getOrderCount());
+        assertEquals("a2", second.getOrder(0).getOrderId());
+        second.release();
+
+        assertNull(decoder.decode("{\"type\": \"ka\"}", 0L));
+        assertEquals(1, pool.getAvailable());
+        assertEquals(1, pool.getCreated());
+    }
+
+    private static BookInfo btcMxn() {
+        return new BookInfo(new JSONObject("{\"book\": \"btc_mxn\", \"minimum_price\": \"500.00\","
+                + " \"maximum_price\": \"80000.00\", \"minimum_amount\": \"0.00015\","
+                + " \"maximum_amount\": \"500.00000000\", \"minimum_value\": \"5\","
+                + " \"maximum_value\": \"10000000.00\"}"));
+    }
+}
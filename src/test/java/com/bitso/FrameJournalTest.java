@@ -0,0 +1,171 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.bitso.journal.FrameJournal;
+import com.bitso.journal.FrameJournalReader;
+import com.bitso.journal.ReplaySource;
+import com.bitso.websockets.BitsoChannels;
+import com.bitso.websockets.BitsoDiffOrdersListener;
+import com.bitso.websockets.BitsoStreamDiffOrders;
+
+public class FrameJournalTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTripAcrossSegments() throws Exception {
+        File directory = mFolder.newFolder("journal");
+        FrameJournal journal = new FrameJournal(directory, 1024, 4);
+        for (int i = 0; i < 100; i++) {
+            write(journal, trade(i), 1000 + i);
+        }
+        write(journal, "{\"type\":\"ka\"}", 2000);
+        assertEquals(101, journal.getRecords());
+        journal.close();
+        assertTrue(directory.list().length > 4);
+
+        FrameJournalReader reader = new FrameJournalReader(directory);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(reader.next());
+            assertEquals(1000 + i, reader.getReceivedNanos());
+            assertEquals(BitsoChannels.TRADES, reader.getChannel());
+            assertEquals("btc_mxn", reader.getBook());
+            assertEquals(trade(i), reader.getMessage());
+        }
+        assertTrue(reader.next());
+        assertEquals(BitsoChannels.KA, reader.getChannel());
+        assertNull(reader.getBook());
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testDropsEmptyFrames() throws Exception {
+        File directory = mFolder.newFolder("journal");
+        FrameJournal journal = new FrameJournal(directory, 1024, 4);
+        write(journal, trade(0), 1);
+        write(journal, "", 2);
+        write(journal, trade(1), 3);
+        assertEquals(2, journal.getRecords());
+        assertEquals(1, journal.getDropped());
+        journal.close();
+
+        FrameJournalReader reader = new FrameJournalReader(directory);
+        assertTrue(reader.next());
+        assertEquals(trade(0), reader.getMessage());
+        assertTrue(reader.next());
+        assertEquals(trade(1), reader.getMessage());
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testSeek() throws Exception {
+        File directory = mFolder.newFolder("journal");
+        FrameJournal journal = new FrameJournal(directory, 2048, 8);
+        for (int i = 0; i < 200; i++) {
+            write(journal, trade(i), 10 * i);
+        }
+        journal.close();
+
+        FrameJournalReader reader = new FrameJournalReader(directory);
+        reader.seek(1495);
+        assertTrue(reader.next());
+        assertEquals(1500, reader.getReceivedNanos());
+        assertEquals(trade(150), reader.getMessage());
+        reader.close();
+    }
+
+    @Test
+    public void testFollowsWriter() throws Exception {
+        File directory = mFolder.newFolder("journal");
+        FrameJournal journal = new FrameJournal(directory, 1024, 4);
+        FrameJournalReader reader = new FrameJournalReader(directory);
+        assertFalse(reader.next());
+
+        int read = 0;
+        for (int i = 0; i < 50; i++) {
+            write(journal, trade(i), i);
+            while (reader.next()) {
+                assertEquals(trade(read++), reader.getMessage());
+            }
+            assertEquals(i + 1, read);
+        }
+        journal.close();
+        reader.close();
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        File directory = mFolder.newFolder("journal");
+        FrameJournal journal = new FrameJournal(directory, 4096, 4);
+        for (int i = 1; i <= 30; i++) {
+            write(journal, diffOrders(i), i * 1000L);
+        }
+        journal.close();
+
+        ReplaySource source = new ReplaySource(directory);
+        source.setSpeed(ReplaySource.MAX_SPEED);
+        source.setDropDiffOrdersEvery(10);
+        source.setReconnectEvery(12, 2);
+        final List<Integer> sequences = new ArrayList<Integer>();
+        final List<Object> notifications = new ArrayList<Object>();
+        source.addDiffOrdersListener("btc_mxn", new BitsoDiffOrdersListener() {
+            @Override
+            public void onDiffOrders(BitsoStreamDiffOrders diffOrders) {
+                sequences.add(diffOrders.getSequenceNumber());
+            }
+        });
+        source.addObserver(new Observer() {
+            @Override
+            public void update(Observable o, Object arg) {
+                if (arg instanceof Boolean) {
+                    notifications.add(arg);
+                }
+            }
+        });
+
+        assertEquals(24, source.replay());
+        assertEquals(24, sequences.size());
+        // Dropped, then lost while disconnected
+        assertFalse(sequences.contains(10) || sequences.contains(21));
+        assertFalse(sequences.contains(14) || sequences.contains(15));
+        assertFalse(sequences.contains(29) || sequences.contains(30));
+        assertEquals(6, notifications.size());
+        assertEquals(Boolean.TRUE, notifications.get(0));
+        assertEquals(Boolean.FALSE, notifications.get(1));
+        assertEquals(Boolean.TRUE, notifications.get(2));
+        assertEquals(Boolean.FALSE, notifications.get(5));
+    }
+
+    private static String diffOrders(long sequence) {
+        return "{\"type\": \"diff-orders\", \"book\": \"btc_mxn\", \"sequence\": " + sequence
+                + ", \"payload\": [{\"d\": 1501621674, \"r\": \"46850.01\", \"t\": 1, \"a\": \"0.25\","
+                + " \"v\": \"11712.5025\", \"o\": \"a1\", \"s\": \"open\"}]}";
+    }
+
+    private static void write(FrameJournal journal, String message, long receivedNanos) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        journal.onFrame(bytes, 0, bytes.length, receivedNanos);
+    }
+
+    private static String trade(int i) {
+        return "{\"type\": \"trades\", \"book\": \"btc_mxn\", \"payload\": [{\"i\": " + i
+                + ", \"a\": \"0.001\", \"r\": \"46850.00\", \"v\": \"46.85\", \"t\": 0}]}";
+    }
+}
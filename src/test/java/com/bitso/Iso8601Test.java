@@ -0,0 +1,58 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.SimpleDateFormat;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import com.bitso.helpers.Helpers;
+import com.bitso.helpers.Iso8601;
+
+public class Iso8601Test {
+
+    @Test
+    public void testBitsoFormats() {
+        assertEquals(1501621674000L, Iso8601.parseEpochMillis("2017-08-01T21:07:54+00:00"));
+        assertEquals(1501455563000L, Iso8601.parseEpochMillis("2017-07-30T22:59:23+0000"));
+        assertEquals(1501455563000L, Iso8601.parseEpochMillis("2017-07-30T22:59:23Z"));
+        assertEquals(1501455563120L, Iso8601.parseEpochMillis("2017-07-30T22:59:23.12Z"));
+        assertEquals(1501455563123L, Iso8601.parseEpochMillis("2017-07-30T22:59:23.123456+00:00"));
+        assertEquals(1501455563000L, Iso8601.parseEpochMillis("2017-07-30T16:59:23-06:00"));
+        assertEquals(1501455563000L, Iso8601.parseEpochMillis("2017-07-30T16:59:23-06"));
+        assertEquals(951782400000L, Iso8601.parseEpochMillis("2000-02-29T00:00:00+00:00"));
+        assertEquals(-86400000L, Iso8601.parseEpochMillis("1969-12-31T00:00:00+00:00"));
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] invalid = { null, "", "2017-08-01", "2017-08-01T21:07:54", "2017-08-01 21:07:54+00:00",
+                "2017-13-01T21:07:54+00:00", "2017-02-29T21:07:54+00:00", "2017-08-01T24:07:54+00:00",
+                "2017-08-01T21:07:54+0", "2017-08-01T21:07:54.+00:00", "2017-08-01T21:07:54.123",
+                "2017-08-01T21:07:54+00:00:00", "2017-08-01T21:07:54+0a00", "2O17-08-01T21:07:54+00:00" };
+        for (String text : invalid) {
+            assertEquals(text, Iso8601.INVALID, Iso8601.parseEpochMillis(text));
+        }
+    }
+
+    @Test
+    public void testMatchesSimpleDateFormat() throws Exception {
+        SimpleDateFormat zOffset = new SimpleDateFormat(Helpers.dateTimeFormatterZOffset);
+        SimpleDateFormat xOffset = new SimpleDateFormat(Helpers.dateTimeFormatterXOffset);
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            long millis = (random.nextLong() % 4000000000000L) / 1000 * 1000;
+            TimeZone zone = TimeZone.getTimeZone(TimeZone.getAvailableIDs()[random
+                    .nextInt(TimeZone.getAvailableIDs().length)]);
+            zOffset.setTimeZone(zone);
+            xOffset.setTimeZone(zone);
+
+            String basic = zOffset.format(millis);
+            String extended = xOffset.format(millis);
+            assertEquals(basic, zOffset.parse(basic).getTime(), Iso8601.parseEpochMillis(basic));
+            assertEquals(extended, xOffset.parse(extended).getTime(), Iso8601.parseEpochMillis(extended));
+        }
+    }
+}
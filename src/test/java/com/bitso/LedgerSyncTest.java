@@ -0,0 +1,118 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.bitso.helpers.Helpers;
+import com.bitso.ledger.LedgerStore;
+import com.bitso.ledger.LedgerSync;
+
+public class LedgerSyncTest {
+    private static final String KEY = "stub-key";
+    private static final String SECRET = "stub-secret";
+    private static final long MINUTE = 60000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private BitsoStubServer mServer;
+    private Bitso mBitso;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new BitsoStubServer(KEY, SECRET).start();
+        mBitso = new Bitso(KEY, SECRET, 0, false, true);
+        mBitso.setBaseURL(mServer.getBaseUrl());
+    }
+
+    @After
+    public void tearDown() {
+        mServer.close();
+    }
+
+    @Test
+    public void testIncrementalSync() throws Exception {
+        File file = mFolder.newFile("ledger.dat");
+        LedgerStore store = new LedgerStore(file);
+        LedgerSync sync = new LedgerSync(mBitso, store, 50);
+        mServer.setHistorySize(120);
+        assertEquals(120, sync.sync());
+        assertEquals("120", store.getNewestEntryId());
+        // 50, 50 and 20 entries
+        assertEquals(3, mServer.getRequestCount());
+
+        mServer.setHistorySize(130);
+        assertEquals(10, sync.sync());
+        assertEquals(0, sync.sync());
+        assertEquals(5, mServer.getRequestCount());
+        store.close();
+
+        // Queries are served from the file
+        store = new LedgerStore(file);
+        assertEquals(130, store.size());
+        assertEquals("130", store.getNewestEntryId());
+        assertEquals(BitsoStubServer.HISTORY_START_MILLIS + 130 * MINUTE, store.getNewestMillis());
+        List<BitsoOperation> range = store.query(BitsoStubServer.HISTORY_START_MILLIS + 10 * MINUTE,
+                BitsoStubServer.HISTORY_START_MILLIS + 20 * MINUTE, "fee");
+        assertEquals(10, range.size());
+        assertEquals("10", range.get(0).getEntryId());
+        assertEquals("19", range.get(9).getEntryId());
+
+        BitsoOperation stored = store.get("42");
+        BitsoOperation fixture = new BitsoOperation(
+                Helpers.getJSONFromFile("privateLedger.json").getJSONArray("payload").getJSONObject(0));
+        assertEquals(fixture.getOperationDescription(), stored.getOperationDescription());
+        assertEquals(fixture.getDetails(), stored.getDetails());
+        assertEquals(fixture.getAfterOperationBalances()[0].getCurrency(),
+                stored.getAfterOperationBalances()[0].getCurrency());
+        assertEquals(fixture.getAfterOperationBalances()[0].getAmount(),
+                stored.getAfterOperationBalances()[0].getAmount());
+        store.close();
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws Exception {
+        File file = mFolder.newFile("ledger.dat");
+        LedgerStore store = new LedgerStore(file);
+        for (int i = 0; i < 3; i++) {
+            store.add(operation("e" + i, i * MINUTE, new BigDecimal("-0.06313044")));
+        }
+        // Out of order and with an amount that does not fit in a long
+        store.add(operation("early", -MINUTE, new BigDecimal("123456789012345678901234.5")));
+        store.close();
+        long length = file.length();
+
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.setLength(length - 3);
+        raw.close();
+
+        store = new LedgerStore(file);
+        assertEquals(3, store.size());
+        assertNull(store.get("early"));
+        assertEquals("e2", store.getNewestEntryId());
+        store.add(operation("early", -MINUTE, new BigDecimal("123456789012345678901234.5")));
+        assertEquals("early", store.query(Long.MIN_VALUE, Long.MAX_VALUE, null).get(0).getEntryId());
+        assertEquals(new BigDecimal("123456789012345678901234.5"),
+                store.get("early").getAfterOperationBalances()[0].getAmount());
+        store.close();
+    }
+
+    private static BitsoOperation operation(String entryId, long millis, BigDecimal amount) {
+        BitsoOperation operation = new BitsoOperation(entryId, "fee", new Date(millis), null);
+        operation.setAfterOperationBalances(
+                new BitsoOperation.BalanceUpdate[] { operation.new BalanceUpdate("xrp", amount) });
+        return operation;
+    }
+}
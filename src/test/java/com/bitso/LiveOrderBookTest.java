@@ -0,0 +1,125 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bitso.book.LiveOrderBook;
+import com.bitso.book.PriceLevel;
+import com.bitso.helpers.Helpers;
+import com.bitso.websockets.BitsoStreamDiffOrders;
+
+public class LiveOrderBookTest {
+    private LiveOrderBook book;
+
+    @Before
+    public void setUp() {
+        book = new LiveOrderBook("btc_mxn");
+        book.loadSnapshot(new BitsoOrderBook(new JSONObject("{\"updated_at\": \"2017-08-01T21:07:54+00:00\","
+                + " \"sequence\": 100, \"bids\": ["
+                + order("46850.01", "0.5", "b1") + "," + order("46850.01", "0.25", "b2") + ","
+                + order("46800.00", "1.0", "b3") + "], \"asks\": ["
+                + order("46900.00", "0.1", "a1") + "," + order("46950.00", "2.0", "a2") + "]}")));
+    }
+
+    @Test
+    public void testSnapshot() {
+        assertEquals(100, book.getSequence());
+        assertPrice("46850.01", book.getBestBidPrice());
+        assertPrice("46900.00", book.getBestAskPrice());
+        assertEquals(0, new BigDecimal("49.99").compareTo(book.getSpread()));
+
+        PriceLevel best = book.getBestBid();
+        assertEquals(0, new BigDecimal("0.75").compareTo(best.getAmount()));
+        assertEquals(2, best.getOrderCount());
+        assertEquals(2, book.getBidLevelCount());
+        assertEquals(5, book.getOrderCount());
+    }
+
+    @Test
+    public void testAppliesWholeBatch() {
+        // Removing the first order must not stop the rest of the diff from being applied
+        assertTrue(book.apply(diff(101, remove(0, "46850.01", "b1"), put(0, "46870.00", "0.3", "b4"),
+                remove(1, "46900.00", "a1"), put(1, "46890.00", "0.7", "a3"))));
+
+        assertEquals(101, book.getSequence());
+        assertPrice("46870.00", book.getBestBidPrice());
+        assertPrice("46890.00", book.getBestAskPrice());
+        assertEquals(0, new BigDecimal("0.25")
+                .compareTo(book.getLevel(BitsoOrder.SIDE.BUY, new BigDecimal("46850.01")).getAmount()));
+        assertFalse(book.containsOrder("b1"));
+        assertFalse(book.containsOrder("a1"));
+    }
+
+    @Test
+    public void testPartialFillAndLevelRemoval() {
+        book.apply(diff(101, put(0, "46850.01", "0.1", "b1")));
+        assertEquals(0, new BigDecimal("0.35").compareTo(book.getBestBid().getAmount()));
+
+        book.apply(diff(102, remove(0, "46850.01", "b1"), remove(0, "46850.01", "b2")));
+        assertNull(book.getLevel(BitsoOrder.SIDE.BUY, new BigDecimal("46850.01")));
+        assertPrice("46800.00", book.getBestBidPrice());
+
+        book.apply(diff(103, remove(0, "46800.00", "b3")));
+        assertNull(book.getBestBidPrice());
+        assertNull(book.getSpread());
+    }
+
+    @Test
+    public void testIgnoresStaleDiffs() {
+        assertFalse(book.apply(diff(100, remove(1, "46900.00", "a1"))));
+        assertTrue(book.containsOrder("a1"));
+    }
+
+    @Test
+    public void testDepth() {
+        book.apply(diff(101, put(1, "46899.50", "0.4", "a3")));
+        List<PriceLevel> asks = book.getAsks(2);
+        assertEquals(2, asks.size());
+        assertPrice("46899.5", asks.get(0).getPrice());
+        assertPrice("46900.00", asks.get(1).getPrice());
+        assertEquals(3, book.getAsks(10).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsAggregatedSnapshot() throws Exception {
+        book.loadSnapshot(
+                new BitsoOrderBook(Helpers.getJSONFromFile("publicOrderBook.json").getJSONObject("payload")));
+    }
+
+    private static void assertPrice(String expected, BigDecimal actual) {
+        assertEquals(expected + " != " + actual, 0, new BigDecimal(expected).compareTo(actual));
+    }
+
+    private static String order(String price, String amount, String oid) {
+        return "{\"book\": \"btc_mxn\", \"price\": \"" + price + "\", \"amount\": \"" + amount + "\", \"oid\": \""
+                + oid + "\"}";
+    }
+
+    private static String put(int side, String rate, String amount, String oid) {
+        return "{\"d\": 1501621674, \"r\": " + rate + ", \"t\": " + side + ", \"a\": " + amount + ", \"v\": 1,"
+                + " \"o\": \"" + oid + "\", \"s\": \"open\"}";
+    }
+
+    private static String remove(int side, String rate, String oid) {
+        return "{\"d\": 1501621674, \"r\": " + rate + ", \"t\": " + side + ", \"o\": \"" + oid + "\","
+                + " \"s\": \"cancelled\"}";
+    }
+
+    private static BitsoStreamDiffOrders diff(int sequence, String... orders) {
+        StringBuilder payload = new StringBuilder();
+        for (String order : orders) {
+            payload.append(payload.length() == 0 ? "" : ",").append(order);
+        }
+        return new BitsoStreamDiffOrders(new JSONObject("{\"type\": \"diff-orders\", \"book\": \"btc_mxn\","
+                + " \"sequence\": " + sequence + ", \"payload\": [" + payload + "]}"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.bitso.auth.AtomicNonceSource;
+import com.bitso.auth.FileBackedNonceSource;
+import com.bitso.auth.NonceSource;
+
+public class NonceSourceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStrictlyIncreasing() throws Exception {
+        AtomicNonceSource source = new AtomicNonceSource();
+        long previous = source.nextNonce();
+        for (int i = 0; i < 10000; i++) {
+            long nonce = source.nextNonce();
+            assertTrue(nonce > previous);
+            previous = nonce;
+        }
+        assertTrue(new AtomicNonceSource(Long.MAX_VALUE / 2).nextNonce() > Long.MAX_VALUE / 2);
+    }
+
+    @Test
+    public void testUniqueAcrossThreads() throws Exception {
+        final NonceSource source = new AtomicNonceSource();
+        final ConcurrentHashMap<Long, Boolean> seen = new ConcurrentHashMap<Long, Boolean>();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < 5000; j++) {
+                            seen.put(source.nextNonce(), Boolean.TRUE);
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8 * 5000, seen.size());
+    }
+
+    @Test
+    public void testSharedPerKey() {
+        assertSame(AtomicNonceSource.forKey("key"), AtomicNonceSource.forKey("key"));
+        assertTrue(AtomicNonceSource.forKey("key") != AtomicNonceSource.forKey("other"));
+    }
+
+    @Test
+    public void testFileBackedSurvivesRestart() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("nonce");
+        long future = (System.currentTimeMillis() << 1) + 1000000;
+        Files.write(file, Long.toString(future).getBytes(Charset.forName("US-ASCII")));
+
+        FileBackedNonceSource source = new FileBackedNonceSource(file, 100);
+        long last = 0;
+        for (int i = 0; i < 250; i++) {
+            last = source.nextNonce();
+        }
+        assertTrue(last > future);
+        long stored = Long.parseLong(new String(Files.readAllBytes(file), Charset.forName("US-ASCII")));
+        assertTrue(stored > last);
+
+        assertTrue(new FileBackedNonceSource(file, 100).nextNonce() > last);
+    }
+}
@@ -0,0 +1,148 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bitso.book.LiveOrderBook;
+import com.bitso.book.OrderBookSynchronizer;
+import com.bitso.websockets.BitsoStreamDiffOrders;
+
+public class OrderBookSynchronizerTest {
+    private final LinkedBlockingQueue<BitsoOrderBook> snapshots = new LinkedBlockingQueue<BitsoOrderBook>();
+    private final LinkedBlockingQueue<String> events = new LinkedBlockingQueue<String>();
+    private ScheduledExecutorService executor;
+    private OrderBookSynchronizer synchronizer;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        synchronizer = new OrderBookSynchronizer(new LiveOrderBook("btc_mxn"), new Callable<BitsoOrderBook>() {
+            public BitsoOrderBook call() throws Exception {
+                return snapshots.take();
+            }
+        }, executor, 100);
+        synchronizer.addListener(new OrderBookSynchronizer.Listener() {
+            public void onSynchronized(LiveOrderBook book) {
+                events.add("sync " + book.getSequence());
+            }
+
+            public void onUpdate(LiveOrderBook book, BitsoStreamDiffOrders diff) {
+                events.add("update " + book.getSequence());
+            }
+
+            public void onOutOfSync(LiveOrderBook book, long expectedSequence, long receivedSequence) {
+                events.add("gap " + expectedSequence + " " + receivedSequence);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        synchronizer.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testBuffersWhileSnapshotInFlight() throws Exception {
+        synchronizer.start();
+        for (int sequence = 99; sequence <= 102; sequence++) {
+            synchronizer.onDiff(diff(sequence, ask("a" + sequence)));
+        }
+        assertFalse(synchronizer.isSynchronized());
+
+        snapshots.add(snapshot(100));
+        assertEquals("sync 102", nextEvent());
+        assertTrue(synchronizer.isSynchronized());
+
+        LiveOrderBook book = synchronizer.getBook();
+        assertFalse(book.containsOrder("a99"));
+        assertFalse(book.containsOrder("a100"));
+        assertTrue(book.containsOrder("a101"));
+        assertTrue(book.containsOrder("a102"));
+
+        synchronizer.onDiff(diff(102));
+        synchronizer.onDiff(diff(103));
+        assertEquals("update 103", nextEvent());
+    }
+
+    @Test
+    public void testResyncsOnGap() throws Exception {
+        synchronizer.start();
+        snapshots.add(snapshot(100));
+        assertEquals("sync 100", nextEvent());
+
+        synchronizer.onDiff(diff(102));
+        assertEquals("gap 101 102", nextEvent());
+        assertFalse(synchronizer.isSynchronized());
+
+        synchronizer.onDiff(diff(103));
+        synchronizer.onDiff(diff(104));
+        snapshots.add(snapshot(103));
+        assertEquals("sync 104", nextEvent());
+    }
+
+    @Test
+    public void testRetriesWhenSnapshotIsBehindBufferedDiffs() throws Exception {
+        synchronizer.start();
+        synchronizer.onDiff(diff(105));
+        snapshots.add(snapshot(100));
+        assertEquals("gap 101 105", nextEvent());
+
+        synchronizer.onDiff(diff(106));
+        snapshots.add(snapshot(105));
+        assertEquals("sync 106", nextEvent());
+    }
+
+    @Test
+    public void testRetriesWhenSnapshotCannotBeLoaded() throws Exception {
+        synchronizer.start();
+        synchronizer.onDiff(diff(101));
+        snapshots.add(new BitsoOrderBook(new JSONObject("{\"updated_at\": \"2017-08-01T21:07:54+00:00\","
+                + " \"sequence\": 100, \"bids\": [{\"book\": \"btc_mxn\", \"price\": \"46850.01\","
+                + " \"amount\": \"0.5\"}], \"asks\": []}")));
+        assertEquals("gap -1 -1", nextEvent());
+        assertFalse(synchronizer.isSynchronized());
+
+        // Diffs keep being buffered for the next snapshot
+        synchronizer.onDiff(diff(102));
+        snapshots.add(snapshot(100));
+        assertEquals("sync 102", nextEvent());
+    }
+
+    private String nextEvent() throws InterruptedException {
+        // Generous timeout, the first retry is delayed by a second
+        return events.poll(5, TimeUnit.SECONDS);
+    }
+
+    private static BitsoOrderBook snapshot(int sequence) {
+        return new BitsoOrderBook(new JSONObject("{\"updated_at\": \"2017-08-01T21:07:54+00:00\", \"sequence\": "
+                + sequence + ", \"bids\": [{\"book\": \"btc_mxn\", \"price\": \"46850.01\", \"amount\": \"0.5\","
+                + " \"oid\": \"b1\"}], \"asks\": []}"));
+    }
+
+    private static String ask(String oid) {
+        return "{\"d\": 1501621674, \"r\": 46900, \"t\": 1, \"a\": 0.1, \"v\": 4690, \"o\": \"" + oid
+                + "\", \"s\": \"open\"}";
+    }
+
+    private static BitsoStreamDiffOrders diff(int sequence, String... orders) {
+        StringBuilder payload = new StringBuilder();
+        for (String order : orders) {
+            payload.append(payload.length() == 0 ? "" : ",").append(order);
+        }
+        return new BitsoStreamDiffOrders(new JSONObject("{\"type\": \"diff-orders\", \"book\": \"btc_mxn\","
+                + " \"sequence\": " + sequence + ", \"payload\": [" + payload + "]}"));
+    }
+}
@@ -0,0 +1,124 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.bitso.dispatch.BatchEventProcessor;
+import com.bitso.dispatch.BlockingWaitStrategy;
+import com.bitso.dispatch.BusySpinWaitStrategy;
+import com.bitso.dispatch.EventFactory;
+import com.bitso.dispatch.EventHandler;
+import com.bitso.dispatch.FrameDispatcher;
+import com.bitso.dispatch.FrameEvent;
+import com.bitso.dispatch.RingBuffer;
+import com.bitso.dispatch.WaitStrategy;
+import com.bitso.dispatch.YieldingWaitStrategy;
+
+public class RingBufferTest {
+    private static final int EVENTS = 200000;
+
+    @Test
+    public void testBlocking() throws Exception {
+        publishAndConsume(new BlockingWaitStrategy());
+    }
+
+    @Test
+    public void testYielding() throws Exception {
+        publishAndConsume(new YieldingWaitStrategy());
+    }
+
+    @Test
+    public void testBusySpin() throws Exception {
+        publishAndConsume(new BusySpinWaitStrategy());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsSizeNotPowerOfTwo() {
+        new RingBuffer<long[]>(new LongEventFactory(), 1000, new BlockingWaitStrategy());
+    }
+
+    @Test
+    public void testFrameDispatcher() throws Exception {
+        final List<String> received = new ArrayList<String>();
+        final CountDownLatch done = new CountDownLatch(1);
+        FrameDispatcher dispatcher = new FrameDispatcher(4, new BlockingWaitStrategy());
+        dispatcher.addHandler(new EventHandler<FrameEvent>() {
+            public void onEvent(FrameEvent event, long sequence, boolean endOfBatch) {
+                received.add(event.getMessage());
+                if (received.size() == 10) {
+                    done.countDown();
+                }
+            }
+        });
+        dispatcher.start();
+        for (int i = 0; i < 10; i++) {
+            dispatcher.publish("frame " + i);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        dispatcher.stop();
+
+        assertEquals("frame 0", received.get(0));
+        assertEquals("frame 9", received.get(9));
+    }
+
+    // Two consumers read every event of a ring much smaller than the number of events, in order
+    private static void publishAndConsume(WaitStrategy waitStrategy) throws Exception {
+        RingBuffer<long[]> ringBuffer = new RingBuffer<long[]>(new LongEventFactory(), 256, waitStrategy);
+        CheckingHandler[] handlers = { new CheckingHandler(), new CheckingHandler() };
+        List<BatchEventProcessor<long[]>> processors = new ArrayList<BatchEventProcessor<long[]>>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (CheckingHandler handler : handlers) {
+            BatchEventProcessor<long[]> processor = new BatchEventProcessor<long[]>(ringBuffer, handler);
+            ringBuffer.addGatingSequence(processor.getSequence());
+            processors.add(processor);
+            Thread thread = new Thread(processor);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (long i = 0; i < EVENTS; i++) {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence)[0] = i;
+            ringBuffer.publish(sequence);
+        }
+
+        for (CheckingHandler handler : handlers) {
+            assertTrue(handler.mDone.await(10, TimeUnit.SECONDS));
+            assertEquals(EVENTS, handler.mCount);
+            assertEquals(0, handler.mOutOfOrder);
+        }
+        for (int i = 0; i < processors.size(); i++) {
+            processors.get(i).halt();
+            threads.get(i).join(5000);
+            assertEquals(EVENTS - 1, processors.get(i).getSequence().get());
+        }
+    }
+
+    private static class LongEventFactory implements EventFactory<long[]> {
+        public long[] newInstance() {
+            return new long[1];
+        }
+    }
+
+    private static class CheckingHandler implements EventHandler<long[]> {
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private long mCount;
+        private long mOutOfOrder;
+
+        public void onEvent(long[] event, long sequence, boolean endOfBatch) {
+            if (event[0] != mCount || sequence != mCount) {
+                mOutOfOrder++;
+            }
+            if (++mCount == EVENTS) {
+                mDone.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.bitso;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.bitso.http.TokenBucket;
+
+public class TokenBucketTest {
+
+    @Test
+    public void testBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(5, 1, TimeUnit.MINUTES);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void testRefill() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(2, 100, TimeUnit.MILLISECONDS);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire(200, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+        bucket.acquire();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Waited " + elapsedMs + "ms", elapsedMs >= 30);
+    }
+
+    @Test
+    public void testConcurrentTryAcquire() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(100, 1, TimeUnit.HOURS);
+        final AtomicInteger granted = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 50; j++) {
+                        if (bucket.tryAcquire()) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100, granted.get());
+    }
+
+    @Test
+    public void testAsyncAcquire() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 50, TimeUnit.MILLISECONDS);
+        assertTrue(bucket.acquireAsync().isDone());
+
+        CompletableFuture<Void> permit = bucket.acquireAsync();
+        assertFalse(permit.isDone());
+        permit.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testAdaptiveBackoff() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(10, 10, TimeUnit.MILLISECONDS, 200, 1000);
+        bucket.onRateLimited(0);
+        assertFalse(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire(50, TimeUnit.MILLISECONDS));
+        assertTrue(bucket.tryAcquire(500, TimeUnit.MILLISECONDS));
+
+        bucket.onSuccess();
+        Thread.sleep(20);
+        assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    public void testBackoffDisabled() {
+        TokenBucket bucket = new TokenBucket(10, 1, TimeUnit.MINUTES);
+        bucket.onRateLimited(5000);
+        assertTrue(bucket.tryAcquire());
+    }
+}